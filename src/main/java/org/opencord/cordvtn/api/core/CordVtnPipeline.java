@@ -16,9 +16,13 @@
 package org.opencord.cordvtn.api.core;
 
 import org.onlab.packet.VlanId;
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.PortNumber;
 import org.onosproject.net.flow.FlowRule;
 import org.opencord.cordvtn.api.node.CordVtnNode;
 
+import java.util.Set;
+
 /**
  * Service providing cordvtn pipeline.
  */
@@ -61,4 +65,47 @@ public interface CordVtnPipeline {
      * @param rule    flow rule to process
      */
     void processFlowRule(boolean install, FlowRule rule);
+
+    /**
+     * Processes the flow rules in the given batch. The rules are applied
+     * with a single staged flow rule operation per device, removals first.
+     *
+     * @param batch flow rule batch to process
+     */
+    void processFlowRules(FlowRuleBatch batch);
+
+    /**
+     * Returns the flow rules installed by the pipeline on the given device and
+     * table that output to the given port. The result is served from a local
+     * index kept in line with the flow rule events.
+     *
+     * @param deviceId device id
+     * @param tableId  table id
+     * @param output   output port number
+     * @return set of flow rules; empty set if no rule matches
+     */
+    Set<FlowRule> flowRules(DeviceId deviceId, int tableId, PortNumber output);
+
+    /**
+     * Reconciles the flow rules on the supplied node with the desired state.
+     * Only the rules missing or different from the desired state are
+     * installed, and stale rules installed by the pipeline are removed.
+     *
+     * @param node cordvtn node
+     */
+    void reconcile(CordVtnNode node);
+
+    /**
+     * Adds the supplied provider of the desired flow rules.
+     *
+     * @param provider desired flow rule provider
+     */
+    void addFlowRuleProvider(DesiredFlowRuleProvider provider);
+
+    /**
+     * Removes the supplied provider of the desired flow rules.
+     *
+     * @param provider desired flow rule provider
+     */
+    void removeFlowRuleProvider(DesiredFlowRuleProvider provider);
 }
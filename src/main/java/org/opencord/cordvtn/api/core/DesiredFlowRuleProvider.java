@@ -0,0 +1,36 @@
+/*
+ * Copyright 2017-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.opencord.cordvtn.api.core;
+
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.flow.FlowRule;
+
+import java.util.Set;
+
+/**
+ * Provides the flow rules that should be installed on a device given the
+ * current service network, node and instance states.
+ */
+public interface DesiredFlowRuleProvider {
+
+    /**
+     * Returns the flow rules the provider expects on the supplied device.
+     *
+     * @param deviceId integration bridge device id
+     * @return set of flow rules
+     */
+    Set<FlowRule> desiredFlowRules(DeviceId deviceId);
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright 2017-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.opencord.cordvtn.api.core;
+
+import com.google.common.base.MoreObjects;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Snapshot of the queue statistics of an event executor.
+ */
+public final class ExecutorStats {
+
+    private final String name;
+    private final int queueDepth;
+    private final int queueCapacity;
+    private final long completed;
+    private final long rejected;
+    private final long coalesced;
+    private final double avgQueueMillis;
+    private final double maxQueueMillis;
+    private final double avgRunMillis;
+    private final double maxRunMillis;
+
+    private ExecutorStats(Builder builder) {
+        this.name = builder.name;
+        this.queueDepth = builder.queueDepth;
+        this.queueCapacity = builder.queueCapacity;
+        this.completed = builder.completed;
+        this.rejected = builder.rejected;
+        this.coalesced = builder.coalesced;
+        this.avgQueueMillis = builder.avgQueueMillis;
+        this.maxQueueMillis = builder.maxQueueMillis;
+        this.avgRunMillis = builder.avgRunMillis;
+        this.maxRunMillis = builder.maxRunMillis;
+    }
+
+    /**
+     * Returns the name of the executor.
+     *
+     * @return executor name
+     */
+    public String name() {
+        return name;
+    }
+
+    /**
+     * Returns the number of tasks waiting in the queue.
+     *
+     * @return queue depth
+     */
+    public int queueDepth() {
+        return queueDepth;
+    }
+
+    /**
+     * Returns the maximum number of tasks the queue can hold.
+     *
+     * @return queue capacity
+     */
+    public int queueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * Returns the number of completed tasks.
+     *
+     * @return completed task count
+     */
+    public long completed() {
+        return completed;
+    }
+
+    /**
+     * Returns the number of tasks submitted while the queue was full.
+     *
+     * @return rejected task count
+     */
+    public long rejected() {
+        return rejected;
+    }
+
+    /**
+     * Returns the number of tasks replaced by a newer task of the same key.
+     *
+     * @return coalesced task count
+     */
+    public long coalesced() {
+        return coalesced;
+    }
+
+    /**
+     * Returns the average time in milliseconds from submission to the start
+     * of a task.
+     *
+     * @return average queueing latency in milliseconds
+     */
+    public double avgQueueMillis() {
+        return avgQueueMillis;
+    }
+
+    /**
+     * Returns the maximum time in milliseconds from submission to the start
+     * of a task.
+     *
+     * @return maximum queueing latency in milliseconds
+     */
+    public double maxQueueMillis() {
+        return maxQueueMillis;
+    }
+
+    /**
+     * Returns the average run time of a task in milliseconds.
+     *
+     * @return average run time in milliseconds
+     */
+    public double avgRunMillis() {
+        return avgRunMillis;
+    }
+
+    /**
+     * Returns the maximum run time of a task in milliseconds.
+     *
+     * @return maximum run time in milliseconds
+     */
+    public double maxRunMillis() {
+        return maxRunMillis;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(getClass())
+                .add("name", name)
+                .add("queueDepth", queueDepth)
+                .add("queueCapacity", queueCapacity)
+                .add("completed", completed)
+                .add("rejected", rejected)
+                .add("coalesced", coalesced)
+                .toString();
+    }
+
+    /**
+     * Returns new executor stats builder instance.
+     *
+     * @return executor stats builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Builder of the executor stats entities.
+     */
+    public static final class Builder {
+
+        private String name;
+        private int queueDepth;
+        private int queueCapacity;
+        private long completed;
+        private long rejected;
+        private long coalesced;
+        private double avgQueueMillis;
+        private double maxQueueMillis;
+        private double avgRunMillis;
+        private double maxRunMillis;
+
+        private Builder() {
+        }
+
+        /**
+         * Builds an immutable executor stats.
+         *
+         * @return executor stats instance
+         */
+        public ExecutorStats build() {
+            checkNotNull(name, "Executor name cannot be null");
+            return new ExecutorStats(this);
+        }
+
+        /**
+         * Returns executor stats builder with the supplied name.
+         *
+         * @param name executor name
+         * @return executor stats builder
+         */
+        public Builder name(String name) {
+            this.name = name;
+            return this;
+        }
+
+        /**
+         * Returns executor stats builder with the supplied queue depth and
+         * capacity.
+         *
+         * @param depth    number of tasks waiting in the queue
+         * @param capacity maximum number of tasks the queue can hold
+         * @return executor stats builder
+         */
+        public Builder queue(int depth, int capacity) {
+            this.queueDepth = depth;
+            this.queueCapacity = capacity;
+            return this;
+        }
+
+        /**
+         * Returns executor stats builder with the supplied task counts.
+         *
+         * @param completed completed task count
+         * @param rejected  rejected task count
+         * @param coalesced coalesced task count
+         * @return executor stats builder
+         */
+        public Builder counts(long completed, long rejected, long coalesced) {
+            this.completed = completed;
+            this.rejected = rejected;
+            this.coalesced = coalesced;
+            return this;
+        }
+
+        /**
+         * Returns executor stats builder with the supplied queueing latency.
+         *
+         * @param avgMillis average queueing latency in milliseconds
+         * @param maxMillis maximum queueing latency in milliseconds
+         * @return executor stats builder
+         */
+        public Builder queueMillis(double avgMillis, double maxMillis) {
+            this.avgQueueMillis = avgMillis;
+            this.maxQueueMillis = maxMillis;
+            return this;
+        }
+
+        /**
+         * Returns executor stats builder with the supplied run time.
+         *
+         * @param avgMillis average run time in milliseconds
+         * @param maxMillis maximum run time in milliseconds
+         * @return executor stats builder
+         */
+        public Builder runMillis(double avgMillis, double maxMillis) {
+            this.avgRunMillis = avgMillis;
+            this.maxRunMillis = maxMillis;
+            return this;
+        }
+    }
+}
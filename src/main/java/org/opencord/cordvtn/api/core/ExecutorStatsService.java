@@ -0,0 +1,31 @@
+/*
+ * Copyright 2017-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.opencord.cordvtn.api.core;
+
+import java.util.List;
+
+/**
+ * Service for querying the queue statistics of the event executors.
+ */
+public interface ExecutorStatsService {
+
+    /**
+     * Returns the statistics of all running event executors sorted by name.
+     *
+     * @return list of executor stats; empty list if no executor is running
+     */
+    List<ExecutorStats> executorStats();
+}
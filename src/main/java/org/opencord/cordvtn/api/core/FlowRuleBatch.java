@@ -0,0 +1,130 @@
+/*
+ * Copyright 2017-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.opencord.cordvtn.api.core;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableList;
+import org.onosproject.net.flow.FlowRule;
+import org.onosproject.net.flow.FlowRuleOperation;
+
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.onosproject.net.flow.FlowRuleOperation.Type.ADD;
+import static org.onosproject.net.flow.FlowRuleOperation.Type.REMOVE;
+
+/**
+ * Collection of flow rule additions and removals to be processed together
+ * by the {@link CordVtnPipeline}.
+ */
+public final class FlowRuleBatch {
+
+    private final List<FlowRuleOperation> operations;
+
+    private FlowRuleBatch(List<FlowRuleOperation> operations) {
+        this.operations = operations;
+    }
+
+    /**
+     * Returns the flow rule operations in the order they were added.
+     *
+     * @return list of flow rule operations
+     */
+    public List<FlowRuleOperation> operations() {
+        return operations;
+    }
+
+    /**
+     * Returns if the batch has no flow rule operation.
+     *
+     * @return true if the batch is empty
+     */
+    public boolean isEmpty() {
+        return operations.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(getClass())
+                .add("operations", operations)
+                .toString();
+    }
+
+    /**
+     * Returns new flow rule batch builder instance.
+     *
+     * @return flow rule batch builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Builder of the flow rule batch entities.
+     */
+    public static final class Builder {
+        private final ImmutableList.Builder<FlowRuleOperation> operations =
+                ImmutableList.builder();
+
+        private Builder() {
+        }
+
+        /**
+         * Builds an immutable flow rule batch.
+         *
+         * @return flow rule batch instance
+         */
+        public FlowRuleBatch build() {
+            return new FlowRuleBatch(operations.build());
+        }
+
+        /**
+         * Returns flow rule batch builder with the supplied rule to install.
+         *
+         * @param rule flow rule
+         * @return flow rule batch builder
+         */
+        public Builder add(FlowRule rule) {
+            checkNotNull(rule);
+            operations.add(new FlowRuleOperation(rule, ADD));
+            return this;
+        }
+
+        /**
+         * Returns flow rule batch builder with the supplied rule to remove.
+         *
+         * @param rule flow rule
+         * @return flow rule batch builder
+         */
+        public Builder remove(FlowRule rule) {
+            checkNotNull(rule);
+            operations.add(new FlowRuleOperation(rule, REMOVE));
+            return this;
+        }
+
+        /**
+         * Returns flow rule batch builder with the supplied rule to install
+         * or remove.
+         *
+         * @param install install or remove
+         * @param rule    flow rule
+         * @return flow rule batch builder
+         */
+        public Builder process(boolean install, FlowRule rule) {
+            return install ? add(rule) : remove(rule);
+        }
+    }
+}
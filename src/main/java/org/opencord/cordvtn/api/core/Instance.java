@@ -38,6 +38,7 @@ public final class Instance {
     public static final String PORT_ID = "portId";
     public static final String ORIGINAL_HOST_ID = "originalHostId";
     public static final String CREATE_TIME = "createTime";
+    public static final String BUCKET_WEIGHT = "bucketWeight";
 
     private final Host host;
 
@@ -16,15 +16,33 @@
 package org.opencord.cordvtn.api.core;
 
 import org.onosproject.net.ConnectPoint;
+import org.onosproject.net.DeviceId;
 import org.onosproject.net.HostId;
 import org.onosproject.net.host.HostDescription;
+import org.opencord.cordvtn.api.net.NetworkId;
+
+import java.util.Set;
 
 /**
  * Provides service instance addition or removal.
  */
 public interface InstanceService {
 
-    // TODO add get instance
+    /**
+     * Returns the instances in the given service network.
+     *
+     * @param netId service network id
+     * @return set of instances; empty set if no instance exists
+     */
+    Set<Instance> instances(NetworkId netId);
+
+    /**
+     * Returns the instances attached to the given device.
+     *
+     * @param deviceId device id
+     * @return set of instances; empty set if no instance exists
+     */
+    Set<Instance> instances(DeviceId deviceId);
 
     /**
      * Adds a service instance on a given connect point. Or updates if the
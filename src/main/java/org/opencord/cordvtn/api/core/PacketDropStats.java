@@ -0,0 +1,157 @@
+/*
+ * Copyright 2017-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.opencord.cordvtn.api.core;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableMap;
+
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Snapshot of the packet-in dropped by a packet rate limiter.
+ */
+public final class PacketDropStats {
+
+    private final String name;
+    private final long rateLimited;
+    private final long duplicated;
+    private final Map<String, Long> drops;
+
+    private PacketDropStats(Builder builder) {
+        this.name = builder.name;
+        this.rateLimited = builder.rateLimited;
+        this.duplicated = builder.duplicated;
+        this.drops = builder.drops;
+    }
+
+    /**
+     * Returns the name of the rate limiter.
+     *
+     * @return rate limiter name
+     */
+    public String name() {
+        return name;
+    }
+
+    /**
+     * Returns the number of the packets dropped by the rate limit.
+     *
+     * @return rate limited packet count
+     */
+    public long rateLimited() {
+        return rateLimited;
+    }
+
+    /**
+     * Returns the number of the packets dropped as duplicates.
+     *
+     * @return duplicated packet count
+     */
+    public long duplicated() {
+        return duplicated;
+    }
+
+    /**
+     * Returns the number of the dropped packets of the recently throttled
+     * sources, keyed by "deviceId/mac".
+     *
+     * @return map of source and dropped packet count
+     */
+    public Map<String, Long> drops() {
+        return drops;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(getClass())
+                .add("name", name)
+                .add("rateLimited", rateLimited)
+                .add("duplicated", duplicated)
+                .add("drops", drops)
+                .toString();
+    }
+
+    /**
+     * Returns new packet drop stats builder instance.
+     *
+     * @return packet drop stats builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Builder of the packet drop stats entities.
+     */
+    public static final class Builder {
+
+        private String name;
+        private long rateLimited;
+        private long duplicated;
+        private Map<String, Long> drops = ImmutableMap.of();
+
+        private Builder() {
+        }
+
+        /**
+         * Builds an immutable packet drop stats.
+         *
+         * @return packet drop stats instance
+         */
+        public PacketDropStats build() {
+            checkNotNull(name, "Rate limiter name cannot be null");
+            return new PacketDropStats(this);
+        }
+
+        /**
+         * Returns packet drop stats builder with the supplied name.
+         *
+         * @param name rate limiter name
+         * @return packet drop stats builder
+         */
+        public Builder name(String name) {
+            this.name = name;
+            return this;
+        }
+
+        /**
+         * Returns packet drop stats builder with the supplied drop counts.
+         *
+         * @param rateLimited rate limited packet count
+         * @param duplicated  duplicated packet count
+         * @return packet drop stats builder
+         */
+        public Builder counts(long rateLimited, long duplicated) {
+            this.rateLimited = rateLimited;
+            this.duplicated = duplicated;
+            return this;
+        }
+
+        /**
+         * Returns packet drop stats builder with the supplied drop counts
+         * per source.
+         *
+         * @param drops map of source and dropped packet count
+         * @return packet drop stats builder
+         */
+        public Builder drops(Map<String, Long> drops) {
+            this.drops = ImmutableMap.copyOf(drops);
+            return this;
+        }
+    }
+}
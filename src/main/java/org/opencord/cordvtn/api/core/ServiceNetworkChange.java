@@ -0,0 +1,198 @@
+/*
+ * Copyright 2017-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.opencord.cordvtn.api.core;
+
+import com.google.common.base.MoreObjects;
+import org.opencord.cordvtn.api.core.ServiceNetworkEvent.Type;
+import org.opencord.cordvtn.api.net.NetworkId;
+import org.opencord.cordvtn.api.net.PortId;
+import org.opencord.cordvtn.api.net.ServiceNetwork;
+import org.opencord.cordvtn.api.net.ServicePort;
+
+import java.util.Objects;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Entry of the service network changelog. Each mutation of a service network
+ * or a service port is recorded with a version, which increases in the order
+ * of the mutations.
+ */
+public final class ServiceNetworkChange {
+
+    private final long version;
+    private final Type type;
+    private final NetworkId networkId;
+    private final PortId portId;
+    private final ServiceNetwork serviceNetwork;
+    private final ServicePort servicePort;
+
+    private ServiceNetworkChange(long version, Type type,
+                                 NetworkId networkId, PortId portId,
+                                 ServiceNetwork serviceNetwork, ServicePort servicePort) {
+        this.version = version;
+        this.type = type;
+        this.networkId = networkId;
+        this.portId = portId;
+        this.serviceNetwork = serviceNetwork;
+        this.servicePort = servicePort;
+    }
+
+    /**
+     * Returns the change of a service network.
+     *
+     * @param version        changelog version
+     * @param type           change type
+     * @param networkId      network id
+     * @param serviceNetwork service network after the change; null if removed
+     * @return service network change
+     */
+    public static ServiceNetworkChange networkChange(long version, Type type,
+                                                     NetworkId networkId,
+                                                     ServiceNetwork serviceNetwork) {
+        checkNotNull(type);
+        checkNotNull(networkId);
+        return new ServiceNetworkChange(version, type, networkId, null,
+                                        serviceNetwork, null);
+    }
+
+    /**
+     * Returns the change of a service port.
+     *
+     * @param version     changelog version
+     * @param type        change type
+     * @param portId      port id
+     * @param servicePort service port after the change; null if removed
+     * @return service port change
+     */
+    public static ServiceNetworkChange portChange(long version, Type type,
+                                                  PortId portId,
+                                                  ServicePort servicePort) {
+        checkNotNull(type);
+        checkNotNull(portId);
+        return new ServiceNetworkChange(version, type,
+                                        servicePort == null ? null : servicePort.networkId(),
+                                        portId, null, servicePort);
+    }
+
+    /**
+     * Returns the placeholder of a changelog version whose change was never
+     * recorded. The readers of the changelog move past it.
+     *
+     * @param version changelog version
+     * @return tombstone of the version
+     */
+    public static ServiceNetworkChange tombstone(long version) {
+        return new ServiceNetworkChange(version, null, null, null, null, null);
+    }
+
+    /**
+     * Returns whether the entry is the placeholder of a version with no change.
+     *
+     * @return true if the entry is a tombstone
+     */
+    public boolean isTombstone() {
+        return type == null;
+    }
+
+    /**
+     * Returns the changelog version of the change.
+     *
+     * @return version
+     */
+    public long version() {
+        return version;
+    }
+
+    /**
+     * Returns the type of the change.
+     *
+     * @return change type; null for the tombstone
+     */
+    public Type type() {
+        return type;
+    }
+
+    /**
+     * Returns the network id of the changed service network or port.
+     *
+     * @return network id; null for the removed service port
+     */
+    public NetworkId networkId() {
+        return networkId;
+    }
+
+    /**
+     * Returns the port id of the changed service port.
+     *
+     * @return port id; null for the service network changes
+     */
+    public PortId portId() {
+        return portId;
+    }
+
+    /**
+     * Returns the service network after the change.
+     *
+     * @return service network; null if removed or for the service port changes
+     */
+    public ServiceNetwork serviceNetwork() {
+        return serviceNetwork;
+    }
+
+    /**
+     * Returns the service port after the change.
+     *
+     * @return service port; null if removed or for the service network changes
+     */
+    public ServicePort servicePort() {
+        return servicePort;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj instanceof ServiceNetworkChange) {
+            ServiceNetworkChange that = (ServiceNetworkChange) obj;
+            return version == that.version &&
+                    type == that.type &&
+                    Objects.equals(networkId, that.networkId) &&
+                    Objects.equals(portId, that.portId) &&
+                    Objects.equals(serviceNetwork, that.serviceNetwork) &&
+                    Objects.equals(servicePort, that.servicePort);
+        }
+        return false;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(version, type, networkId, portId, serviceNetwork, servicePort);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(getClass())
+                .add("version", version)
+                .add("type", type)
+                .add("networkId", networkId)
+                .add("portId", portId)
+                .add("serviceNetwork", serviceNetwork)
+                .add("servicePort", servicePort)
+                .toString();
+    }
+}
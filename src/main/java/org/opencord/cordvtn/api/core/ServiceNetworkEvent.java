@@ -30,6 +30,7 @@ public class ServiceNetworkEvent extends AbstractEvent<ServiceNetworkEvent.Type,
 
     private final ServicePort servicePort;
     private final Provider provider;
+    private final ServiceNetwork prevSubject;
 
     /**
      * Type of service network event.
@@ -87,6 +88,23 @@ public class ServiceNetworkEvent extends AbstractEvent<ServiceNetworkEvent.Type,
         super(type, serviceNetwork);
         this.servicePort = null;
         this.provider = null;
+        this.prevSubject = null;
+    }
+
+    /**
+     * Creates an event of a given type and for the specified service network,
+     * the previous state of the service network, and the current time.
+     *
+     * @param type           service network event type
+     * @param serviceNetwork service network subject
+     * @param prevSubject    previous service network subject
+     */
+    public ServiceNetworkEvent(Type type, ServiceNetwork serviceNetwork,
+                               ServiceNetwork prevSubject) {
+        super(type, serviceNetwork);
+        this.servicePort = null;
+        this.provider = null;
+        this.prevSubject = prevSubject;
     }
 
     /**
@@ -101,6 +119,7 @@ public class ServiceNetworkEvent extends AbstractEvent<ServiceNetworkEvent.Type,
         super(type, serviceNetwork);
         this.servicePort = servicePort;
         this.provider = null;
+        this.prevSubject = null;
     }
 
     /**
@@ -115,6 +134,7 @@ public class ServiceNetworkEvent extends AbstractEvent<ServiceNetworkEvent.Type,
         super(type, serviceNetwork);
         this.servicePort = null;
         this.provider = provider;
+        this.prevSubject = null;
     }
 
     /**
@@ -136,6 +156,16 @@ public class ServiceNetworkEvent extends AbstractEvent<ServiceNetworkEvent.Type,
         return provider;
     }
 
+    /**
+     * Returns the previous service network subject.
+     * It returns valid value only with the service network updated event.
+     *
+     * @return previous service network; null if not available
+     */
+    public ServiceNetwork prevSubject() {
+        return prevSubject;
+    }
+
     @Override
     public String toString() {
         if (servicePort == null) {
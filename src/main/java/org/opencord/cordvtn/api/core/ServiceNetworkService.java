@@ -15,12 +15,17 @@
  */
 package org.opencord.cordvtn.api.core;
 
+import org.onlab.packet.IpAddress;
+import org.onlab.packet.MacAddress;
 import org.onosproject.event.ListenerService;
 import org.opencord.cordvtn.api.net.NetworkId;
 import org.opencord.cordvtn.api.net.PortId;
 import org.opencord.cordvtn.api.net.ServiceNetwork;
+import org.opencord.cordvtn.api.net.ServiceNetwork.DependencyType;
 import org.opencord.cordvtn.api.net.ServicePort;
 
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -45,6 +50,31 @@ public interface ServiceNetworkService
      */
     Set<ServiceNetwork> serviceNetworks();
 
+    /**
+     * Returns the providers of the supplied network with the dependency types.
+     *
+     * @param networkId network id
+     * @return map of provider network id and dependency type
+     */
+    Map<NetworkId, DependencyType> providers(NetworkId networkId);
+
+    /**
+     * Returns the subscribers of the supplied network with the dependency types.
+     *
+     * @param networkId network id
+     * @return map of subscriber network id and dependency type
+     */
+    Map<NetworkId, DependencyType> subscribers(NetworkId networkId);
+
+    /**
+     * Returns the providers the supplied network depends on directly or
+     * through other providers.
+     *
+     * @param networkId network id
+     * @return set of provider network ids
+     */
+    Set<NetworkId> transitiveProviders(NetworkId networkId);
+
     /**
      * Returns the service port with the supplied port ID.
      *
@@ -66,4 +96,59 @@ public interface ServiceNetworkService
      * @return set of service ports
      */
     Set<ServicePort> servicePorts(NetworkId networkId);
+
+    /**
+     * Returns the service port with the supplied port name.
+     *
+     * @param portName port name
+     * @return service port; null if not found
+     */
+    ServicePort servicePortByName(String portName);
+
+    /**
+     * Returns the service port with the supplied MAC address.
+     *
+     * @param mac mac address
+     * @return service port; null if not found
+     */
+    ServicePort servicePortByMac(MacAddress mac);
+
+    /**
+     * Returns the service ports with the supplied IP address. The result
+     * can have more than one port if the networks have overlapping subnets.
+     *
+     * @param ip ip address
+     * @return set of service ports
+     */
+    Set<ServicePort> servicePortsByIp(IpAddress ip);
+
+    /**
+     * Returns the service port with the supplied IP address in the network.
+     *
+     * @param networkId network id
+     * @param ip        ip address
+     * @return service port; null if not found
+     */
+    ServicePort servicePortByIp(NetworkId networkId, IpAddress ip);
+
+    /**
+     * Returns the service network and port changes made after the supplied
+     * changelog version, in the order they were made. Consumers can keep
+     * the version of the last change they processed and resume from there.
+     * The tombstones of the lost versions are included, with no change in
+     * them, so that the consumers move past the lost versions.
+     *
+     * @param sinceVersion changelog version already known to the caller
+     * @return list of changes
+     * @throws IllegalStateException if the changes are no longer retained or
+     * the version is not taken yet
+     */
+    List<ServiceNetworkChange> changes(long sinceVersion);
+
+    /**
+     * Returns the latest changelog version.
+     *
+     * @return changelog version
+     */
+    long changelogVersion();
 }
@@ -15,12 +15,17 @@
  */
 package org.opencord.cordvtn.api.core;
 
+import org.onlab.packet.IpAddress;
+import org.onlab.packet.MacAddress;
 import org.onosproject.store.Store;
 import org.opencord.cordvtn.api.net.NetworkId;
 import org.opencord.cordvtn.api.net.PortId;
 import org.opencord.cordvtn.api.net.ServiceNetwork;
+import org.opencord.cordvtn.api.net.ServiceNetwork.DependencyType;
 import org.opencord.cordvtn.api.net.ServicePort;
 
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -62,6 +67,31 @@ public interface ServiceNetworkStore extends Store<ServiceNetworkEvent, ServiceN
      */
     Set<ServiceNetwork> serviceNetworks();
 
+    /**
+     * Returns the providers of the given network with the dependency types.
+     *
+     * @param networkId network id
+     * @return map of provider network id and dependency type
+     */
+    Map<NetworkId, DependencyType> providers(NetworkId networkId);
+
+    /**
+     * Returns the subscribers of the given network with the dependency types.
+     *
+     * @param networkId network id
+     * @return map of subscriber network id and dependency type
+     */
+    Map<NetworkId, DependencyType> subscribers(NetworkId networkId);
+
+    /**
+     * Returns the providers the given network depends on directly or
+     * through other providers.
+     *
+     * @param networkId network id
+     * @return set of provider network ids
+     */
+    Set<NetworkId> transitiveProviders(NetworkId networkId);
+
     /**
      * Removes the service network with the given network id.
      *
@@ -99,10 +129,70 @@ public interface ServiceNetworkStore extends Store<ServiceNetworkEvent, ServiceN
      */
     Set<ServicePort> servicePorts();
 
+    /**
+     * Returns the service ports associated with the given network.
+     *
+     * @param networkId network id
+     * @return set of service ports
+     */
+    Set<ServicePort> servicePorts(NetworkId networkId);
+
+    /**
+     * Returns the service port with the given port name.
+     *
+     * @param portName port name
+     * @return service port; null if not found
+     */
+    ServicePort servicePortByName(String portName);
+
+    /**
+     * Returns the service port with the given MAC address.
+     *
+     * @param mac mac address
+     * @return service port; null if not found
+     */
+    ServicePort servicePortByMac(MacAddress mac);
+
+    /**
+     * Returns the service ports with the given IP address.
+     *
+     * @param ip ip address
+     * @return set of service ports
+     */
+    Set<ServicePort> servicePortsByIp(IpAddress ip);
+
+    /**
+     * Returns the service port with the given IP address in the given network.
+     *
+     * @param networkId network id
+     * @param ip        ip address
+     * @return service port; null if not found
+     */
+    ServicePort servicePortByIp(NetworkId networkId, IpAddress ip);
+
     /**
      * Removes service port.
      *
      * @param portId port id
      */
     ServicePort removeServicePort(PortId portId);
+
+    /**
+     * Returns the service network and port changes recorded after the
+     * supplied changelog version, in the order of the versions, including
+     * the tombstones of the lost versions.
+     *
+     * @param sinceVersion changelog version already known to the caller
+     * @return list of changes
+     * @throws IllegalStateException if the changes are no longer retained or
+     * the version is not taken yet
+     */
+    List<ServiceNetworkChange> changes(long sinceVersion);
+
+    /**
+     * Returns the latest changelog version.
+     *
+     * @return changelog version
+     */
+    long changelogVersion();
 }
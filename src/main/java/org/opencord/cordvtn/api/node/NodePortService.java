@@ -0,0 +1,34 @@
+/*
+ * Copyright 2017-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.opencord.cordvtn.api.node;
+
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.PortNumber;
+
+/**
+ * Service for looking up the ports of the node integration bridges by name.
+ */
+public interface NodePortService {
+
+    /**
+     * Returns the number of the enabled port with the given name.
+     *
+     * @param deviceId integration bridge device id
+     * @param portName port name
+     * @return port number; null if no enabled port exists with the name
+     */
+    PortNumber portNumber(DeviceId deviceId, String portName);
+}
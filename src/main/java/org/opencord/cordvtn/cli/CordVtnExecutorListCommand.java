@@ -0,0 +1,75 @@
+/*
+ * Copyright 2017-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.opencord.cordvtn.cli;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import org.apache.karaf.shell.commands.Command;
+import org.onosproject.cli.AbstractShellCommand;
+import org.opencord.cordvtn.api.core.ExecutorStats;
+import org.opencord.cordvtn.api.core.ExecutorStatsService;
+
+import java.util.List;
+
+import static com.fasterxml.jackson.databind.SerializationFeature.INDENT_OUTPUT;
+
+/**
+ * Lists the event executors of the service and their queue statistics.
+ */
+@Command(scope = "onos", name = "cordvtn-executors",
+        description = "Lists event executors of CORD VTN and their queue statistics")
+public class CordVtnExecutorListCommand extends AbstractShellCommand {
+
+    private static final String FORMAT = "%-50s%-14s%-12s%-10s%-11s%-14s%-14s%-14s%s";
+
+    @Override
+    protected void execute() {
+        ExecutorStatsService service = get(ExecutorStatsService.class);
+        List<ExecutorStats> executors = service.executorStats();
+
+        if (outputJson()) {
+            try {
+                print("%s", mapper().writeValueAsString(json(executors)));
+            } catch (JsonProcessingException e) {
+                print("Failed to list executors in JSON format");
+            }
+        } else {
+            print(FORMAT, "Name", "Queue", "Completed", "Rejected", "Coalesced",
+                  "Avg wait(ms)", "Max wait(ms)", "Avg run(ms)", "Max run(ms)");
+
+            for (ExecutorStats stats : executors) {
+                print(FORMAT, stats.name(),
+                      stats.queueDepth() + "/" + stats.queueCapacity(),
+                      stats.completed(),
+                      stats.rejected(),
+                      stats.coalesced(),
+                      String.format("%.3f", stats.avgQueueMillis()),
+                      String.format("%.3f", stats.maxQueueMillis()),
+                      String.format("%.3f", stats.avgRunMillis()),
+                      String.format("%.3f", stats.maxRunMillis()));
+            }
+            print("Total %s executors", executors.size());
+        }
+    }
+
+    private JsonNode json(List<ExecutorStats> executors) {
+        ArrayNode result = mapper().enable(INDENT_OUTPUT).createArrayNode();
+        executors.forEach(stats -> result.add(
+                codec(ExecutorStats.class).encode(stats, this)));
+        return result;
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2017-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.opencord.cordvtn.cli;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import org.apache.karaf.shell.commands.Command;
+import org.onosproject.cli.AbstractShellCommand;
+import org.opencord.cordvtn.api.core.PacketDropStats;
+import org.opencord.cordvtn.api.core.PacketDropStatsService;
+
+import java.util.List;
+
+import static com.fasterxml.jackson.databind.SerializationFeature.INDENT_OUTPUT;
+
+/**
+ * Lists the packet-in dropped by the packet rate limiters of the service.
+ */
+@Command(scope = "onos", name = "cordvtn-packet-drops",
+        description = "Lists packet-in dropped by the rate limiters of CORD VTN")
+public class CordVtnPacketDropListCommand extends AbstractShellCommand {
+
+    private static final String FORMAT = "%-30s%-14s%-12s";
+    private static final String SOURCE_FORMAT = "    %-50s%s";
+
+    @Override
+    protected void execute() {
+        PacketDropStatsService service = get(PacketDropStatsService.class);
+        List<PacketDropStats> limiters = service.packetDropStats();
+
+        if (outputJson()) {
+            try {
+                print("%s", mapper().writeValueAsString(json(limiters)));
+            } catch (JsonProcessingException e) {
+                print("Failed to list packet drops in JSON format");
+            }
+        } else {
+            print(FORMAT, "Name", "Rate limited", "Duplicated");
+            for (PacketDropStats stats : limiters) {
+                print(FORMAT, stats.name(),
+                      stats.rateLimited(),
+                      stats.duplicated());
+                stats.drops().forEach((source, count) ->
+                        print(SOURCE_FORMAT, source, count));
+            }
+        }
+    }
+
+    private JsonNode json(List<PacketDropStats> limiters) {
+        ArrayNode result = mapper().enable(INDENT_OUTPUT).createArrayNode();
+        limiters.forEach(stats -> result.add(
+                codec(PacketDropStats.class).encode(stats, this)));
+        return result;
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2017-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.opencord.cordvtn.cli;
+
+import org.apache.karaf.shell.commands.Argument;
+import org.apache.karaf.shell.commands.Command;
+import org.onosproject.cli.AbstractShellCommand;
+import org.opencord.cordvtn.api.core.CordVtnPipeline;
+import org.opencord.cordvtn.api.node.CordVtnNode;
+import org.opencord.cordvtn.api.node.CordVtnNodeService;
+
+import static org.opencord.cordvtn.api.node.CordVtnNodeState.COMPLETE;
+
+/**
+ * Reconciles the flow rules on the nodes with the desired state.
+ */
+@Command(scope = "onos", name = "cordvtn-sync-rules",
+        description = "Reconciles the flow rules on the nodes with the desired state")
+public class CordVtnSyncRulesCommand extends AbstractShellCommand {
+
+    @Argument(index = 0, name = "hostnames", description = "Hostname(s), all complete " +
+            "nodes if not specified", required = false, multiValued = true)
+    private String[] hostnames = null;
+
+    @Override
+    protected void execute() {
+        CordVtnNodeService nodeService = AbstractShellCommand.get(CordVtnNodeService.class);
+        CordVtnPipeline pipeline = AbstractShellCommand.get(CordVtnPipeline.class);
+
+        if (hostnames == null) {
+            nodeService.completeNodes().forEach(pipeline::reconcile);
+            return;
+        }
+        for (String hostname : hostnames) {
+            CordVtnNode node = nodeService.node(hostname);
+            if (node == null) {
+                print("Unable to find %s", hostname);
+            } else if (node.state() != COMPLETE) {
+                print("%s is not in COMPLETE state", hostname);
+            } else {
+                pipeline.reconcile(node);
+            }
+        }
+    }
+}
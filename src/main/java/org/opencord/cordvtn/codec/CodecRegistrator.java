@@ -21,6 +21,8 @@ import org.apache.felix.scr.annotations.Deactivate;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.ReferenceCardinality;
 import org.onosproject.codec.CodecService;
+import org.opencord.cordvtn.api.core.ExecutorStats;
+import org.opencord.cordvtn.api.core.PacketDropStats;
 import org.opencord.cordvtn.api.net.ServiceNetwork;
 import org.opencord.cordvtn.api.net.ServicePort;
 import org.slf4j.Logger;
@@ -41,6 +43,8 @@ public class CodecRegistrator {
     public void activate() {
         codecService.registerCodec(ServiceNetwork.class, new ServiceNetworkCodec());
         codecService.registerCodec(ServicePort.class, new ServicePortCodec());
+        codecService.registerCodec(ExecutorStats.class, new ExecutorStatsCodec());
+        codecService.registerCodec(PacketDropStats.class, new PacketDropStatsCodec());
         log.info("Started");
     }
 
@@ -48,6 +52,8 @@ public class CodecRegistrator {
     public void deactivate() {
         codecService.unregisterCodec(ServiceNetwork.class);
         codecService.unregisterCodec(ServicePort.class);
+        codecService.unregisterCodec(ExecutorStats.class);
+        codecService.unregisterCodec(PacketDropStats.class);
         log.info("Stopped");
     }
 }
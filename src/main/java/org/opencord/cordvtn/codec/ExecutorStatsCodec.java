@@ -0,0 +1,53 @@
+/*
+ * Copyright 2017-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.opencord.cordvtn.codec;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.onosproject.codec.CodecContext;
+import org.onosproject.codec.JsonCodec;
+import org.opencord.cordvtn.api.core.ExecutorStats;
+
+/**
+ * Executor stats JSON codec.
+ */
+public final class ExecutorStatsCodec extends JsonCodec<ExecutorStats> {
+
+    private static final String NAME = "name";
+    private static final String QUEUE_DEPTH = "queueDepth";
+    private static final String QUEUE_CAPACITY = "queueCapacity";
+    private static final String COMPLETED = "completed";
+    private static final String REJECTED = "rejected";
+    private static final String COALESCED = "coalesced";
+    private static final String AVG_QUEUE_MILLIS = "avgQueueMillis";
+    private static final String MAX_QUEUE_MILLIS = "maxQueueMillis";
+    private static final String AVG_RUN_MILLIS = "avgRunMillis";
+    private static final String MAX_RUN_MILLIS = "maxRunMillis";
+
+    @Override
+    public ObjectNode encode(ExecutorStats stats, CodecContext context) {
+        return context.mapper().createObjectNode()
+                .put(NAME, stats.name())
+                .put(QUEUE_DEPTH, stats.queueDepth())
+                .put(QUEUE_CAPACITY, stats.queueCapacity())
+                .put(COMPLETED, stats.completed())
+                .put(REJECTED, stats.rejected())
+                .put(COALESCED, stats.coalesced())
+                .put(AVG_QUEUE_MILLIS, stats.avgQueueMillis())
+                .put(MAX_QUEUE_MILLIS, stats.maxQueueMillis())
+                .put(AVG_RUN_MILLIS, stats.avgRunMillis())
+                .put(MAX_RUN_MILLIS, stats.maxRunMillis());
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2017-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.opencord.cordvtn.codec;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.onosproject.codec.CodecContext;
+import org.onosproject.codec.JsonCodec;
+import org.opencord.cordvtn.api.core.PacketDropStats;
+
+/**
+ * Packet drop stats JSON codec.
+ */
+public final class PacketDropStatsCodec extends JsonCodec<PacketDropStats> {
+
+    private static final String NAME = "name";
+    private static final String RATE_LIMITED = "rateLimited";
+    private static final String DUPLICATED = "duplicated";
+    private static final String DROPS = "drops";
+
+    @Override
+    public ObjectNode encode(PacketDropStats stats, CodecContext context) {
+        ObjectNode result = context.mapper().createObjectNode()
+                .put(NAME, stats.name())
+                .put(RATE_LIMITED, stats.rateLimited())
+                .put(DUPLICATED, stats.duplicated());
+        ObjectNode drops = result.putObject(DROPS);
+        stats.drops().forEach(drops::put);
+        return result;
+    }
+}
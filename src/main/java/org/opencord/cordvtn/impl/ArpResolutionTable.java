@@ -0,0 +1,118 @@
+/*
+ * Copyright 2017-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.opencord.cordvtn.impl;
+
+import org.onlab.packet.IpAddress;
+import org.onlab.packet.MacAddress;
+import org.onosproject.net.Host;
+
+/**
+ * ARP resolution table of the instances keyed by the segment of the network
+ * and the IPv4 address, so that the instances of the networks with
+ * overlapping address space are told apart. The network of the requester
+ * is found by its MAC address.
+ */
+final class ArpResolutionTable {
+
+    private final LongObjectMap<Entry> byAddress = new LongObjectMap<>();
+    private final LongObjectMap<Entry> byMac = new LongObjectMap<>();
+
+    /**
+     * Adds or updates the host in the given network segment.
+     *
+     * @param segmentId segment id of the network of the host
+     * @param host      host
+     */
+    synchronized void add(long segmentId, Host host) {
+        remove(host);
+        Entry entry = new Entry(segmentId, host);
+        byMac.put(host.mac().toLong(), entry);
+        host.ipAddresses().stream()
+                .filter(IpAddress::isIp4)
+                .forEach(ip -> byAddress.put(key(segmentId, ip.getIp4Address().toInt()), entry));
+    }
+
+    /**
+     * Removes the host.
+     *
+     * @param host host
+     */
+    synchronized void remove(Host host) {
+        Entry entry = byMac.get(host.mac().toLong());
+        if (entry == null) {
+            return;
+        }
+        byMac.remove(host.mac().toLong());
+        entry.host.ipAddresses().stream()
+                .filter(IpAddress::isIp4)
+                .forEach(ip -> {
+                    long key = key(entry.segmentId, ip.getIp4Address().toInt());
+                    if (byAddress.get(key) == entry) {
+                        byAddress.remove(key);
+                    }
+                });
+    }
+
+    /**
+     * Removes all hosts.
+     */
+    synchronized void clear() {
+        byAddress.clear();
+        byMac.clear();
+    }
+
+    /**
+     * Returns whether the host with the given MAC address is in the table.
+     *
+     * @param mac mac address
+     * @return true if the host is in the table, false otherwise
+     */
+    synchronized boolean contains(MacAddress mac) {
+        return byMac.get(mac.toLong()) != null;
+    }
+
+    /**
+     * Returns the host with the target IP address in the network of the
+     * requester.
+     *
+     * @param srcMac   mac address of the requester
+     * @param targetIp target ipv4 address
+     * @return host; null if the requester or the target is unknown
+     */
+    synchronized Host resolve(MacAddress srcMac, int targetIp) {
+        Entry src = byMac.get(srcMac.toLong());
+        if (src == null) {
+            return null;
+        }
+        Entry target = byAddress.get(key(src.segmentId, targetIp));
+        return target == null ? null : target.host;
+    }
+
+    private static long key(long segmentId, int ip) {
+        // VNIs are 24 bits, so the segment fits in the upper half
+        return (segmentId << 32) | (ip & 0xFFFFFFFFL);
+    }
+
+    private static final class Entry {
+        private final long segmentId;
+        private final Host host;
+
+        private Entry(long segmentId, Host host) {
+            this.segmentId = segmentId;
+            this.host = host;
+        }
+    }
+}
@@ -16,7 +16,10 @@
 package org.opencord.cordvtn.impl;
 
 import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import org.apache.felix.scr.annotations.Activate;
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Deactivate;
@@ -30,23 +33,30 @@ import org.onlab.packet.Ethernet;
 import org.onlab.packet.Ip4Address;
 import org.onlab.packet.IpAddress;
 import org.onlab.packet.MacAddress;
+import org.onlab.packet.VlanId;
 import org.onlab.util.Tools;
 import org.onosproject.cfg.ComponentConfigService;
 import org.onosproject.core.ApplicationId;
 import org.onosproject.core.CoreService;
+import org.onosproject.mastership.MastershipService;
+import org.onosproject.net.Device;
 import org.onosproject.net.DeviceId;
 import org.onosproject.net.Host;
 import org.onosproject.net.HostId;
-import org.onosproject.net.Port;
 import org.onosproject.net.PortNumber;
+import org.onosproject.net.behaviour.ExtensionTreatmentResolver;
 import org.onosproject.net.config.NetworkConfigEvent;
 import org.onosproject.net.config.NetworkConfigListener;
 import org.onosproject.net.config.NetworkConfigService;
 import org.onosproject.net.device.DeviceService;
+import org.onosproject.net.flow.DefaultFlowRule;
 import org.onosproject.net.flow.DefaultTrafficSelector;
 import org.onosproject.net.flow.DefaultTrafficTreatment;
 import org.onosproject.net.flow.TrafficSelector;
+import org.onosproject.net.flow.FlowRule;
 import org.onosproject.net.flow.TrafficTreatment;
+import org.onosproject.net.host.HostEvent;
+import org.onosproject.net.host.HostListener;
 import org.onosproject.net.host.HostService;
 import org.onosproject.net.packet.DefaultOutboundPacket;
 import org.onosproject.net.packet.PacketContext;
@@ -55,37 +65,93 @@ import org.onosproject.net.packet.PacketProcessor;
 import org.onosproject.net.packet.PacketService;
 import org.opencord.cordvtn.api.Constants;
 import org.opencord.cordvtn.api.CordVtnConfig;
+import org.opencord.cordvtn.api.core.CordVtnPipeline;
+import org.opencord.cordvtn.api.core.DesiredFlowRuleProvider;
+import org.opencord.cordvtn.api.core.FlowRuleBatch;
 import org.opencord.cordvtn.api.core.Instance;
+import org.opencord.cordvtn.api.core.InstanceService;
 import org.opencord.cordvtn.api.core.ServiceNetworkEvent;
 import org.opencord.cordvtn.api.core.ServiceNetworkListener;
 import org.opencord.cordvtn.api.core.ServiceNetworkService;
+import org.opencord.cordvtn.api.net.NetworkId;
 import org.opencord.cordvtn.api.net.ServiceNetwork;
 import org.opencord.cordvtn.api.node.CordVtnNode;
+import org.opencord.cordvtn.api.node.CordVtnNodeEvent;
+import org.opencord.cordvtn.api.node.CordVtnNodeListener;
 import org.opencord.cordvtn.api.node.CordVtnNodeService;
+import org.opencord.cordvtn.api.node.NodePortService;
 import org.osgi.service.component.ComponentContext;
 import org.slf4j.Logger;
 
 import java.nio.ByteBuffer;
 import java.util.Dictionary;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.stream.Collectors;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
-import static org.onosproject.net.AnnotationKeys.PORT_NAME;
+import static java.util.concurrent.Executors.newSingleThreadScheduledExecutor;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.onlab.util.Tools.groupedThreads;
+import static org.onosproject.net.flow.instructions.ExtensionTreatmentType.ExtensionTreatmentTypes.NICIRA_MOV_ARP_SHA_TO_THA;
+import static org.onosproject.net.flow.instructions.ExtensionTreatmentType.ExtensionTreatmentTypes.NICIRA_MOV_ARP_SPA_TO_TPA;
+import static org.onosproject.net.flow.instructions.ExtensionTreatmentType.ExtensionTreatmentTypes.NICIRA_MOV_ETH_SRC_TO_DST;
 import static org.opencord.cordvtn.api.Constants.DEFAULT_GATEWAY_MAC_STR;
+import static org.opencord.cordvtn.api.core.CordVtnPipeline.PRIORITY_HIGH;
+import static org.opencord.cordvtn.api.core.CordVtnPipeline.TABLE_ZERO;
 import static org.opencord.cordvtn.api.net.ServiceNetwork.NetworkType.*;
+import static org.opencord.cordvtn.impl.MonitoredExecutor.newMonitoredExecutor;
+import static org.opencord.cordvtn.impl.PacketRateLimiter.DEFAULT_DUPLICATE_WINDOW;
+import static org.opencord.cordvtn.impl.PacketRateLimiter.DEFAULT_RATE;
+import static org.opencord.cordvtn.impl.PacketRateLimiter.newPacketRateLimiter;
 import static org.slf4j.LoggerFactory.getLogger;
 
 /**
  * Handles ARP requests for virtual network service IPs.
+ * Optionally, it installs ARP responder flows for the gateway IPs so that
+ * the datapath answers the requests without packet-in.
  */
 @Component(immediate = true)
-public class CordVtnArpProxy {
+public class CordVtnArpProxy implements DesiredFlowRuleProvider {
     protected final Logger log = getLogger(getClass());
 
     private static final String PRIVATE_GATEWAY_MAC = "privateGatewayMac";
+    private static final String ARP_RESPONDER = "arpResponder";
+    private static final String PACKET_RATE_LIMIT = "packetRateLimit";
+    private static final String DUPLICATE_WINDOW = "duplicateWindow";
+    private static final String GRATUITOUS_ARP_RATE = "gratuitousArpRate";
+    private static final int DEFAULT_GRATUITOUS_ARP_RATE = 100;
+    private static final int GRATUITOUS_ARP_TICK = 100;
+
+    private static final int MAC_LENGTH = Ethernet.DATALAYER_ADDRESS_LENGTH;
+    private static final int IP_LENGTH = Ip4Address.BYTE_LENGTH;
+    private static final int ETH_DST_OFFSET = 0;
+    private static final int ETH_SRC_OFFSET = 6;
+    private static final int ARP_SHA_OFFSET = 22;
+    private static final int ARP_SPA_OFFSET = 28;
+    private static final int ARP_THA_OFFSET = 32;
+    private static final int ARP_TPA_OFFSET = 38;
+
+    // untagged ethernet frame of ARP reply with the addresses left empty
+    private static final byte[] ARP_REPLY_TEMPLATE = new byte[] {
+            0, 0, 0, 0, 0, 0,           // eth dst
+            0, 0, 0, 0, 0, 0,           // eth src
+            0x08, 0x06,                 // ether type ARP
+            0x00, 0x01,                 // hardware type ethernet
+            0x08, 0x00,                 // protocol type IPv4
+            0x06, 0x04,                 // hardware and protocol address length
+            0x00, 0x02,                 // op code reply
+            0, 0, 0, 0, 0, 0,           // sender hardware address
+            0, 0, 0, 0,                 // sender protocol address
+            0, 0, 0, 0, 0, 0,           // target hardware address
+            0, 0, 0, 0                  // target protocol address
+    };
 
     @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
     protected PacketService packetService;
@@ -103,7 +169,7 @@ public class CordVtnArpProxy {
     protected ComponentConfigService compConfigService;
 
     @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
-    protected DeviceService deviceService;
+    protected NodePortService nodePortService;
 
     @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
     protected CordVtnNodeService nodeService;
@@ -111,16 +177,59 @@ public class CordVtnArpProxy {
     @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
     protected ServiceNetworkService snetService;
 
+    @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
+    protected CordVtnPipeline pipeline;
+
+    @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
+    protected DeviceService deviceService;
+
+    @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
+    protected MastershipService mastershipService;
+
+    @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
+    protected InstanceService instanceService;
+
     @Property(name = PRIVATE_GATEWAY_MAC, value = DEFAULT_GATEWAY_MAC_STR,
             label = "Fake MAC address for virtual network gateway")
-    private String privateGatewayMacStr = DEFAULT_GATEWAY_MAC_STR;
-    private MacAddress privateGatewayMac = MacAddress.valueOf(privateGatewayMacStr);
+    private volatile String privateGatewayMacStr = DEFAULT_GATEWAY_MAC_STR;
+    private volatile MacAddress privateGatewayMac = MacAddress.valueOf(privateGatewayMacStr);
+
+    @Property(name = ARP_RESPONDER, boolValue = false,
+            label = "Install ARP responder flows for the gateway IPs; " +
+                    "packet-in handles the requests for the instance IPs")
+    private volatile boolean arpResponder = false;
+
+    @Property(name = PACKET_RATE_LIMIT, intValue = DEFAULT_RATE,
+            label = "Packets per second handled per source MAC and device, 0 to disable")
+    private int packetRateLimit = DEFAULT_RATE;
+
+    @Property(name = DUPLICATE_WINDOW, intValue = DEFAULT_DUPLICATE_WINDOW,
+            label = "Window in milliseconds to drop the duplicated packets in, 0 to disable")
+    private int duplicateWindow = DEFAULT_DUPLICATE_WINDOW;
+
+    @Property(name = GRATUITOUS_ARP_RATE, intValue = DEFAULT_GRATUITOUS_ARP_RATE,
+            label = "Gratuitous ARP packets per second emitted to each device " +
+                    "when a gateway MAC address changes")
+    private volatile int gratuitousArpRate = DEFAULT_GRATUITOUS_ARP_RATE;
 
     private final PacketProcessor packetProcessor = new InternalPacketProcessor();
     private final Map<IpAddress, MacAddress> gateways = Maps.newConcurrentMap();
+    private final ArpResolutionTable arpTable = new ArpResolutionTable();
+    private final PacketRateLimiter rateLimiter =
+            newPacketRateLimiter(this.getClass().getSimpleName());
+    private final ExecutorService eventExecutor = newMonitoredExecutor(
+            this.getClass().getSimpleName(), "event-handler", log);
+    private final ScheduledExecutorService scheduler = newSingleThreadScheduledExecutor(
+            groupedThreads(this.getClass().getSimpleName(), "scheduler", log));
+    // gratuitous ARPs waiting to be emitted, per device in the order queued
+    private final Map<DeviceId, Set<GratuitousArp>> pendingArps = Maps.newHashMap();
+    // gratuitous ARPs each device may emit, guarded by pendingArps
+    private double gratuitousArpTokens;
 
     private NetworkConfigListener configListener = new InternalConfigListener();
     private ServiceNetworkListener snetListener = new InternalServiceNetworkListener();
+    private HostListener hostListener = new InternalHostListener();
+    private CordVtnNodeListener nodeListener = new InternalNodeListener();
     private ApplicationId appId;
 
     @Activate
@@ -136,15 +245,29 @@ public class CordVtnArpProxy {
         packetService.addProcessor(packetProcessor, PacketProcessor.director(0));
         requestPacket();
 
+        hostService.addListener(hostListener);
+        hostService.getHosts().forEach(this::updateArpTable);
+        nodeService.addListener(nodeListener);
+        pipeline.addFlowRuleProvider(this);
+        scheduler.scheduleWithFixedDelay(this::emitGratuitousArps,
+                GRATUITOUS_ARP_TICK, GRATUITOUS_ARP_TICK, MILLISECONDS);
+
         log.info("Started");
     }
 
     @Deactivate
     protected void deactivate() {
+        pipeline.removeFlowRuleProvider(this);
+        nodeService.removeListener(nodeListener);
+        hostService.removeListener(hostListener);
         packetService.removeProcessor(packetProcessor);
         snetService.removeListener(snetListener);
         netConfigService.removeListener(configListener);
         compConfigService.unregisterProperties(getClass(), false);
+        eventExecutor.shutdown();
+        scheduler.shutdown();
+        arpTable.clear();
+        rateLimiter.close();
 
         log.info("Stopped");
     }
@@ -157,8 +280,33 @@ public class CordVtnArpProxy {
         updatedMac = Tools.get(properties, PRIVATE_GATEWAY_MAC);
         if (!Strings.isNullOrEmpty(updatedMac) &&
                 !updatedMac.equals(privateGatewayMacStr)) {
+            MacAddress oldMac = privateGatewayMac;
             privateGatewayMacStr = updatedMac;
             privateGatewayMac = MacAddress.valueOf(privateGatewayMacStr);
+            updatePrivateGatewayMac(oldMac, privateGatewayMac);
+        }
+
+        Integer updatedArpRate = Tools.getIntegerProperty(properties, GRATUITOUS_ARP_RATE);
+        if (updatedArpRate != null && updatedArpRate > 0) {
+            gratuitousArpRate = updatedArpRate;
+        }
+
+        Boolean updatedResponder = Tools.isPropertyEnabled(properties, ARP_RESPONDER);
+        if (updatedResponder != null && updatedResponder != arpResponder) {
+            arpResponder = updatedResponder;
+            eventExecutor.execute(() -> populateArpResponders(arpResponder));
+        }
+
+        Integer updatedRate = Tools.getIntegerProperty(properties, PACKET_RATE_LIMIT);
+        if (updatedRate != null && updatedRate >= 0 && updatedRate != packetRateLimit) {
+            packetRateLimit = updatedRate;
+            rateLimiter.setRate(packetRateLimit);
+        }
+
+        Integer updatedWindow = Tools.getIntegerProperty(properties, DUPLICATE_WINDOW);
+        if (updatedWindow != null && updatedWindow >= 0 && updatedWindow != duplicateWindow) {
+            duplicateWindow = updatedWindow;
+            rateLimiter.setDuplicateWindow(duplicateWindow);
         }
 
         log.info("Modified");
@@ -221,6 +369,14 @@ public class CordVtnArpProxy {
         }
         gateways.put(gatewayIp, gatewayMac);
         log.debug("Added ARP proxy entry IP:{} MAC:{}", gatewayIp, gatewayMac);
+        if (!gatewayMac.equals(existing)) {
+            eventExecutor.execute(() -> updateArpResponder(gatewayIp));
+        }
+        if (existing != null && !existing.equals(gatewayMac)) {
+            // let the instances update their ARP caches for the new MAC
+            eventExecutor.execute(() -> sendGratuitousArp(
+                    gatewayIp, gatewayInstances(gatewayIp)));
+        }
     }
 
     /**
@@ -241,6 +397,7 @@ public class CordVtnArpProxy {
         }
         gateways.remove(gatewayIp);
         log.debug("Removed ARP proxy entry for IP:{} MAC: {}", gatewayIp, existing);
+        eventExecutor.execute(() -> updateArpResponder(gatewayIp));
     }
 
     /**
@@ -256,7 +413,7 @@ public class CordVtnArpProxy {
 
         MacAddress gatewayMac = gateways.get(targetIp);
         MacAddress replyMac = gatewayMac != null ? gatewayMac :
-                getMacFromHostService(targetIp);
+                getMacFromArpTable(ethPacket.getSourceMAC(), targetIp);
 
         if (replyMac.equals(MacAddress.NONE)) {
             log.trace("Failed to find MAC for {}", targetIp);
@@ -264,10 +421,14 @@ public class CordVtnArpProxy {
             return;
         }
 
-        Ethernet ethReply = ARP.buildArpReply(
-                targetIp,
-                replyMac,
-                ethPacket);
+        byte[] frame;
+        if (ethPacket.getVlanID() == Ethernet.VLAN_UNTAGGED &&
+                arpPacket.getHardwareAddressLength() == MAC_LENGTH &&
+                arpPacket.getProtocolAddressLength() == IP_LENGTH) {
+            frame = buildArpReply(targetIp, replyMac, ethPacket.getSourceMAC(), arpPacket);
+        } else {
+            frame = ARP.buildArpReply(targetIp, replyMac, ethPacket).serialize();
+        }
 
         TrafficTreatment treatment = DefaultTrafficTreatment.builder()
                 .setOutput(context.inPacket().receivedFrom().port())
@@ -276,7 +437,7 @@ public class CordVtnArpProxy {
         packetService.emit(new DefaultOutboundPacket(
                 context.inPacket().receivedFrom().deviceId(),
                 treatment,
-                ByteBuffer.wrap(ethReply.serialize())));
+                ByteBuffer.wrap(frame)));
 
         context.block();
     }
@@ -286,12 +447,17 @@ public class CordVtnArpProxy {
         Ip4Address targetIp = Ip4Address.valueOf(arpPacket.getTargetProtocolAddress());
 
         DeviceId deviceId = context.inPacket().receivedFrom().deviceId();
-        Host host = hostService.getHostsByIp(targetIp).stream()
-                .filter(h -> h.location().deviceId().equals(deviceId))
-                .findFirst()
-                .orElse(null);
+        Host host = arpTable.resolve(ethPacket.getSourceMAC(), targetIp.toInt());
+        if (host == null && !arpTable.contains(ethPacket.getSourceMAC())) {
+            // the host service does not tell the overlapping IPs apart,
+            // ask it only if the network of the sender is unknown
+            host = hostService.getHostsByIp(targetIp).stream()
+                    .filter(h -> h.location().deviceId().equals(deviceId))
+                    .findFirst()
+                    .orElse(null);
+        }
 
-        if (host == null) {
+        if (host == null || !host.location().deviceId().equals(deviceId)) {
             // do nothing for the unknown ARP reply
             log.trace("No host found for {} in {}", targetIp, deviceId);
             context.block();
@@ -339,16 +505,55 @@ public class CordVtnArpProxy {
         if (node == null || node.hostManagementInterface() == null) {
             return null;
         }
-        Optional<Port> port = deviceService.getPorts(deviceId).stream()
-                .filter(p -> p.annotations().value(PORT_NAME)
-                        .equals(node.hostManagementInterface()) &&
-                        p.isEnabled())
-                .findAny();
-        return port.isPresent() ? port.get().number() : null;
+        return nodePortService.portNumber(deviceId, node.hostManagementInterface());
+    }
+
+    /**
+     * Updates the private gateways with the old MAC address to the new one.
+     *
+     * @param oldMac old private gateway mac address
+     * @param newMac new private gateway mac address
+     */
+    private void updatePrivateGatewayMac(MacAddress oldMac, MacAddress newMac) {
+        gateways.entrySet().stream()
+                .filter(entry -> entry.getValue().equals(oldMac))
+                .map(Map.Entry::getKey)
+                .forEach(gatewayIp -> {
+                    gateways.replace(gatewayIp, oldMac, newMac);
+                    eventExecutor.execute(() -> {
+                        updateArpResponder(gatewayIp);
+                        sendGratuitousArp(gatewayIp, gatewayInstances(gatewayIp));
+                    });
+                });
+    }
+
+    /**
+     * Returns the instances behind a given gateway IP address, on the devices
+     * this controller is the master of. They are the instances of the public
+     * networks with the subnet of a public gateway, or the instances of the
+     * networks with a private gateway as the service IP.
+     *
+     * @param gatewayIp gateway ip address
+     * @return set of instances
+     */
+    private Set<Instance> gatewayInstances(IpAddress gatewayIp) {
+        MacAddress gatewayMac = gateways.get(gatewayIp);
+        boolean isPublic = gatewayMac != null && !gatewayMac.equals(privateGatewayMac);
+        return snetService.serviceNetworks().stream()
+                .filter(snet -> isPublic ?
+                        snet.type() == PUBLIC && snet.subnet() != null &&
+                                snet.subnet().contains(gatewayIp) :
+                        Objects.equals(snet.serviceIp(), gatewayIp))
+                .flatMap(snet -> instanceService.instances(snet.id()).stream())
+                .filter(instance -> mastershipService.isLocalMaster(instance.deviceId()))
+                .collect(Collectors.toSet());
     }
 
     /**
-     * Emits gratuitous ARP when a gateway mac address has been changed.
+     * Queues gratuitous ARP when a gateway mac address has been changed.
+     * The queued packets are emitted in per device bursts, paced at the
+     * configured rate. A newer announcement for the same gateway and port
+     * replaces the pending one.
      *
      * @param gatewayIp gateway ip address to update MAC
      * @param instances set of instances to send gratuitous ARP packet
@@ -359,18 +564,82 @@ public class CordVtnArpProxy {
             log.debug("Gateway {} is not registered to ARP proxy", gatewayIp);
             return;
         }
+        if (!gatewayIp.isIp4() || instances.isEmpty()) {
+            return;
+        }
 
-        Ethernet ethArp = buildGratuitousArp(gatewayIp.getIp4Address(), gatewayMac);
-        instances.forEach(instance -> {
-            TrafficTreatment treatment = DefaultTrafficTreatment.builder()
-                    .setOutput(instance.portNumber())
-                    .build();
+        // the frame is the same for all instances, serialize it only once
+        byte[] frame = buildGratuitousArp(gatewayIp.getIp4Address(), gatewayMac).serialize();
+        synchronized (pendingArps) {
+            instances.forEach(instance -> {
+                GratuitousArp garp = new GratuitousArp(
+                        instance.portNumber(), gatewayIp, frame);
+                Set<GratuitousArp> arps = pendingArps.computeIfAbsent(
+                        instance.deviceId(), deviceId -> Sets.newLinkedHashSet());
+                arps.remove(garp);
+                arps.add(garp);
+            });
+        }
+        log.debug("Queued gratuitous ARP for {} to {} instances",
+                  gatewayIp, instances.size());
+    }
 
-            packetService.emit(new DefaultOutboundPacket(
-                    instance.deviceId(),
-                    treatment,
-                    ByteBuffer.wrap(ethArp.serialize())));
-        });
+    private void emitGratuitousArps() {
+        double tokensPerTick = gratuitousArpRate * GRATUITOUS_ARP_TICK / 1000.0;
+        synchronized (pendingArps) {
+            // carry the fraction over the ticks to keep the rates below one
+            // packet per tick, and let an idle device burst one tick at most
+            gratuitousArpTokens = Math.min(Math.max(1, tokensPerTick),
+                                           gratuitousArpTokens + tokensPerTick);
+            int burst = (int) gratuitousArpTokens;
+            if (burst == 0 || pendingArps.isEmpty()) {
+                return;
+            }
+            gratuitousArpTokens -= burst;
+            pendingArps.forEach((deviceId, arps) -> {
+                Iterator<GratuitousArp> iterator = arps.iterator();
+                for (int count = 0; count < burst && iterator.hasNext(); count++) {
+                    GratuitousArp garp = iterator.next();
+                    iterator.remove();
+
+                    TrafficTreatment treatment = DefaultTrafficTreatment.builder()
+                            .setOutput(garp.portNumber)
+                            .build();
+
+                    packetService.emit(new DefaultOutboundPacket(
+                            deviceId,
+                            treatment,
+                            ByteBuffer.wrap(garp.frame)));
+                }
+            });
+            pendingArps.values().removeIf(Set::isEmpty);
+        }
+    }
+
+    /**
+     * Builds untagged ARP reply frame for a given ARP request by patching the
+     * addresses into a copy of the reply template, instead of building and
+     * serializing the packet objects. The frame is not pooled since the
+     * packet service can emit it asynchronously. The frame is the same as
+     * the serialized {@link ARP#buildArpReply} output.
+     *
+     * @param targetIp  target ip address of the request
+     * @param replyMac  mac address to reply with
+     * @param srcMac    source mac address of the request
+     * @param arpPacket arp request
+     * @return serialized ethernet frame
+     */
+    static byte[] buildArpReply(Ip4Address targetIp, MacAddress replyMac,
+                                MacAddress srcMac, ARP arpPacket) {
+        byte[] frame = ARP_REPLY_TEMPLATE.clone();
+        System.arraycopy(srcMac.toBytes(), 0, frame, ETH_DST_OFFSET, MAC_LENGTH);
+        System.arraycopy(replyMac.toBytes(), 0, frame, ETH_SRC_OFFSET, MAC_LENGTH);
+        System.arraycopy(replyMac.toBytes(), 0, frame, ARP_SHA_OFFSET, MAC_LENGTH);
+        System.arraycopy(targetIp.toOctets(), 0, frame, ARP_SPA_OFFSET, IP_LENGTH);
+        System.arraycopy(srcMac.toBytes(), 0, frame, ARP_THA_OFFSET, MAC_LENGTH);
+        System.arraycopy(arpPacket.getSenderProtocolAddress(), 0,
+                         frame, ARP_TPA_OFFSET, IP_LENGTH);
+        return frame;
     }
 
     /**
@@ -403,6 +672,55 @@ public class CordVtnArpProxy {
         return eth;
     }
 
+    /**
+     * Returns MAC address of an instance with a given target IP address in
+     * the network of the requester. It falls back to the host service only
+     * if the requester is not a known instance.
+     *
+     * @param srcMac   mac address of the requester
+     * @param targetIp target ip
+     * @return mac address, or NONE mac address if it fails to find the mac
+     */
+    private MacAddress getMacFromArpTable(MacAddress srcMac, Ip4Address targetIp) {
+        checkNotNull(targetIp);
+
+        Host host = arpTable.resolve(srcMac, targetIp.toInt());
+        if (host != null) {
+            log.trace("Found MAC from ARP table for {}", targetIp);
+            return host.mac();
+        }
+        if (arpTable.contains(srcMac)) {
+            // the host service could answer with a host in another network
+            return MacAddress.NONE;
+        }
+        return getMacFromHostService(targetIp);
+    }
+
+    /**
+     * Adds or updates the instance to the ARP table with the segment of its
+     * network. It removes the instance if the network has no segment.
+     *
+     * @param host host
+     */
+    private void updateArpTable(Host host) {
+        String netId = host.annotations().value(Instance.NETWORK_ID);
+        if (Strings.isNullOrEmpty(netId)) {
+            return;
+        }
+        ServiceNetwork snet = snetService.serviceNetwork(NetworkId.of(netId));
+        if (snet == null || snet.segmentId() == null) {
+            arpTable.remove(host);
+            return;
+        }
+        arpTable.add(snet.segmentId().id(), host);
+    }
+
+    private Set<Host> instances(NetworkId netId) {
+        return instanceService.instances(netId).stream()
+                .map(Instance::host)
+                .collect(Collectors.toSet());
+    }
+
     /**
      * Returns MAC address of a host with a given target IP address by asking to
      * host service. It does not support overlapping IP.
@@ -426,6 +744,129 @@ public class CordVtnArpProxy {
         }
     }
 
+    @Override
+    public Set<FlowRule> desiredFlowRules(DeviceId deviceId) {
+        if (!arpResponder) {
+            return ImmutableSet.of();
+        }
+        Set<FlowRule> rules = Sets.newHashSet();
+        gateways.forEach((targetIp, replyMac) -> {
+            FlowRule rule = arpResponderRule(deviceId, targetIp, replyMac);
+            if (rule != null) {
+                rules.add(rule);
+            }
+        });
+        return rules;
+    }
+
+    private void populateArpResponders(boolean install) {
+        Map<IpAddress, MacAddress> targets = ImmutableMap.copyOf(gateways);
+        nodeService.completeNodes().stream()
+                .map(CordVtnNode::integrationBridgeId)
+                .filter(mastershipService::isLocalMaster)
+                .forEach(deviceId -> {
+                    FlowRuleBatch.Builder batch = FlowRuleBatch.builder();
+                    targets.forEach((targetIp, replyMac) -> {
+                        FlowRule rule = install ?
+                                arpResponderRule(deviceId, targetIp, replyMac) :
+                                arpResponderRule(deviceId, targetIp);
+                        if (rule != null) {
+                            batch.process(install, rule);
+                        }
+                    });
+                    pipeline.processFlowRules(batch.build());
+                });
+    }
+
+    /**
+     * Installs, updates or removes the ARP responder flows of a given gateway
+     * IP address on the integration bridges depending on the current gateways.
+     * The instance IPs are not answered by the flows since the flows in the
+     * first table would answer the requests from every network.
+     *
+     * @param gatewayIp gateway ip address
+     */
+    private void updateArpResponder(IpAddress gatewayIp) {
+        if (!arpResponder || !gatewayIp.isIp4()) {
+            return;
+        }
+        MacAddress replyMac = gateways.get(gatewayIp);
+        nodeService.completeNodes().stream()
+                .map(CordVtnNode::integrationBridgeId)
+                .filter(mastershipService::isLocalMaster)
+                .forEach(deviceId -> {
+                    FlowRule rule = replyMac != null ?
+                            arpResponderRule(deviceId, gatewayIp, replyMac) :
+                            arpResponderRule(deviceId, gatewayIp);
+                    if (rule != null) {
+                        pipeline.processFlowRule(replyMac != null, rule);
+                    }
+                });
+    }
+
+    /**
+     * Returns the flow rule which turns an ARP request for a given IP address
+     * into the reply with a given MAC address and sends it back to the in port.
+     *
+     * @param deviceId device id
+     * @param targetIp target ip address
+     * @param replyMac mac address to reply with
+     * @return flow rule, or null if the device does not support the extensions
+     */
+    private FlowRule arpResponderRule(DeviceId deviceId, IpAddress targetIp,
+                                      MacAddress replyMac) {
+        Device device = deviceService.getDevice(deviceId);
+        if (!targetIp.isIp4() || device == null ||
+                !device.is(ExtensionTreatmentResolver.class)) {
+            log.trace("ARP responder is not supported for {} on {}", targetIp, deviceId);
+            return null;
+        }
+
+        ExtensionTreatmentResolver resolver = device.as(ExtensionTreatmentResolver.class);
+        TrafficTreatment treatment = DefaultTrafficTreatment.builder()
+                .extension(resolver.getExtensionInstruction(
+                        NICIRA_MOV_ETH_SRC_TO_DST.type()), deviceId)
+                .setEthSrc(replyMac)
+                .setArpOp(ARP.OP_REPLY)
+                .extension(resolver.getExtensionInstruction(
+                        NICIRA_MOV_ARP_SHA_TO_THA.type()), deviceId)
+                .extension(resolver.getExtensionInstruction(
+                        NICIRA_MOV_ARP_SPA_TO_TPA.type()), deviceId)
+                .setArpSha(replyMac)
+                .setArpSpa(targetIp)
+                .setOutput(PortNumber.IN_PORT)
+                .build();
+
+        return arpResponderRule(deviceId, targetIp, treatment);
+    }
+
+    private FlowRule arpResponderRule(DeviceId deviceId, IpAddress targetIp) {
+        // flow rules are identified without the treatment, enough to remove
+        return targetIp.isIp4() ? arpResponderRule(
+                deviceId, targetIp, DefaultTrafficTreatment.emptyTreatment()) : null;
+    }
+
+    private FlowRule arpResponderRule(DeviceId deviceId, IpAddress targetIp,
+                                      TrafficTreatment treatment) {
+        // VLAN tagged requests are left to the packet-in handler
+        TrafficSelector selector = DefaultTrafficSelector.builder()
+                .matchEthType(Ethernet.TYPE_ARP)
+                .matchVlanId(VlanId.NONE)
+                .matchArpOp(ARP.OP_REQUEST)
+                .matchArpTpa(targetIp.getIp4Address())
+                .build();
+
+        return DefaultFlowRule.builder()
+                .fromApp(appId)
+                .withSelector(selector)
+                .withTreatment(treatment)
+                .withPriority(PRIORITY_HIGH)
+                .forDevice(deviceId)
+                .forTable(TABLE_ZERO)
+                .makePermanent()
+                .build();
+    }
+
     private class InternalPacketProcessor implements PacketProcessor {
 
         @Override
@@ -439,6 +880,16 @@ public class CordVtnArpProxy {
             }
 
             ARP arpPacket = (ARP) ethPacket.getPayload();
+            if (arpPacket.getProtocolAddressLength() != IP_LENGTH) {
+                return;
+            }
+            if (!rateLimiter.tryAcquire(context.inPacket().receivedFrom().deviceId(),
+                                        ethPacket.getSourceMAC(),
+                                        new ArpSignature(arpPacket))) {
+                log.trace("Dropped ARP from {}", ethPacket.getSourceMAC());
+                context.block();
+                return;
+            }
             switch (arpPacket.getOpCode()) {
                 case ARP.OP_REQUEST:
                     processArpRequest(context, ethPacket);
@@ -452,12 +903,46 @@ public class CordVtnArpProxy {
         }
     }
 
+    /**
+     * Identifies an ARP packet of a source by the op code and the protocol
+     * addresses, to suppress the duplicated packets.
+     */
+    private static final class ArpSignature {
+        private final short opCode;
+        private final int senderIp;
+        private final int targetIp;
+
+        private ArpSignature(ARP arpPacket) {
+            this.opCode = arpPacket.getOpCode();
+            this.senderIp = Ip4Address.valueOf(arpPacket.getSenderProtocolAddress()).toInt();
+            this.targetIp = Ip4Address.valueOf(arpPacket.getTargetProtocolAddress()).toInt();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj instanceof ArpSignature) {
+                ArpSignature that = (ArpSignature) obj;
+                return opCode == that.opCode &&
+                        senderIp == that.senderIp &&
+                        targetIp == that.targetIp;
+            }
+            return false;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(opCode, senderIp, targetIp);
+        }
+    }
+
     private class InternalServiceNetworkListener implements ServiceNetworkListener {
 
         @Override
         public boolean isRelevant(ServiceNetworkEvent event) {
-            ServiceNetwork snet = event.subject();
-            return snet.serviceIp() != null;
+            return event.subject() != null;
         }
 
         @Override
@@ -466,10 +951,19 @@ public class CordVtnArpProxy {
             switch (event.type()) {
                 case SERVICE_NETWORK_CREATED:
                 case SERVICE_NETWORK_UPDATED:
-                    addGateway(snet.serviceIp(), privateGatewayMac);
+                    if (snet.serviceIp() != null) {
+                        addGateway(snet.serviceIp(), privateGatewayMac);
+                    }
+                    // the segment of the network may have changed
+                    eventExecutor.execute(() -> instances(snet.id())
+                            .forEach(CordVtnArpProxy.this::updateArpTable));
                     break;
                 case SERVICE_NETWORK_REMOVED:
-                    removeGateway(snet.serviceIp());
+                    if (snet.serviceIp() != null) {
+                        removeGateway(snet.serviceIp());
+                    }
+                    eventExecutor.execute(() -> instances(snet.id())
+                            .forEach(arpTable::remove));
                     break;
                 case SERVICE_PORT_CREATED:
                 case SERVICE_PORT_UPDATED:
@@ -481,6 +975,85 @@ public class CordVtnArpProxy {
         }
     }
 
+    private static final class GratuitousArp {
+        private final PortNumber portNumber;
+        private final IpAddress gatewayIp;
+        private final byte[] frame;
+
+        private GratuitousArp(PortNumber portNumber, IpAddress gatewayIp, byte[] frame) {
+            this.portNumber = portNumber;
+            this.gatewayIp = gatewayIp;
+            this.frame = frame;
+        }
+
+        // the frame is not a part of the identity so that a newer frame
+        // for the same port and gateway replaces the pending one
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj instanceof GratuitousArp) {
+                GratuitousArp that = (GratuitousArp) obj;
+                return Objects.equals(portNumber, that.portNumber) &&
+                        Objects.equals(gatewayIp, that.gatewayIp);
+            }
+            return false;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(portNumber, gatewayIp);
+        }
+    }
+
+    private class InternalHostListener implements HostListener {
+
+        @Override
+        public void event(HostEvent event) {
+            Host host = event.subject();
+            Host prevHost = event.prevSubject();
+            switch (event.type()) {
+                case HOST_ADDED:
+                case HOST_UPDATED:
+                case HOST_MOVED:
+                    eventExecutor.execute(() -> {
+                        if (prevHost != null) {
+                            arpTable.remove(prevHost);
+                        }
+                        updateArpTable(host);
+                    });
+                    break;
+                case HOST_REMOVED:
+                    eventExecutor.execute(() -> arpTable.remove(host));
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    private class InternalNodeListener implements CordVtnNodeListener {
+
+        @Override
+        public boolean isRelevant(CordVtnNodeEvent event) {
+            return arpResponder && event.type() == CordVtnNodeEvent.Type.NODE_COMPLETE;
+        }
+
+        @Override
+        public void event(CordVtnNodeEvent event) {
+            DeviceId deviceId = event.subject().integrationBridgeId();
+            eventExecutor.execute(() -> {
+                if (!mastershipService.isLocalMaster(deviceId)) {
+                    return;
+                }
+                FlowRuleBatch.Builder batch = FlowRuleBatch.builder();
+                desiredFlowRules(deviceId).forEach(batch::add);
+                pipeline.processFlowRules(batch.build());
+            });
+        }
+    }
+
     private void readPublicGateways() {
         CordVtnConfig config = netConfigService.getConfig(appId, CordVtnConfig.class);
         if (config == null) {
@@ -488,10 +1061,10 @@ public class CordVtnArpProxy {
             return;
         }
 
+        // gratuitous ARP is sent by addGateway in case the MAC is changed
         config.publicGateways().entrySet().forEach(entry -> {
             addGateway(entry.getKey(), entry.getValue());
         });
-        // TODO send gratuitous arp in case the MAC is changed
     }
 
     private class InternalConfigListener implements NetworkConfigListener {
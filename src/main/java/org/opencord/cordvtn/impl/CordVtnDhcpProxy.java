@@ -55,7 +55,6 @@ import org.onosproject.net.packet.PacketService;
 import org.opencord.cordvtn.api.Constants;
 import org.opencord.cordvtn.api.core.Instance;
 import org.opencord.cordvtn.api.core.ServiceNetworkService;
-import org.opencord.cordvtn.api.net.NetworkId;
 import org.opencord.cordvtn.api.net.ServiceNetwork;
 import org.osgi.service.component.ComponentContext;
 import org.slf4j.Logger;
@@ -75,6 +74,9 @@ import static org.opencord.cordvtn.api.Constants.DEFAULT_GATEWAY_MAC_STR;
 import static org.opencord.cordvtn.api.net.ServiceNetwork.DependencyType.BIDIRECTIONAL;
 import static org.opencord.cordvtn.api.net.ServiceNetwork.NetworkType.MANAGEMENT_HOST;
 import static org.opencord.cordvtn.api.net.ServiceNetwork.NetworkType.MANAGEMENT_LOCAL;
+import static org.opencord.cordvtn.impl.PacketRateLimiter.DEFAULT_DUPLICATE_WINDOW;
+import static org.opencord.cordvtn.impl.PacketRateLimiter.DEFAULT_RATE;
+import static org.opencord.cordvtn.impl.PacketRateLimiter.newPacketRateLimiter;
 import static org.slf4j.LoggerFactory.getLogger;
 
 /**
@@ -86,6 +88,8 @@ public class CordVtnDhcpProxy {
     protected final Logger log = getLogger(getClass());
 
     private static final String DHCP_SERVER_MAC = "dhcpServerMac";
+    private static final String PACKET_RATE_LIMIT = "packetRateLimit";
+    private static final String DUPLICATE_WINDOW = "duplicateWindow";
 
     private static final byte DHCP_OPTION_MTU = (byte) 26;
     private static final byte DHCP_OPTION_CLASSLESS_STATIC_ROUTE = (byte) 121;
@@ -116,7 +120,17 @@ public class CordVtnDhcpProxy {
             label = "Fake MAC address for DHCP server interface")
     private String dhcpServerMac = DEFAULT_GATEWAY_MAC_STR;
 
+    @Property(name = PACKET_RATE_LIMIT, intValue = DEFAULT_RATE,
+            label = "Packets per second handled per source MAC and device, 0 to disable")
+    private int packetRateLimit = DEFAULT_RATE;
+
+    @Property(name = DUPLICATE_WINDOW, intValue = DEFAULT_DUPLICATE_WINDOW,
+            label = "Window in milliseconds to drop the duplicated packets in, 0 to disable")
+    private int duplicateWindow = DEFAULT_DUPLICATE_WINDOW;
+
     private final PacketProcessor packetProcessor = new InternalPacketProcessor();
+    private final PacketRateLimiter rateLimiter =
+            newPacketRateLimiter(this.getClass().getSimpleName());
 
     private ApplicationId appId;
 
@@ -135,6 +149,7 @@ public class CordVtnDhcpProxy {
         packetService.removeProcessor(packetProcessor);
         configService.unregisterProperties(getClass(), false);
         cancelPackets();
+        rateLimiter.close();
 
         log.info("Stopped");
     }
@@ -149,6 +164,18 @@ public class CordVtnDhcpProxy {
             dhcpServerMac = updatedMac;
         }
 
+        Integer updatedRate = Tools.getIntegerProperty(properties, PACKET_RATE_LIMIT);
+        if (updatedRate != null && updatedRate >= 0 && updatedRate != packetRateLimit) {
+            packetRateLimit = updatedRate;
+            rateLimiter.setRate(packetRateLimit);
+        }
+
+        Integer updatedWindow = Tools.getIntegerProperty(properties, DUPLICATE_WINDOW);
+        if (updatedWindow != null && updatedWindow >= 0 && updatedWindow != duplicateWindow) {
+            duplicateWindow = updatedWindow;
+            rateLimiter.setDuplicateWindow(duplicateWindow);
+        }
+
         log.info("Modified");
     }
 
@@ -195,6 +222,14 @@ public class CordVtnDhcpProxy {
             }
 
             DHCP dhcpPacket = (DHCP) udpPacket.getPayload();
+            if (dhcpPacket != null && !rateLimiter.tryAcquire(
+                    context.inPacket().receivedFrom().deviceId(),
+                    ethPacket.getSourceMAC(),
+                    signature(dhcpPacket))) {
+                log.trace("Dropped DHCP from {}", ethPacket.getSourceMAC());
+                context.block();
+                return;
+            }
             processDhcp(context, dhcpPacket);
         }
 
@@ -249,6 +284,12 @@ public class CordVtnDhcpProxy {
             }
         }
 
+        private long signature(DHCP dhcpPacket) {
+            DHCPPacketType type = getPacketType(dhcpPacket);
+            return ((long) dhcpPacket.getTransactionId() << 8) |
+                    (type == null ? 0 : type.getValue());
+        }
+
         private DHCPPacketType getPacketType(DHCP dhcpPacket) {
             DHCPOption optType = dhcpPacket.getOption(OptionCode_MessageType);
             if (optType == null) {
@@ -426,8 +467,11 @@ public class CordVtnDhcpProxy {
             });
 
             // static routes for the bidirectional subscribers
-            Set<ServiceNetwork> subscribers = snetService.serviceNetworks().stream()
-                    .filter(net -> isBidirectionalProvider(net, snet.id()))
+            Set<ServiceNetwork> subscribers = snetService.subscribers(snet.id())
+                    .entrySet().stream()
+                    .filter(subscriber -> subscriber.getValue() == BIDIRECTIONAL)
+                    .map(subscriber -> snetService.serviceNetwork(subscriber.getKey()))
+                    .filter(Objects::nonNull)
                     .collect(Collectors.toSet());
 
             subscribers.forEach(subscriber -> {
@@ -439,12 +483,6 @@ public class CordVtnDhcpProxy {
             return Bytes.toArray(result);
         }
 
-        private boolean isBidirectionalProvider(ServiceNetwork snet, NetworkId targetNetId) {
-            return snet.providers().entrySet().stream()
-                    .filter(p -> Objects.equals(p.getKey(), targetNetId))
-                    .anyMatch(p -> p.getValue() == BIDIRECTIONAL);
-        }
-
         private List<Byte> getSignificantOctets(IpPrefix ipPrefix) {
             int numOfOctets = ipPrefix.prefixLength() / 8;
             if (ipPrefix.prefixLength() % 8 != 0) {
@@ -45,16 +45,14 @@ import org.slf4j.Logger;
 
 import java.util.Objects;
 import java.util.Set;
-import java.util.concurrent.ExecutorService;
 import java.util.stream.Collectors;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static java.lang.String.format;
-import static java.util.concurrent.Executors.newSingleThreadExecutor;
-import static org.onlab.util.Tools.groupedThreads;
 import static org.opencord.cordvtn.api.Constants.*;
 import static org.opencord.cordvtn.api.node.CordVtnNodeState.*;
+import static org.opencord.cordvtn.impl.MonitoredExecutor.newMonitoredExecutor;
 import static org.slf4j.LoggerFactory.getLogger;
 
 /**
@@ -92,8 +90,8 @@ public class CordVtnNodeManager extends ListenerRegistry<CordVtnNodeEvent, CordV
     @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
     protected CordVtnNodeStore nodeStore;
 
-    private final ExecutorService eventExecutor = newSingleThreadExecutor(
-            groupedThreads(this.getClass().getSimpleName(), "event-handler", log));
+    private final MonitoredExecutor eventExecutor = newMonitoredExecutor(
+            this.getClass().getSimpleName(), "event-handler", log);
 
     private final NetworkConfigListener configListener = new InternalConfigListener();
     private final CordVtnNodeStoreDelegate delegate = new InternalCordVtnNodeStoreDelegate();
@@ -219,7 +217,9 @@ public class CordVtnNodeManager extends ListenerRegistry<CordVtnNodeEvent, CordV
             switch (event.type()) {
                 case CONFIG_ADDED:
                 case CONFIG_UPDATED:
-                    eventExecutor.execute(CordVtnNodeManager.this::readNodes);
+                    // reading the nodes is idempotent, skip the pending reads
+                    eventExecutor.execute(CordVtnConfig.class,
+                                          CordVtnNodeManager.this::readNodes);
                     break;
                 default:
                     break;
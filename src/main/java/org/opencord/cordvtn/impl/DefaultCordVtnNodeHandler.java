@@ -30,6 +30,7 @@ import org.onosproject.cluster.LeadershipService;
 import org.onosproject.cluster.NodeId;
 import org.onosproject.core.ApplicationId;
 import org.onosproject.core.CoreService;
+import org.onosproject.mastership.MastershipService;
 import org.onosproject.net.ConnectPoint;
 import org.onosproject.net.Device;
 import org.onosproject.net.DeviceId;
@@ -76,8 +77,6 @@ import java.util.concurrent.ExecutorService;
 import java.util.stream.Collectors;
 
 import static java.lang.String.format;
-import static java.util.concurrent.Executors.newSingleThreadExecutor;
-import static org.onlab.util.Tools.groupedThreads;
 import static org.onosproject.net.AnnotationKeys.PORT_NAME;
 import static org.onosproject.net.Device.Type.SWITCH;
 import static org.onosproject.net.behaviour.TunnelDescription.Type.VXLAN;
@@ -89,6 +88,7 @@ import static org.opencord.cordvtn.impl.DefaultCordVtnNode.updatedState;
 import static org.opencord.cordvtn.impl.RemoteIpCommandUtil.*;
 import static org.opencord.cordvtn.impl.RemoteIpCommandUtil.disconnect;
 import static org.opencord.cordvtn.impl.RemoteIpCommandUtil.isInterfaceUp;
+import static org.opencord.cordvtn.impl.MonitoredExecutor.newMonitoredExecutor;
 import static org.slf4j.LoggerFactory.getLogger;
 
 /**
@@ -116,6 +116,9 @@ public class DefaultCordVtnNodeHandler implements CordVtnNodeHandler {
     @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
     protected ClusterService clusterService;
 
+    @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
+    protected MastershipService mastershipService;
+
     @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
     protected NetworkConfigService configService;
 
@@ -143,8 +146,8 @@ public class DefaultCordVtnNodeHandler implements CordVtnNodeHandler {
     @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
     protected CordVtnPipeline pipelineService;
 
-    private final ExecutorService eventExecutor = newSingleThreadExecutor(
-            groupedThreads(this.getClass().getSimpleName(), "event-handler", log));
+    private final ExecutorService eventExecutor = newMonitoredExecutor(
+            this.getClass().getSimpleName(), "event-handler", log);
     private final NetworkConfigListener configListener = new InternalConfigListener();
     private final DeviceListener deviceListener = new InternalDeviceListener();
     private final DeviceHandler ovsdbHandler = new OvsdbDeviceHandler();
@@ -313,7 +316,7 @@ public class DefaultCordVtnNodeHandler implements CordVtnNodeHandler {
 
     private void postInit(CordVtnNode node) {
         // TODO move the below line to DefaultCordVtnPipeline
-        pipelineService.initPipeline(node);
+        pipelineService.reconcile(node);
 
         // TODO move the logic below to InstanceManager
         // adds existing instances to the host list
@@ -419,14 +422,29 @@ public class DefaultCordVtnNodeHandler implements CordVtnNodeHandler {
         }
     }
 
+    /**
+     * Returns if this cluster member handles the works of the supplied node.
+     * The master of the OVSDB device of the node owns the node, or the leader
+     * of the application when the node or the device has no master.
+     *
+     * @param node cordvtn node; null for the unregistered devices
+     * @return true if the local member owns the node
+     */
+    private boolean isNodeOwner(CordVtnNode node) {
+        NodeId owner = node == null ? null : mastershipService.getMasterFor(node.ovsdbId());
+        if (owner == null) {
+            owner = leadershipService.getLeader(appId.name());
+        }
+        return Objects.equals(localNodeId, owner);
+    }
+
     private class InternalDeviceListener implements DeviceListener {
 
         @Override
         public void event(DeviceEvent event) {
             eventExecutor.execute(() -> {
-                NodeId leader = leadershipService.getLeader(appId.name());
-                if (!Objects.equals(localNodeId, leader)) {
-                    // do not allow to proceed without leadership
+                if (!isNodeOwner(nodeService.node(event.subject().id()))) {
+                    // do not allow to proceed without the node ownership
                     return;
                 }
                 handle(event);
@@ -543,9 +561,8 @@ public class DefaultCordVtnNodeHandler implements CordVtnNodeHandler {
         @Override
         public void event(CordVtnNodeEvent event) {
             eventExecutor.execute(() -> {
-                NodeId leader = leadershipService.getLeader(appId.name());
-                if (!Objects.equals(localNodeId, leader)) {
-                    // do not allow to proceed without leadership
+                if (!isNodeOwner(event.subject())) {
+                    // do not allow to proceed without the node ownership
                     return;
                 }
                 handle(event);
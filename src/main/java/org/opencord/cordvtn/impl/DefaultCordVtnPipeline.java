@@ -15,9 +15,15 @@
  */
 package org.opencord.cordvtn.impl;
 
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import org.apache.felix.scr.annotations.Activate;
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Deactivate;
+import org.apache.felix.scr.annotations.Modified;
+import org.apache.felix.scr.annotations.Property;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.ReferenceCardinality;
 import org.apache.felix.scr.annotations.Service;
@@ -27,29 +33,48 @@ import org.onlab.packet.Ip4Address;
 import org.onlab.packet.IpAddress;
 import org.onlab.packet.TpPort;
 import org.onlab.packet.VlanId;
-import org.onosproject.net.AnnotationKeys;
-import org.onosproject.net.Port;
+import org.onlab.util.Tools;
+import org.onosproject.cfg.ComponentConfigService;
 import org.opencord.cordvtn.api.Constants;
 import org.opencord.cordvtn.api.core.CordVtnPipeline;
+import org.opencord.cordvtn.api.core.DesiredFlowRuleProvider;
+import org.opencord.cordvtn.api.core.FlowRuleBatch;
+import org.opencord.cordvtn.api.core.InstanceService;
 import org.opencord.cordvtn.api.node.CordVtnNode;
+import org.opencord.cordvtn.api.node.NodePortService;
 import org.onosproject.core.ApplicationId;
 import org.onosproject.core.CoreService;
 import org.onosproject.net.DeviceId;
 import org.onosproject.net.PortNumber;
-import org.onosproject.net.device.DeviceService;
 import org.onosproject.net.flow.DefaultFlowRule;
 import org.onosproject.net.flow.DefaultTrafficSelector;
 import org.onosproject.net.flow.DefaultTrafficTreatment;
+import org.onosproject.net.flow.FlowEntry;
 import org.onosproject.net.flow.FlowRule;
+import org.onosproject.net.flow.FlowRuleEvent;
+import org.onosproject.net.flow.FlowRuleListener;
+import org.onosproject.net.flow.FlowRuleOperation;
 import org.onosproject.net.flow.FlowRuleOperations;
 import org.onosproject.net.flow.FlowRuleOperationsContext;
 import org.onosproject.net.flow.FlowRuleService;
 import org.onosproject.net.flow.TrafficSelector;
 import org.onosproject.net.flow.TrafficTreatment;
+import org.osgi.service.component.ComponentContext;
 import org.slf4j.Logger;
 
+import java.util.Dictionary;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
 
 import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.concurrent.Executors.newSingleThreadScheduledExecutor;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.onlab.util.Tools.groupedThreads;
+import static org.onosproject.net.flow.FlowEntry.FlowEntryState.PENDING_REMOVE;
+import static org.onosproject.net.flow.FlowEntry.FlowEntryState.REMOVED;
+import static org.onosproject.net.flow.FlowRuleOperation.Type.REMOVE;
 import static org.opencord.cordvtn.api.Constants.DEFAULT_TUNNEL;
 import static org.opencord.cordvtn.api.node.CordVtnNodeState.COMPLETE;
 import static org.slf4j.LoggerFactory.getLogger;
@@ -63,75 +88,281 @@ public class DefaultCordVtnPipeline implements CordVtnPipeline {
 
     protected final Logger log = getLogger(getClass());
 
+    private static final String FLOW_COALESCE_WINDOW = "flowCoalesceWindow";
+    private static final int DEFAULT_FLOW_COALESCE_WINDOW = 5;
+
     @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
     protected CoreService coreService;
 
+    @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
+    protected ComponentConfigService configService;
+
     @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
     protected FlowRuleService flowRuleService;
 
     @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
-    protected DeviceService deviceService;
+    protected NodePortService nodePortService;
+
+    // not used here, activates the instance service before the instance
+    // handlers, they refer to the pipeline and look up the instances
+    @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
+    protected InstanceService instanceService;
 
     private static final int VXLAN_UDP_PORT = 4789;
+    private static final Set<Integer> PIPELINE_PRIORITIES = ImmutableSet.of(
+            PRIORITY_MANAGEMENT, PRIORITY_HIGH, PRIORITY_DEFAULT, PRIORITY_LOW, PRIORITY_ZERO);
+
+    @Property(name = FLOW_COALESCE_WINDOW, intValue = DEFAULT_FLOW_COALESCE_WINDOW,
+            label = "Window in milliseconds to coalesce flow rule updates per device, " +
+                    "0 to apply the updates immediately")
+    private volatile int flowCoalesceWindow = DEFAULT_FLOW_COALESCE_WINDOW;
+
+    private final ScheduledExecutorService flushExecutor = newSingleThreadScheduledExecutor(
+            groupedThreads(this.getClass().getSimpleName(), "flow-coalescer", log));
+
+    // pending flow rule operations per device, the last operation on a rule wins
+    private final Map<DeviceId, Map<FlowRule, FlowRuleOperation>> pendingOps =
+            Maps.newHashMap();
+
+    private final Set<DesiredFlowRuleProvider> flowRuleProviders = Sets.newCopyOnWriteArraySet();
+    private final FlowRuleIndex flowRuleIndex = new FlowRuleIndex();
+    private final FlowRuleListener flowRuleListener = new InternalFlowRuleListener();
 
     private ApplicationId appId;
 
     @Activate
     protected void activate() {
         appId = coreService.registerApplication(Constants.CORDVTN_APP_ID);
+        configService.registerProperties(getClass());
+        flowRuleService.addListener(flowRuleListener);
+        flowRuleService.getFlowRulesById(appId).forEach(flowRuleIndex::add);
         log.info("Started");
     }
 
     @Deactivate
     protected void deactivate() {
+        configService.unregisterProperties(getClass(), false);
+        synchronized (pendingOps) {
+            // the batches after this are applied immediately
+            flushExecutor.shutdown();
+        }
+        flushAll();
+        flowRuleService.removeListener(flowRuleListener);
+        flowRuleIndex.clear();
         log.info("Stopped");
     }
 
+    @Modified
+    protected void modified(ComponentContext context) {
+        Dictionary<?, ?> properties = context.getProperties();
+
+        Integer updatedWindow = Tools.getIntegerProperty(properties, FLOW_COALESCE_WINDOW);
+        if (updatedWindow != null && updatedWindow >= 0 &&
+                updatedWindow != flowCoalesceWindow) {
+            flowCoalesceWindow = updatedWindow;
+            if (flowCoalesceWindow == 0) {
+                flushAll();
+            }
+        }
+
+        log.info("Modified");
+    }
+
     @Override
     public void cleanupPipeline() {
-        flowRuleService.getFlowRulesById(appId).forEach(flowRule -> processFlowRule(false, flowRule));
+        FlowRuleBatch.Builder batch = FlowRuleBatch.builder();
+        flowRuleService.getFlowRulesById(appId).forEach(batch::remove);
+        processFlowRules(batch.build());
     }
 
     @Override
     public void initPipeline(CordVtnNode node) {
         checkArgument(node.state() == COMPLETE, "Node is not in COMPLETE state");
 
-        PortNumber dataPort = getPortNumber(node.integrationBridgeId(), node.dataInterface());
-        PortNumber tunnelPort = getPortNumber(node.integrationBridgeId(), DEFAULT_TUNNEL);
+        FlowRuleBatch.Builder batch = FlowRuleBatch.builder();
+        populatePipelineRules(batch, node);
+        processFlowRules(batch.build());
+    }
+
+    @Override
+    public void reconcile(CordVtnNode node) {
+        checkArgument(node.state() == COMPLETE, "Node is not in COMPLETE state");
+        DeviceId deviceId = node.integrationBridgeId();
+        // apply the pending updates first not to reconcile against them
+        flush(deviceId);
+
+        FlowRuleBatch.Builder pipelineRules = FlowRuleBatch.builder();
+        populatePipelineRules(pipelineRules, node);
+        Map<FlowRule, FlowRule> desired = Maps.newHashMap();
+        pipelineRules.build().operations().forEach(op -> desired.put(op.rule(), op.rule()));
+        flowRuleProviders.forEach(provider -> provider.desiredFlowRules(deviceId)
+                .forEach(rule -> desired.put(rule, rule)));
+
+        FlowRuleBatch.Builder delta = FlowRuleBatch.builder();
+        Set<FlowRule> installed = Sets.newHashSet();
+        for (FlowEntry entry : flowRuleService.getFlowEntries(deviceId)) {
+            if (entry.appId() != appId.id() || entry.state() == PENDING_REMOVE ||
+                    entry.state() == REMOVED) {
+                continue;
+            }
+            FlowRule rule = desired.get(entry);
+            if (rule == null) {
+                // do not touch the rules not made by the pipeline, packet
+                // intercepts for an example
+                if (PIPELINE_PRIORITIES.contains(entry.priority())) {
+                    delta.remove(entry);
+                }
+            } else {
+                installed.add(rule);
+                if (!rule.treatment().equals(entry.treatment())) {
+                    delta.add(rule);
+                }
+            }
+        }
+        desired.values().stream()
+                .filter(rule -> !installed.contains(rule))
+                .forEach(delta::add);
+
+        FlowRuleBatch result = delta.build();
+        log.info("Reconciled flow rules on {}: {} operations",
+                 deviceId, result.operations().size());
+        processFlowRules(result);
+    }
+
+    @Override
+    public Set<FlowRule> flowRules(DeviceId deviceId, int tableId, PortNumber output) {
+        return flowRuleIndex.flowRules(deviceId, tableId, output);
+    }
+
+    @Override
+    public void addFlowRuleProvider(DesiredFlowRuleProvider provider) {
+        flowRuleProviders.add(provider);
+    }
+
+    @Override
+    public void removeFlowRuleProvider(DesiredFlowRuleProvider provider) {
+        flowRuleProviders.remove(provider);
+    }
+
+    private void populatePipelineRules(FlowRuleBatch.Builder batch, CordVtnNode node) {
+        DeviceId deviceId = node.integrationBridgeId();
+        PortNumber dataPort = nodePortService.portNumber(deviceId, node.dataInterface());
+        PortNumber tunnelPort = nodePortService.portNumber(deviceId, DEFAULT_TUNNEL);
         PortNumber hostMgmtPort = node.hostManagementInterface() == null ?
-                null : getPortNumber(node.integrationBridgeId(), node.hostManagementInterface());
+                null : nodePortService.portNumber(deviceId, node.hostManagementInterface());
 
-        processTableZero(node.integrationBridgeId(),
+        processTableZero(batch,
+                node.integrationBridgeId(),
                 dataPort,
                 node.dataIp().ip(),
                 node.localManagementIp().ip());
 
-        processInPortTable(node.integrationBridgeId(),
+        processInPortTable(batch,
+                node.integrationBridgeId(),
                 tunnelPort,
                 dataPort,
                 hostMgmtPort);
 
-        processAccessTypeTable(node.integrationBridgeId(), dataPort);
-        processVlanTable(node.integrationBridgeId(), dataPort);
+        processAccessTypeTable(batch, node.integrationBridgeId(), dataPort);
+        processVlanTable(batch, node.integrationBridgeId(), dataPort);
     }
 
     @Override
     public void processFlowRule(boolean install, FlowRule rule) {
+        processFlowRules(FlowRuleBatch.builder().process(install, rule).build());
+    }
+
+    @Override
+    public void processFlowRules(FlowRuleBatch batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        synchronized (pendingOps) {
+            int window = flushExecutor.isShutdown() ? 0 : flowCoalesceWindow;
+            batch.operations().forEach(op -> {
+                // keep the index in line with the requests, the flow rule
+                // events only reach the node that owns the device
+                if (op.type() == REMOVE) {
+                    flowRuleIndex.remove(op.rule());
+                } else {
+                    flowRuleIndex.add(op.rule());
+                }
+                DeviceId deviceId = op.rule().deviceId();
+                Map<FlowRule, FlowRuleOperation> deviceOps = pendingOps.get(deviceId);
+                if (deviceOps == null) {
+                    deviceOps = Maps.newLinkedHashMap();
+                    pendingOps.put(deviceId, deviceOps);
+                    if (window > 0) {
+                        flushExecutor.schedule(() -> flush(deviceId), window, MILLISECONDS);
+                    }
+                }
+                fold(deviceOps, op);
+            });
+            if (window == 0) {
+                // the operations queued before the window was disabled are
+                // folded into this batch, so nothing older is applied later
+                batch.operations().stream()
+                        .map(op -> op.rule().deviceId())
+                        .distinct()
+                        .forEach(this::flush);
+            }
+        }
+    }
+
+    private void flush(DeviceId deviceId) {
+        // apply under the lock to hand the batches to the flow rule service
+        // in the order they were folded, applying only queues the operations
+        synchronized (pendingOps) {
+            Map<FlowRule, FlowRuleOperation> deviceOps = pendingOps.remove(deviceId);
+            if (deviceOps != null) {
+                applyFlowRules(deviceId, deviceOps);
+            }
+        }
+    }
+
+    private void flushAll() {
+        Set<DeviceId> devices;
+        synchronized (pendingOps) {
+            devices = ImmutableSet.copyOf(pendingOps.keySet());
+        }
+        devices.forEach(this::flush);
+    }
+
+    private void applyFlowRules(DeviceId deviceId, Map<FlowRule, FlowRuleOperation> deviceOps) {
+        List<FlowRule> toRemove = Lists.newArrayList();
+        List<FlowRule> toAdd = Lists.newArrayList();
+        deviceOps.values().forEach(op -> (op.type() == REMOVE ? toRemove : toAdd).add(op.rule()));
+
+        // the operations are folded per rule, so staging the removals
+        // before the additions does not change the outcome of any rule
         FlowRuleOperations.Builder oBuilder = FlowRuleOperations.builder();
-        oBuilder = install ? oBuilder.add(rule) : oBuilder.remove(rule);
+        toRemove.forEach(oBuilder::remove);
+        if (!toRemove.isEmpty() && !toAdd.isEmpty()) {
+            oBuilder.newStage();
+        }
+        toAdd.forEach(oBuilder::add);
 
         flowRuleService.apply(oBuilder.build(new FlowRuleOperationsContext() {
             @Override
             public void onError(FlowRuleOperations ops) {
-                log.error(String.format("Failed %s, %s", ops.toString(), rule.toString()));
+                log.error(String.format("Failed %s on %s", ops.toString(), deviceId));
             }
         }));
     }
 
-    private void processTableZero(DeviceId deviceId, PortNumber dataPort, IpAddress dataIp,
+    private static void fold(Map<FlowRule, FlowRuleOperation> deviceOps, FlowRuleOperation op) {
+        // the last operation on a rule wins; flow rule equality does not
+        // cover the treatment, so remove the existing entry to keep the
+        // rule of the latest operation
+        deviceOps.remove(op.rule());
+        deviceOps.put(op.rule(), op);
+    }
+
+    private void processTableZero(FlowRuleBatch.Builder batch, DeviceId deviceId,
+                                  PortNumber dataPort, IpAddress dataIp,
                                   IpAddress localMgmtIp) {
-        vxlanShuttleRule(deviceId, dataPort, dataIp);
-        localManagementBaseRule(deviceId, localMgmtIp.getIp4Address());
+        vxlanShuttleRule(batch, deviceId, dataPort, dataIp);
+        localManagementBaseRule(batch, deviceId, localMgmtIp.getIp4Address());
 
         // take all vlan tagged packet to the VLAN table
         TrafficSelector selector = DefaultTrafficSelector.builder()
@@ -152,7 +383,7 @@ public class DefaultCordVtnPipeline implements CordVtnPipeline {
                 .makePermanent()
                 .build();
 
-        processFlowRule(true, flowRule);
+        batch.add(flowRule);
 
         // take all other packets to the next table
         selector = DefaultTrafficSelector.builder()
@@ -172,10 +403,11 @@ public class DefaultCordVtnPipeline implements CordVtnPipeline {
                 .makePermanent()
                 .build();
 
-        processFlowRule(true, flowRule);
+        batch.add(flowRule);
     }
 
-    private void vxlanShuttleRule(DeviceId deviceId, PortNumber dataPort, IpAddress dataIp) {
+    private void vxlanShuttleRule(FlowRuleBatch.Builder batch, DeviceId deviceId,
+                                  PortNumber dataPort, IpAddress dataIp) {
         // take vxlan packet out onto the physical port
         TrafficSelector selector = DefaultTrafficSelector.builder()
                 .matchInPort(PortNumber.LOCAL)
@@ -195,7 +427,7 @@ public class DefaultCordVtnPipeline implements CordVtnPipeline {
                 .makePermanent()
                 .build();
 
-        processFlowRule(true, flowRule);
+        batch.add(flowRule);
 
         // take a vxlan encap'd packet through the Linux stack
         selector = DefaultTrafficSelector.builder()
@@ -219,7 +451,7 @@ public class DefaultCordVtnPipeline implements CordVtnPipeline {
                 .makePermanent()
                 .build();
 
-        processFlowRule(true, flowRule);
+        batch.add(flowRule);
 
         // take a packet to the data plane ip through Linux stack
         selector = DefaultTrafficSelector.builder()
@@ -242,7 +474,7 @@ public class DefaultCordVtnPipeline implements CordVtnPipeline {
                 .makePermanent()
                 .build();
 
-        processFlowRule(true, flowRule);
+        batch.add(flowRule);
 
         // take an arp packet from physical through Linux stack
         selector = DefaultTrafficSelector.builder()
@@ -265,10 +497,11 @@ public class DefaultCordVtnPipeline implements CordVtnPipeline {
                 .makePermanent()
                 .build();
 
-        processFlowRule(true, flowRule);
+        batch.add(flowRule);
     }
 
-    private void localManagementBaseRule(DeviceId deviceId, Ip4Address localMgmtIp) {
+    private void localManagementBaseRule(FlowRuleBatch.Builder batch, DeviceId deviceId,
+                                         Ip4Address localMgmtIp) {
         TrafficSelector selector = DefaultTrafficSelector.builder()
                 .matchEthType(Ethernet.TYPE_ARP)
                 .matchArpTpa(localMgmtIp)
@@ -288,7 +521,7 @@ public class DefaultCordVtnPipeline implements CordVtnPipeline {
                 .makePermanent()
                 .build();
 
-        processFlowRule(true, flowRule);
+        batch.add(flowRule);
 
         selector = DefaultTrafficSelector.builder()
                 .matchInPort(PortNumber.LOCAL)
@@ -310,7 +543,7 @@ public class DefaultCordVtnPipeline implements CordVtnPipeline {
                 .makePermanent()
                 .build();
 
-        processFlowRule(true, flowRule);
+        batch.add(flowRule);
 
         selector = DefaultTrafficSelector.builder()
                 .matchEthType(Ethernet.TYPE_IPV4)
@@ -331,7 +564,7 @@ public class DefaultCordVtnPipeline implements CordVtnPipeline {
                 .makePermanent()
                 .build();
 
-        processFlowRule(true, flowRule);
+        batch.add(flowRule);
 
         selector = DefaultTrafficSelector.builder()
                 .matchInPort(PortNumber.LOCAL)
@@ -353,10 +586,11 @@ public class DefaultCordVtnPipeline implements CordVtnPipeline {
                 .makePermanent()
                 .build();
 
-        processFlowRule(true, flowRule);
+        batch.add(flowRule);
     }
 
-    private void processInPortTable(DeviceId deviceId, PortNumber tunnelPort, PortNumber dataPort,
+    private void processInPortTable(FlowRuleBatch.Builder batch, DeviceId deviceId,
+                                    PortNumber tunnelPort, PortNumber dataPort,
                                     PortNumber hostMgmtPort) {
         TrafficSelector selector = DefaultTrafficSelector.builder()
                 .matchInPort(tunnelPort)
@@ -376,7 +610,7 @@ public class DefaultCordVtnPipeline implements CordVtnPipeline {
                 .makePermanent()
                 .build();
 
-        processFlowRule(true, flowRule);
+        batch.add(flowRule);
 
         selector = DefaultTrafficSelector.builder()
                 .matchInPort(dataPort)
@@ -396,7 +630,7 @@ public class DefaultCordVtnPipeline implements CordVtnPipeline {
                 .makePermanent()
                 .build();
 
-        processFlowRule(true, flowRule);
+        batch.add(flowRule);
 
         if (hostMgmtPort != null) {
             selector = DefaultTrafficSelector.builder()
@@ -417,11 +651,12 @@ public class DefaultCordVtnPipeline implements CordVtnPipeline {
                     .makePermanent()
                     .build();
 
-            processFlowRule(true, flowRule);
+            batch.add(flowRule);
         }
     }
 
-    private void processAccessTypeTable(DeviceId deviceId, PortNumber dataPort) {
+    private void processAccessTypeTable(FlowRuleBatch.Builder batch, DeviceId deviceId,
+                                        PortNumber dataPort) {
         TrafficSelector selector = DefaultTrafficSelector.builder()
                 .build();
 
@@ -439,10 +674,11 @@ public class DefaultCordVtnPipeline implements CordVtnPipeline {
                 .makePermanent()
                 .build();
 
-        processFlowRule(true, flowRule);
+        batch.add(flowRule);
     }
 
-    private void processVlanTable(DeviceId deviceId, PortNumber dataPort) {
+    private void processVlanTable(FlowRuleBatch.Builder batch, DeviceId deviceId,
+                                  PortNumber dataPort) {
         // for traffic going out to WAN, strip vid 500 and take through data plane interface
         TrafficSelector selector = DefaultTrafficSelector.builder()
                 .matchVlanId(VLAN_WAN)
@@ -463,7 +699,7 @@ public class DefaultCordVtnPipeline implements CordVtnPipeline {
                 .makePermanent()
                 .build();
 
-        processFlowRule(true, flowRule);
+        batch.add(flowRule);
 
         selector = DefaultTrafficSelector.builder()
                 .matchVlanId(VLAN_WAN)
@@ -484,14 +720,31 @@ public class DefaultCordVtnPipeline implements CordVtnPipeline {
                 .makePermanent()
                 .build();
 
-        processFlowRule(true, flowRule);
+        batch.add(flowRule);
     }
 
-    private PortNumber getPortNumber(DeviceId deviceId, String portName) {
-        return deviceService.getPorts(deviceId).stream()
-                .filter(p -> p.annotations().value(AnnotationKeys.PORT_NAME).equals(portName) &&
-                        p.isEnabled())
-                .map(Port::number)
-                .findAny().orElse(null);
+    private class InternalFlowRuleListener implements FlowRuleListener {
+
+        @Override
+        public boolean isRelevant(FlowRuleEvent event) {
+            return event.subject().appId() == appId.id();
+        }
+
+        @Override
+        public void event(FlowRuleEvent event) {
+            switch (event.type()) {
+                case RULE_ADD_REQUESTED:
+                case RULE_ADDED:
+                case RULE_UPDATED:
+                    flowRuleIndex.add(event.subject());
+                    break;
+                case RULE_REMOVE_REQUESTED:
+                case RULE_REMOVED:
+                    flowRuleIndex.remove(event.subject());
+                    break;
+                default:
+                    break;
+            }
+        }
     }
 }
@@ -48,10 +48,9 @@ import java.util.concurrent.ExecutorService;
 import java.util.stream.Collectors;
 
 import static com.google.common.base.Preconditions.checkArgument;
-import static java.util.concurrent.Executors.newSingleThreadExecutor;
-import static org.onlab.util.Tools.groupedThreads;
 import static org.opencord.cordvtn.api.Constants.CORDVTN_APP_ID;
 import static org.opencord.cordvtn.api.node.CordVtnNodeState.COMPLETE;
+import static org.opencord.cordvtn.impl.MonitoredExecutor.newMonitoredExecutor;
 import static org.slf4j.LoggerFactory.getLogger;
 
 /**
@@ -84,8 +83,8 @@ public class DistributedCordVtnNodeStore extends AbstractStore<CordVtnNodeEvent,
     @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
     protected StorageService storageService;
 
-    private final ExecutorService eventExecutor = newSingleThreadExecutor(
-            groupedThreads(this.getClass().getSimpleName(), "event-handler", log));
+    private final ExecutorService eventExecutor = newMonitoredExecutor(
+            this.getClass().getSimpleName(), "event-handler", log);
     private final MapEventListener<String, CordVtnNode> nodeStoreListener = new InternalMapListener();
     private ConsistentMap<String, CordVtnNode> nodeStore;
 
@@ -104,6 +103,7 @@ public class DistributedCordVtnNodeStore extends AbstractStore<CordVtnNodeEvent,
     @Deactivate
     protected void deactivate() {
         nodeStore.removeListener(nodeStoreListener);
+        eventExecutor.shutdown();
         log.info("Stopped");
     }
 
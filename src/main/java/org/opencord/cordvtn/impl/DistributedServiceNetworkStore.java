@@ -16,24 +16,28 @@
 package org.opencord.cordvtn.impl;
 
 import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.ImmutableSet;
 import org.apache.felix.scr.annotations.Activate;
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Deactivate;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.ReferenceCardinality;
 import org.apache.felix.scr.annotations.Service;
+import org.onlab.packet.IpAddress;
+import org.onlab.packet.MacAddress;
 import org.onlab.util.KryoNamespace;
 import org.onosproject.core.ApplicationId;
 import org.onosproject.core.CoreService;
 import org.onosproject.store.AbstractStore;
 import org.onosproject.store.serializers.KryoNamespaces;
+import org.onosproject.store.service.AsyncConsistentMap;
+import org.onosproject.store.service.AtomicCounter;
 import org.onosproject.store.service.ConsistentMap;
 import org.onosproject.store.service.MapEvent;
 import org.onosproject.store.service.MapEventListener;
 import org.onosproject.store.service.Serializer;
 import org.onosproject.store.service.StorageService;
 import org.onosproject.store.service.Versioned;
+import org.opencord.cordvtn.api.core.ServiceNetworkChange;
 import org.opencord.cordvtn.api.core.ServiceNetworkEvent;
 import org.opencord.cordvtn.api.core.ServiceNetworkStore;
 import org.opencord.cordvtn.api.core.ServiceNetworkStoreDelegate;
@@ -48,20 +52,24 @@ import org.opencord.cordvtn.api.net.ServicePort;
 import org.slf4j.Logger;
 
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongFunction;
 
 import static com.google.common.base.Preconditions.checkArgument;
-import static java.util.concurrent.Executors.newSingleThreadExecutor;
-import static org.onlab.util.Tools.groupedThreads;
 import static org.opencord.cordvtn.api.Constants.CORDVTN_APP_ID;
+import static org.opencord.cordvtn.api.core.ServiceNetworkChange.networkChange;
+import static org.opencord.cordvtn.api.core.ServiceNetworkChange.portChange;
 import static org.opencord.cordvtn.api.core.ServiceNetworkEvent.Type.*;
+import static org.opencord.cordvtn.impl.MonitoredExecutor.newMonitoredExecutor;
 import static org.slf4j.LoggerFactory.getLogger;
 
 /**
  * Manages the inventory of VTN networks using a {@code ConsistentMap}.
+ * Reads are served from a locally held snapshot updated by the map events.
  */
 @Component(immediate = true)
 @Service
@@ -73,6 +81,11 @@ public class DistributedServiceNetworkStore extends AbstractStore<ServiceNetwork
     private static final String ERR_NOT_FOUND = " does not exist";
     private static final String ERR_DUPLICATE = " already exists";
 
+    // number of the latest changes retained in the changelog
+    private static final long MAX_CHANGES = 10000;
+    // time in milliseconds a changelog version can be missing before skipped
+    private static final long LOST_CHANGE_TIMEOUT = 5000;
+
     private static final KryoNamespace SERIALIZER_SERVICE = KryoNamespace.newBuilder()
             .register(KryoNamespaces.API)
             .register(ServiceNetwork.class)
@@ -85,6 +98,8 @@ public class DistributedServiceNetworkStore extends AbstractStore<ServiceNetwork
             .register(DefaultServicePort.class)
             .register(PortId.class)
             .register(AddressPair.class)
+            .register(ServiceNetworkChange.class)
+            .register(ServiceNetworkEvent.Type.class)
             .register(Collections.EMPTY_MAP.getClass())
             .register(Collections.EMPTY_SET.getClass())
             .build();
@@ -95,8 +110,8 @@ public class DistributedServiceNetworkStore extends AbstractStore<ServiceNetwork
     @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
     protected StorageService storageService;
 
-    private final ExecutorService eventExecutor = newSingleThreadExecutor(
-            groupedThreads(this.getClass().getSimpleName(), "event-handler", log));
+    private final ExecutorService eventExecutor = newMonitoredExecutor(
+            this.getClass().getSimpleName(), "event-handler", log);
     private final MapEventListener<PortId, ServicePort> servicePortListener =
             new ServicePortMapListener();
     private final MapEventListener<NetworkId, ServiceNetwork> serviceNetworkListener =
@@ -104,6 +119,10 @@ public class DistributedServiceNetworkStore extends AbstractStore<ServiceNetwork
 
     private ConsistentMap<NetworkId, ServiceNetwork> serviceNetworkStore;
     private ConsistentMap<PortId, ServicePort> servicePortStore;
+    private final ServiceNetworkSnapshot snapshot = new ServiceNetworkSnapshot();
+    // follows the providers of the networks in the snapshot
+    private final ServiceDependencyGraph dependencyGraph = new ServiceDependencyGraph();
+    private ServiceNetworkChangelog changelog;
 
     @Activate
     protected void activate() {
@@ -122,6 +141,23 @@ public class DistributedServiceNetworkStore extends AbstractStore<ServiceNetwork
                 .build();
         servicePortStore.addListener(servicePortListener);
 
+        snapshot.putServiceNetworks(serviceNetworkStore.values());
+        snapshot.putServicePorts(servicePortStore.values());
+        snapshot.serviceNetworks().forEach(snet -> updateDependencies(snet.id()));
+
+        AsyncConsistentMap<Long, ServiceNetworkChange> changes =
+                storageService.<Long, ServiceNetworkChange>consistentMapBuilder()
+                        .withSerializer(Serializer.using(SERIALIZER_SERVICE))
+                        .withName("cordvtn-changelog")
+                        .withApplicationId(appId)
+                        .buildAsyncMap();
+        AtomicCounter changelogVersion = storageService.atomicCounterBuilder()
+                .withName("cordvtn-changelog-version")
+                .build()
+                .asAtomicCounter();
+        changelog = new ServiceNetworkChangelog(changes, changelogVersion, MAX_CHANGES,
+                                                LOST_CHANGE_TIMEOUT, System::currentTimeMillis);
+
         log.info("Started");
     }
 
@@ -129,6 +165,9 @@ public class DistributedServiceNetworkStore extends AbstractStore<ServiceNetwork
     protected void deactivate() {
         serviceNetworkStore.removeListener(serviceNetworkListener);
         servicePortStore.removeListener(servicePortListener);
+        eventExecutor.shutdown();
+        snapshot.clear();
+        dependencyGraph.clear();
 
         log.info("Stopped");
     }
@@ -136,87 +175,198 @@ public class DistributedServiceNetworkStore extends AbstractStore<ServiceNetwork
     @Override
     public void clear() {
         synchronized (this) {
+            serviceNetworkStore.keySet().forEach(netId -> recordChange(
+                    version -> networkChange(version, SERVICE_NETWORK_REMOVED, netId, null)));
+            servicePortStore.keySet().forEach(portId -> recordChange(
+                    version -> portChange(version, SERVICE_PORT_REMOVED, portId, null)));
             serviceNetworkStore.clear();
             servicePortStore.clear();
+            snapshot.clear();
+            dependencyGraph.clear();
         }
     }
 
     @Override
     public void createServiceNetwork(ServiceNetwork snet) {
-        serviceNetworkStore.compute(snet.id(), (id, existing) -> {
+        AtomicBoolean changed = new AtomicBoolean();
+        Versioned<ServiceNetwork> updated = serviceNetworkStore.compute(snet.id(), (id, existing) -> {
             final String error = snet.name() + ERR_DUPLICATE;
             checkArgument(existing == null || existing.equals(snet), error);
+            changed.set(existing == null);
             return snet;
         });
+        snapshot.putServiceNetwork(updated.value(), updated.version());
+        updateDependencies(snet.id());
+        if (changed.get()) {
+            recordChange(version -> networkChange(version, SERVICE_NETWORK_CREATED,
+                                                  snet.id(), snet));
+        }
     }
 
     @Override
     public void updateServiceNetwork(ServiceNetwork snet) {
-        serviceNetworkStore.compute(snet.id(), (id, existing) -> {
+        AtomicBoolean changed = new AtomicBoolean();
+        Versioned<ServiceNetwork> updated = serviceNetworkStore.compute(snet.id(), (id, existing) -> {
             final String error = snet.name() + ERR_NOT_FOUND;
             checkArgument(existing != null, error);
+            changed.set(!existing.equals(snet));
             return snet;
         });
+        snapshot.putServiceNetwork(updated.value(), updated.version());
+        updateDependencies(snet.id());
+        if (changed.get()) {
+            recordChange(version -> networkChange(version, SERVICE_NETWORK_UPDATED,
+                                                  snet.id(), snet));
+        }
     }
 
     @Override
     public ServiceNetwork removeServiceNetwork(NetworkId netId) {
         synchronized (this) {
             Versioned<ServiceNetwork> snet = serviceNetworkStore.remove(netId);
-            return snet == null ? null : snet.value();
+            if (snet == null) {
+                return null;
+            }
+            snapshot.removeServiceNetwork(netId, snet.version());
+            updateDependencies(netId);
+            recordChange(version -> networkChange(version, SERVICE_NETWORK_REMOVED,
+                                                  netId, null));
+            return snet.value();
         }
     }
 
     @Override
     public ServiceNetwork serviceNetwork(NetworkId netId) {
-        Versioned<ServiceNetwork> versioned = serviceNetworkStore.get(netId);
-        return versioned == null ? null : versioned.value();
+        return snapshot.serviceNetwork(netId);
     }
 
     @Override
     public Set<ServiceNetwork> serviceNetworks() {
-        Set<ServiceNetwork> snets = serviceNetworkStore.values().stream()
-                .map(Versioned::value)
-                .collect(Collectors.toSet());
-        return ImmutableSet.copyOf(snets);
+        return snapshot.serviceNetworks();
+    }
+
+    @Override
+    public Map<NetworkId, DependencyType> providers(NetworkId netId) {
+        return dependencyGraph.providers(netId);
+    }
+
+    @Override
+    public Map<NetworkId, DependencyType> subscribers(NetworkId netId) {
+        return dependencyGraph.subscribers(netId);
+    }
+
+    @Override
+    public Set<NetworkId> transitiveProviders(NetworkId netId) {
+        return dependencyGraph.transitiveProviders(netId);
     }
 
     @Override
     public void createServicePort(ServicePort sport) {
-        servicePortStore.compute(sport.id(), (id, existing) -> {
+        AtomicBoolean changed = new AtomicBoolean();
+        Versioned<ServicePort> updated = servicePortStore.compute(sport.id(), (id, existing) -> {
             final String error = sport.id().id() + ERR_DUPLICATE;
             checkArgument(existing == null || existing.equals(sport), error);
+            changed.set(existing == null);
             return sport;
         });
+        snapshot.putServicePort(updated.value(), updated.version());
+        if (changed.get()) {
+            recordChange(version -> portChange(version, SERVICE_PORT_CREATED,
+                                               sport.id(), sport));
+        }
     }
 
     @Override
     public void updateServicePort(ServicePort sport) {
-        servicePortStore.compute(sport.id(), (id, existing) -> {
+        AtomicBoolean changed = new AtomicBoolean();
+        Versioned<ServicePort> updated = servicePortStore.compute(sport.id(), (id, existing) -> {
             final String error = sport.id().id() + ERR_NOT_FOUND;
             checkArgument(existing != null, error);
+            changed.set(!existing.equals(sport));
             return sport;
         });
+        snapshot.putServicePort(updated.value(), updated.version());
+        if (changed.get()) {
+            recordChange(version -> portChange(version, SERVICE_PORT_UPDATED,
+                                               sport.id(), sport));
+        }
     }
 
     @Override
     public ServicePort removeServicePort(PortId portId) {
         Versioned<ServicePort> sport = servicePortStore.remove(portId);
-        return sport.value();
+        if (sport != null) {
+            snapshot.removeServicePort(portId, sport.version());
+            recordChange(version -> portChange(version, SERVICE_PORT_REMOVED,
+                                               portId, null));
+        }
+        return sport == null ? null : sport.value();
     }
 
     @Override
     public ServicePort servicePort(PortId portId) {
-        Versioned<ServicePort> versioned = servicePortStore.get(portId);
-        return versioned == null ? null : versioned.value();
+        return snapshot.servicePort(portId);
     }
 
     @Override
     public Set<ServicePort> servicePorts() {
-        Set<ServicePort> sports = servicePortStore.values().stream()
-                .map(Versioned::value)
-                .collect(Collectors.toSet());
-        return ImmutableSet.copyOf(sports);
+        return snapshot.servicePorts();
+    }
+
+    @Override
+    public Set<ServicePort> servicePorts(NetworkId netId) {
+        return snapshot.servicePorts(netId);
+    }
+
+    @Override
+    public ServicePort servicePortByName(String portName) {
+        return snapshot.servicePortByName(portName);
+    }
+
+    @Override
+    public ServicePort servicePortByMac(MacAddress mac) {
+        return snapshot.servicePortByMac(mac);
+    }
+
+    @Override
+    public Set<ServicePort> servicePortsByIp(IpAddress ip) {
+        return snapshot.servicePortsByIp(ip);
+    }
+
+    @Override
+    public ServicePort servicePortByIp(NetworkId netId, IpAddress ip) {
+        return snapshot.servicePortByIp(netId, ip);
+    }
+
+    @Override
+    public List<ServiceNetworkChange> changes(long sinceVersion) {
+        return changelog.changes(sinceVersion);
+    }
+
+    @Override
+    public long changelogVersion() {
+        return changelog.version();
+    }
+
+    /**
+     * Updates the providers of the network in the dependency graph to the
+     * ones in the snapshot. It runs in the map event order, before the
+     * events are queued to the delegate.
+     *
+     * @param netId network id
+     */
+    private void updateDependencies(NetworkId netId) {
+        synchronized (dependencyGraph) {
+            ServiceNetwork snet = snapshot.serviceNetwork(netId);
+            dependencyGraph.updateProviders(
+                    netId, snet == null ? ImmutableMap.of() : snet.providers());
+        }
+    }
+
+    private void recordChange(LongFunction<ServiceNetworkChange> change) {
+        // versions of the Versioned values are assigned per partition of the
+        // consistent maps, so the changelog keeps its own version sequence
+        log.trace("Recorded change {}", changelog.record(change));
     }
 
     private class ServiceNetworkMapListener implements MapEventListener<NetworkId, ServiceNetwork> {
@@ -226,10 +376,14 @@ public class DistributedServiceNetworkStore extends AbstractStore<ServiceNetwork
             switch (event.type()) {
                 case UPDATE:
                     log.debug("Service network updated {}", event.newValue());
+                    snapshot.putServiceNetwork(event.newValue().value(),
+                                               event.newValue().version());
+                    updateDependencies(event.key());
                     eventExecutor.execute(() -> {
                         notifyDelegate(new ServiceNetworkEvent(
                                 SERVICE_NETWORK_UPDATED,
-                                event.newValue().value()));
+                                event.newValue().value(),
+                                event.oldValue().value()));
                         notifyProviderUpdate(
                                 event.oldValue().value(),
                                 event.newValue().value());
@@ -237,6 +391,9 @@ public class DistributedServiceNetworkStore extends AbstractStore<ServiceNetwork
                     break;
                 case INSERT:
                     log.debug("Service network created {}", event.newValue());
+                    snapshot.putServiceNetwork(event.newValue().value(),
+                                               event.newValue().version());
+                    updateDependencies(event.key());
                     eventExecutor.execute(() -> {
                         notifyDelegate(new ServiceNetworkEvent(
                                 SERVICE_NETWORK_CREATED,
@@ -246,6 +403,9 @@ public class DistributedServiceNetworkStore extends AbstractStore<ServiceNetwork
                     break;
                 case REMOVE:
                     log.debug("Service network removed {}", event.oldValue());
+                    snapshot.removeServiceNetwork(event.key(),
+                                                  event.oldValue().version());
+                    updateDependencies(event.key());
                     eventExecutor.execute(() -> {
                         notifyProviderUpdate(event.oldValue().value(), null);
                         notifyDelegate(new ServiceNetworkEvent(
@@ -299,6 +459,8 @@ public class DistributedServiceNetworkStore extends AbstractStore<ServiceNetwork
             switch (event.type()) {
                 case UPDATE:
                     log.debug("Service port updated {}", event.newValue());
+                    snapshot.putServicePort(event.newValue().value(),
+                                            event.newValue().version());
                     eventExecutor.execute(() -> {
                         notifyDelegate(new ServiceNetworkEvent(
                                 SERVICE_PORT_UPDATED,
@@ -308,6 +470,8 @@ public class DistributedServiceNetworkStore extends AbstractStore<ServiceNetwork
                     break;
                 case INSERT:
                     log.debug("Service port created {}", event.newValue());
+                    snapshot.putServicePort(event.newValue().value(),
+                                            event.newValue().version());
                     eventExecutor.execute(() -> {
                         notifyDelegate(new ServiceNetworkEvent(
                                 SERVICE_PORT_CREATED,
@@ -317,6 +481,8 @@ public class DistributedServiceNetworkStore extends AbstractStore<ServiceNetwork
                     break;
                 case REMOVE:
                     log.debug("Service port removed {}", event.oldValue());
+                    snapshot.removeServicePort(event.key(),
+                                               event.oldValue().version());
                     eventExecutor.execute(() -> {
                         notifyDelegate(new ServiceNetworkEvent(
                                 SERVICE_PORT_REMOVED,
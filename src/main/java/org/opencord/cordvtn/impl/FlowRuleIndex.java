@@ -0,0 +1,130 @@
+/*
+ * Copyright 2017-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.opencord.cordvtn.impl;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import com.google.common.collect.SetMultimap;
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.PortNumber;
+import org.onosproject.net.flow.FlowRule;
+import org.onosproject.net.flow.instructions.Instruction;
+import org.onosproject.net.flow.instructions.Instructions.OutputInstruction;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Local index of the flow rules keyed by device, table and output port.
+ */
+final class FlowRuleIndex {
+
+    private final Map<FlowRule, IndexKey> indexKeys = Maps.newHashMap();
+    private final SetMultimap<IndexKey, FlowRule> flowRules = HashMultimap.create();
+
+    /**
+     * Adds or replaces the supplied flow rule. Rules without output port
+     * are not indexed.
+     *
+     * @param rule flow rule
+     */
+    synchronized void add(FlowRule rule) {
+        remove(rule);
+        PortNumber output = outputPort(rule);
+        if (output == null) {
+            return;
+        }
+        IndexKey key = new IndexKey(rule.deviceId(), rule.tableId(), output);
+        indexKeys.put(rule, key);
+        flowRules.put(key, rule);
+    }
+
+    /**
+     * Removes the supplied flow rule.
+     *
+     * @param rule flow rule
+     */
+    synchronized void remove(FlowRule rule) {
+        IndexKey key = indexKeys.remove(rule);
+        if (key != null) {
+            flowRules.remove(key, rule);
+        }
+    }
+
+    /**
+     * Returns the flow rules on the given device and table that output to
+     * the given port.
+     *
+     * @param deviceId device id
+     * @param tableId  table id
+     * @param output   output port number
+     * @return set of flow rules; empty set if no rule matches
+     */
+    synchronized Set<FlowRule> flowRules(DeviceId deviceId, int tableId, PortNumber output) {
+        return ImmutableSet.copyOf(flowRules.get(new IndexKey(deviceId, tableId, output)));
+    }
+
+    /**
+     * Removes all flow rules from the index.
+     */
+    synchronized void clear() {
+        indexKeys.clear();
+        flowRules.clear();
+    }
+
+    private static PortNumber outputPort(FlowRule rule) {
+        for (Instruction instruction : rule.treatment().allInstructions()) {
+            if (instruction instanceof OutputInstruction) {
+                return ((OutputInstruction) instruction).port();
+            }
+        }
+        return null;
+    }
+
+    private static final class IndexKey {
+
+        private final DeviceId deviceId;
+        private final int tableId;
+        private final PortNumber output;
+
+        private IndexKey(DeviceId deviceId, int tableId, PortNumber output) {
+            this.deviceId = deviceId;
+            this.tableId = tableId;
+            this.output = output;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj instanceof IndexKey) {
+                IndexKey that = (IndexKey) obj;
+                return Objects.equals(deviceId, that.deviceId) &&
+                        tableId == that.tableId &&
+                        Objects.equals(output, that.output);
+            }
+            return false;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(deviceId, tableId, output);
+        }
+    }
+}
@@ -15,6 +15,10 @@
  */
 package org.opencord.cordvtn.impl;
 
+import com.google.common.base.Strings;
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Maps;
+import com.google.common.collect.SetMultimap;
 import com.google.common.collect.Sets;
 import org.apache.felix.scr.annotations.Activate;
 import org.apache.felix.scr.annotations.Component;
@@ -23,19 +27,20 @@ import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.ReferenceCardinality;
 import org.apache.felix.scr.annotations.Service;
 import org.onlab.packet.VlanId;
-import org.onosproject.cluster.ClusterService;
-import org.onosproject.cluster.LeadershipService;
-import org.onosproject.cluster.NodeId;
 import org.onosproject.core.ApplicationId;
 import org.onosproject.core.CoreService;
+import org.onosproject.mastership.MastershipService;
 import org.onosproject.net.ConnectPoint;
 import org.onosproject.net.DefaultAnnotations;
+import org.onosproject.net.DeviceId;
 import org.onosproject.net.Host;
 import org.onosproject.net.HostId;
 import org.onosproject.net.HostLocation;
 import org.onosproject.net.Port;
 import org.onosproject.net.device.DeviceService;
 import org.onosproject.net.host.DefaultHostDescription;
+import org.onosproject.net.host.HostEvent;
+import org.onosproject.net.host.HostListener;
 import org.onosproject.net.host.HostDescription;
 import org.onosproject.net.host.HostProvider;
 import org.onosproject.net.host.HostProviderRegistry;
@@ -50,21 +55,23 @@ import org.opencord.cordvtn.api.core.InstanceService;
 import org.opencord.cordvtn.api.core.ServiceNetworkEvent;
 import org.opencord.cordvtn.api.core.ServiceNetworkListener;
 import org.opencord.cordvtn.api.core.ServiceNetworkService;
+import org.opencord.cordvtn.api.net.NetworkId;
 import org.opencord.cordvtn.api.net.PortId;
 import org.opencord.cordvtn.api.net.ServiceNetwork;
 import org.opencord.cordvtn.api.net.ServicePort;
 import org.slf4j.Logger;
 
-import java.util.Objects;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.ExecutorService;
+import java.util.stream.Collectors;
 
-import static java.util.concurrent.Executors.newSingleThreadExecutor;
-import static org.onlab.util.Tools.groupedThreads;
 import static org.onosproject.net.AnnotationKeys.PORT_NAME;
 import static org.opencord.cordvtn.api.Constants.CORDVTN_APP_ID;
 import static org.opencord.cordvtn.api.Constants.NOT_APPLICABLE;
 import static org.opencord.cordvtn.api.net.ServiceNetwork.NetworkType.ACCESS_AGENT;
+import static org.opencord.cordvtn.impl.MonitoredExecutor.newMonitoredExecutor;
 import static org.slf4j.LoggerFactory.getLogger;
 
 /**
@@ -92,10 +99,7 @@ public class InstanceManager extends AbstractProvider implements HostProvider,
     protected HostService hostService;
 
     @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
-    protected LeadershipService leadershipService;
-
-    @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
-    protected ClusterService clusterService;
+    protected MastershipService mastershipService;
 
     // TODO get access agent container information from XOS
     @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
@@ -104,12 +108,20 @@ public class InstanceManager extends AbstractProvider implements HostProvider,
     @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
     protected ServiceNetworkService snetService;
 
-    private final ExecutorService eventExecutor =
-            newSingleThreadExecutor(groupedThreads(this.getClass().getSimpleName(), "event-handler"));
+    private final ExecutorService eventExecutor = newMonitoredExecutor(
+            this.getClass().getSimpleName(), "event-handler", log);
     private final ServiceNetworkListener snetListener = new InternalServiceNetworkListener();
+    private final HostListener hostListener = new InternalHostListener();
+
+    // local index of the instances, updated in the event dispatch thread
+    // before the listeners of the instance handlers are notified; the host
+    // listener of this service is registered first as the handlers depend
+    // on this service and are activated after it
+    private final Map<HostId, Instance> instances = Maps.newHashMap();
+    private final SetMultimap<NetworkId, HostId> networkInstances = HashMultimap.create();
+    private final SetMultimap<DeviceId, HostId> deviceInstances = HashMultimap.create();
 
     private ApplicationId appId;
-    private NodeId localNodeId;
     private HostProviderService hostProvider;
 
     /**
@@ -122,21 +134,21 @@ public class InstanceManager extends AbstractProvider implements HostProvider,
     @Activate
     protected void activate() {
         appId = coreService.registerApplication(CORDVTN_APP_ID);
-        localNodeId = clusterService.getLocalNode().id();
-        leadershipService.runForLeadership(appId.name());
 
         hostProvider = hostProviderRegistry.register(this);
         snetService.addListener(snetListener);
+        hostService.addListener(hostListener);
+        hostService.getHosts().forEach(host -> updateIndex(null, host));
 
         log.info("Started");
     }
 
     @Deactivate
     protected void deactivate() {
+        hostService.removeListener(hostListener);
         snetService.removeListener(snetListener);
         hostProviderRegistry.unregister(this);
         eventExecutor.shutdown();
-        leadershipService.withdraw(appId.name());
 
         log.info("Stopped");
     }
@@ -213,12 +225,60 @@ public class InstanceManager extends AbstractProvider implements HostProvider,
         hostProvider.hostVanished(hostId);
     }
 
+    @Override
+    public Set<Instance> instances(NetworkId netId) {
+        synchronized (instances) {
+            return networkInstances.get(netId).stream()
+                    .map(instances::get)
+                    .collect(Collectors.toSet());
+        }
+    }
+
+    @Override
+    public Set<Instance> instances(DeviceId deviceId) {
+        synchronized (instances) {
+            return deviceInstances.get(deviceId).stream()
+                    .map(instances::get)
+                    .collect(Collectors.toSet());
+        }
+    }
+
+    private void updateIndex(Host prevHost, Host host) {
+        synchronized (instances) {
+            if (prevHost != null) {
+                removeIndex(prevHost);
+            }
+            removeIndex(host);
+            if (Strings.isNullOrEmpty(host.annotations().value(Instance.NETWORK_ID))) {
+                // not an instance anymore
+                return;
+            }
+            Instance instance = Instance.of(host);
+            instances.put(host.id(), instance);
+            networkInstances.put(instance.netId(), host.id());
+            deviceInstances.put(instance.deviceId(), host.id());
+        }
+    }
+
+    private void removeIndex(Host host) {
+        synchronized (instances) {
+            Instance instance = instances.remove(host.id());
+            if (instance != null) {
+                networkInstances.remove(instance.netId(), host.id());
+                deviceInstances.remove(instance.deviceId(), host.id());
+            }
+            // removes the entries of the given state as well, in case the
+            // indexed instance was not the latest one
+            String netId = host.annotations().value(Instance.NETWORK_ID);
+            if (!Strings.isNullOrEmpty(netId)) {
+                networkInstances.remove(NetworkId.of(netId), host.id());
+            }
+            deviceInstances.remove(host.location().deviceId(), host.id());
+        }
+    }
+
     private ServicePort getServicePortByPortName(String portName) {
-        Optional<ServicePort> sport = snetService.servicePorts()
-                .stream()
-                .filter(p -> Objects.equals(p.name(), portName))
-                .findFirst();
-        return sport.isPresent() ? sport.get() : null;
+        return portName == null ? null : snetService.servicePortByName(portName);
     }
 
     // TODO remove this when XOS provides access agent information
@@ -268,14 +328,7 @@ public class InstanceManager extends AbstractProvider implements HostProvider,
 
         @Override
         public void event(ServiceNetworkEvent event) {
-            eventExecutor.execute(() -> {
-                NodeId leader = leadershipService.getLeader(appId.name());
-                if (!Objects.equals(localNodeId, leader)) {
-                    // do not allow to proceed without leadership
-                    return;
-                }
-                handle(event);
-            });
+            eventExecutor.execute(() -> handle(event));
         }
 
         private void handle(ServiceNetworkEvent event) {
@@ -285,7 +338,9 @@ public class InstanceManager extends AbstractProvider implements HostProvider,
                     log.debug("Processing service port {}", event.servicePort());
                     PortId portId = event.servicePort().id();
                     Instance instance = getInstance(portId);
-                    if (instance != null) {
+                    // the master of the device of the instance updates the instance
+                    if (instance != null &&
+                            mastershipService.isLocalMaster(instance.deviceId())) {
                         addInstance(instance.host().location());
                     }
                     break;
@@ -299,4 +354,23 @@ public class InstanceManager extends AbstractProvider implements HostProvider,
             }
         }
     }
+
+    private class InternalHostListener implements HostListener {
+
+        @Override
+        public void event(HostEvent event) {
+            switch (event.type()) {
+                case HOST_ADDED:
+                case HOST_UPDATED:
+                case HOST_MOVED:
+                    updateIndex(event.prevSubject(), event.subject());
+                    break;
+                case HOST_REMOVED:
+                    removeIndex(event.subject());
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
 }
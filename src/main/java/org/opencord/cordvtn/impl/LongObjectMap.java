@@ -0,0 +1,180 @@
+/*
+ * Copyright 2017-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.opencord.cordvtn.impl;
+
+import java.util.Arrays;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Open addressing hash map with primitive long keys. Lookups do not box the
+ * key nor allocate. Not thread-safe; the users should guard the accesses.
+ *
+ * @param <V> value type
+ */
+final class LongObjectMap<V> {
+
+    private static final int DEFAULT_CAPACITY = 64;
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private long[] keys;
+    private Object[] values;
+    private int size;
+
+    /**
+     * Creates a map with the default initial capacity.
+     */
+    LongObjectMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a map with the given initial capacity.
+     *
+     * @param capacity initial capacity
+     */
+    LongObjectMap(int capacity) {
+        checkArgument(capacity > 0, "Capacity must be positive");
+        int tableSize = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+        keys = new long[tableSize];
+        values = new Object[tableSize];
+    }
+
+    /**
+     * Returns the value mapped to the key.
+     *
+     * @param key key
+     * @return value; null if not found
+     */
+    @SuppressWarnings("unchecked")
+    V get(long key) {
+        int mask = keys.length - 1;
+        for (int i = index(key, mask); values[i] != null; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                return (V) values[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Maps the value to the key.
+     *
+     * @param key   key
+     * @param value value
+     * @return previous value; null if not found
+     */
+    @SuppressWarnings("unchecked")
+    V put(long key, V value) {
+        checkNotNull(value);
+        int mask = keys.length - 1;
+        int i = index(key, mask);
+        for (; values[i] != null; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                V prev = (V) values[i];
+                values[i] = value;
+                return prev;
+            }
+        }
+        keys[i] = key;
+        values[i] = value;
+        if (++size > keys.length * LOAD_FACTOR) {
+            resize(keys.length << 1);
+        }
+        return null;
+    }
+
+    /**
+     * Removes the value mapped to the key.
+     *
+     * @param key key
+     * @return removed value; null if not found
+     */
+    @SuppressWarnings("unchecked")
+    V remove(long key) {
+        int mask = keys.length - 1;
+        int i = index(key, mask);
+        for (; values[i] != null; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                V prev = (V) values[i];
+                values[i] = null;
+                size--;
+                shiftBack(i, mask);
+                return prev;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the number of the mappings.
+     *
+     * @return size
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Removes all mappings.
+     */
+    void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    // moves the entries following the removed slot back to keep the probe
+    // sequences unbroken, instead of leaving a tombstone
+    private void shiftBack(int hole, int mask) {
+        for (int i = (hole + 1) & mask; values[i] != null; i = (i + 1) & mask) {
+            int home = index(keys[i], mask);
+            boolean movable = hole <= i ? (home <= hole || home > i) :
+                    (home <= hole && home > i);
+            if (movable) {
+                keys[hole] = keys[i];
+                values[hole] = values[i];
+                values[i] = null;
+                hole = i;
+            }
+        }
+    }
+
+    private void resize(int tableSize) {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new long[tableSize];
+        values = new Object[tableSize];
+        int mask = tableSize - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldValues[j] == null) {
+                continue;
+            }
+            int i = index(oldKeys[j], mask);
+            while (values[i] != null) {
+                i = (i + 1) & mask;
+            }
+            keys[i] = oldKeys[j];
+            values[i] = oldValues[j];
+        }
+    }
+
+    private static int index(long key, int mask) {
+        // mix the bits so that keys differing in the high bits spread out
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+}
@@ -0,0 +1,368 @@
+/*
+ * Copyright 2017-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.opencord.cordvtn.impl;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import org.opencord.cordvtn.api.core.ExecutorStats;
+import org.slf4j.Logger;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.onlab.util.Tools.groupedThreads;
+
+/**
+ * Single thread executor with a bounded task queue that keeps track of its
+ * queue depth, queueing latency and task run time.
+ * <p>
+ * Tasks executed with a key replace the pending task of the same key, if
+ * any, and are meant for idempotent work such as refreshing the state of a
+ * subject, which keeps the queue short under an event burst. The events are
+ * not idempotent in general, so a task is never dropped. When the queue is
+ * full, the caller waits for a free slot, which pushes back on the event
+ * dispatcher, and the task is counted as rejected. A task submitted by the
+ * worker thread itself runs in place instead, not to wait for itself.
+ */
+public final class MonitoredExecutor extends ThreadPoolExecutor {
+
+    public static final int DEFAULT_QUEUE_SIZE = 10000;
+
+    private static final int FULL_LOG_INTERVAL = 1000;
+
+    private static final Map<String, MonitoredExecutor> EXECUTORS =
+            new ConcurrentHashMap<>();
+
+    private final String name;
+    private final int capacity;
+    private final Logger log;
+    private final Map<Object, MonitoredTask> pendingTasks = Maps.newHashMap();
+    private volatile Thread worker;
+
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong totalQueueNanos = new AtomicLong();
+    private final AtomicLong maxQueueNanos = new AtomicLong();
+    private final AtomicLong totalRunNanos = new AtomicLong();
+    private final AtomicLong maxRunNanos = new AtomicLong();
+
+    private MonitoredExecutor(String groupName, String prefix, int capacity, Logger log) {
+        super(1, 1, 0L, TimeUnit.MILLISECONDS,
+              new LinkedBlockingQueue<>(capacity),
+              groupedThreads(groupName, prefix, log));
+        this.name = groupName + "/" + prefix;
+        this.capacity = capacity;
+        this.log = log;
+        setRejectedExecutionHandler(new BlockingRejectedExecutionHandler());
+    }
+
+    /**
+     * Creates a monitored single thread executor with the default queue size.
+     *
+     * @param groupName thread group name
+     * @param prefix    thread name prefix
+     * @param log       logger to log the uncaught exceptions
+     * @return monitored executor
+     */
+    public static MonitoredExecutor newMonitoredExecutor(String groupName,
+                                                         String prefix,
+                                                         Logger log) {
+        return newMonitoredExecutor(groupName, prefix, DEFAULT_QUEUE_SIZE, log);
+    }
+
+    /**
+     * Creates a monitored single thread executor.
+     *
+     * @param groupName thread group name
+     * @param prefix    thread name prefix
+     * @param capacity  maximum number of the queued tasks
+     * @param log       logger to log the uncaught exceptions
+     * @return monitored executor
+     */
+    public static MonitoredExecutor newMonitoredExecutor(String groupName,
+                                                         String prefix,
+                                                         int capacity,
+                                                         Logger log) {
+        checkArgument(capacity > 0, "Queue size should be positive");
+        MonitoredExecutor executor =
+                new MonitoredExecutor(groupName, prefix, capacity, log);
+        EXECUTORS.put(executor.name(), executor);
+        return executor;
+    }
+
+    /**
+     * Returns all running monitored executors sorted by name.
+     *
+     * @return list of monitored executors
+     */
+    static List<MonitoredExecutor> executors() {
+        return ImmutableList.copyOf(EXECUTORS.values().stream()
+                .sorted(Comparator.comparing(MonitoredExecutor::name))
+                .collect(Collectors.toList()));
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        checkNotNull(command);
+        super.execute(new MonitoredTask(null, command));
+    }
+
+    /**
+     * Executes the task, or replaces the task of the same key waiting in
+     * the queue with the supplied one. The caller waits if the queue is
+     * full.
+     *
+     * @param key  coalescing key
+     * @param task task to execute
+     */
+    public void execute(Object key, Runnable task) {
+        checkNotNull(key);
+        checkNotNull(task);
+        MonitoredTask newTask;
+        synchronized (pendingTasks) {
+            MonitoredTask pending = pendingTasks.get(key);
+            if (pending != null) {
+                pending.task = task;
+                coalesced.incrementAndGet();
+                return;
+            }
+            newTask = new MonitoredTask(key, task);
+            pendingTasks.put(key, newTask);
+        }
+        try {
+            super.execute(newTask);
+        } catch (RejectedExecutionException e) {
+            synchronized (pendingTasks) {
+                pendingTasks.remove(key, newTask);
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    protected void beforeExecute(Thread thread, Runnable task) {
+        worker = thread;
+        super.beforeExecute(thread, task);
+    }
+
+    @Override
+    public void shutdown() {
+        EXECUTORS.remove(name, this);
+        super.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        EXECUTORS.remove(name, this);
+        return super.shutdownNow();
+    }
+
+    /**
+     * Returns the name of the executor.
+     *
+     * @return executor name
+     */
+    public String name() {
+        return name;
+    }
+
+    /**
+     * Returns the number of tasks waiting in the queue.
+     *
+     * @return queue depth
+     */
+    public int queueDepth() {
+        return getQueue().size();
+    }
+
+    /**
+     * Returns the maximum number of tasks the queue can hold.
+     *
+     * @return queue capacity
+     */
+    public int queueCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the number of completed tasks.
+     *
+     * @return completed task count
+     */
+    public long completedCount() {
+        return completed.get();
+    }
+
+    /**
+     * Returns the number of tasks submitted while the queue was full, which
+     * made the caller wait.
+     *
+     * @return rejected task count
+     */
+    public long rejectedCount() {
+        return rejected.get();
+    }
+
+    /**
+     * Returns the number of tasks replaced by a newer task of the same key.
+     *
+     * @return coalesced task count
+     */
+    public long coalescedCount() {
+        return coalesced.get();
+    }
+
+    /**
+     * Returns the average time in milliseconds from submission to the start
+     * of a task.
+     *
+     * @return average queueing latency in milliseconds
+     */
+    public double avgQueueMillis() {
+        return average(totalQueueNanos.get());
+    }
+
+    /**
+     * Returns the maximum time in milliseconds from submission to the start
+     * of a task.
+     *
+     * @return maximum queueing latency in milliseconds
+     */
+    public double maxQueueMillis() {
+        return toMillis(maxQueueNanos.get());
+    }
+
+    /**
+     * Returns the average run time of a task in milliseconds.
+     *
+     * @return average run time in milliseconds
+     */
+    public double avgRunMillis() {
+        return average(totalRunNanos.get());
+    }
+
+    /**
+     * Returns the maximum run time of a task in milliseconds.
+     *
+     * @return maximum run time in milliseconds
+     */
+    public double maxRunMillis() {
+        return toMillis(maxRunNanos.get());
+    }
+
+    /**
+     * Returns the snapshot of the queue statistics of the executor.
+     *
+     * @return executor stats
+     */
+    public ExecutorStats stats() {
+        return ExecutorStats.builder()
+                .name(name)
+                .queue(queueDepth(), queueCapacity())
+                .counts(completedCount(), rejectedCount(), coalescedCount())
+                .queueMillis(avgQueueMillis(), maxQueueMillis())
+                .runMillis(avgRunMillis(), maxRunMillis())
+                .build();
+    }
+
+    private double average(long totalNanos) {
+        long count = completed.get();
+        return count == 0 ? 0 : toMillis(totalNanos) / count;
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    private static void updateMax(AtomicLong max, long value) {
+        max.accumulateAndGet(value, Math::max);
+    }
+
+    private final class MonitoredTask implements Runnable {
+
+        private final Object key;
+        private final long enqueued = System.nanoTime();
+        private volatile Runnable task;
+
+        private MonitoredTask(Object key, Runnable task) {
+            this.key = key;
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            if (key != null) {
+                synchronized (pendingTasks) {
+                    pendingTasks.remove(key, this);
+                }
+            }
+            long started = System.nanoTime();
+            long queued = started - enqueued;
+            totalQueueNanos.addAndGet(queued);
+            updateMax(maxQueueNanos, queued);
+            try {
+                task.run();
+            } finally {
+                long ran = System.nanoTime() - started;
+                totalRunNanos.addAndGet(ran);
+                updateMax(maxRunNanos, ran);
+                completed.incrementAndGet();
+            }
+        }
+    }
+
+    private final class BlockingRejectedExecutionHandler
+            implements RejectedExecutionHandler {
+
+        @Override
+        public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+            if (executor.isShutdown()) {
+                throw new RejectedExecutionException(name + " is shut down");
+            }
+            long count = rejected.incrementAndGet();
+            if (count % FULL_LOG_INTERVAL == 1) {
+                log.warn("Task queue of {} is full, waited for {} tasks so far",
+                         name, count);
+            }
+            if (Thread.currentThread() == worker) {
+                // the worker would wait for itself for good
+                task.run();
+                return;
+            }
+            try {
+                executor.getQueue().put(task);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RejectedExecutionException(name + " is interrupted", e);
+            }
+            if (executor.isShutdown() && executor.getQueue().remove(task)) {
+                throw new RejectedExecutionException(name + " is shut down");
+            }
+        }
+    }
+}
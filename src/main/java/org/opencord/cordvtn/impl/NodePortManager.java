@@ -0,0 +1,131 @@
+/*
+ * Copyright 2017-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.opencord.cordvtn.impl;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.Maps;
+import org.apache.felix.scr.annotations.Activate;
+import org.apache.felix.scr.annotations.Component;
+import org.apache.felix.scr.annotations.Deactivate;
+import org.apache.felix.scr.annotations.Reference;
+import org.apache.felix.scr.annotations.ReferenceCardinality;
+import org.apache.felix.scr.annotations.Service;
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.Port;
+import org.onosproject.net.PortNumber;
+import org.onosproject.net.device.DeviceEvent;
+import org.onosproject.net.device.DeviceListener;
+import org.onosproject.net.device.DeviceService;
+import org.opencord.cordvtn.api.node.NodePortService;
+import org.slf4j.Logger;
+
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.onosproject.net.AnnotationKeys.PORT_NAME;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Keeps a local index of the enabled ports by name for each device.
+ */
+@Component(immediate = true)
+@Service
+public class NodePortManager implements NodePortService {
+
+    protected final Logger log = getLogger(getClass());
+
+    private static final String ERR_NULL_DEVICE_ID = "Device ID cannot be null";
+
+    @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
+    protected DeviceService deviceService;
+
+    private final DeviceListener deviceListener = new InternalDeviceListener();
+    private final Map<DeviceId, Map<String, PortNumber>> devicePorts =
+            Maps.newConcurrentMap();
+
+    @Activate
+    protected void activate() {
+        deviceService.addListener(deviceListener);
+        log.info("Started");
+    }
+
+    @Deactivate
+    protected void deactivate() {
+        deviceService.removeListener(deviceListener);
+        devicePorts.clear();
+        log.info("Stopped");
+    }
+
+    @Override
+    public PortNumber portNumber(DeviceId deviceId, String portName) {
+        checkNotNull(deviceId, ERR_NULL_DEVICE_ID);
+        if (Strings.isNullOrEmpty(portName)) {
+            return null;
+        }
+        return ports(deviceId).get(portName);
+    }
+
+    private Map<String, PortNumber> ports(DeviceId deviceId) {
+        // the ports of a device are loaded at the first lookup and then
+        // kept current by the port events
+        return devicePorts.computeIfAbsent(deviceId, id -> {
+            Map<String, PortNumber> ports = Maps.newConcurrentMap();
+            deviceService.getPorts(id).forEach(port -> updatePort(ports, port));
+            return ports;
+        });
+    }
+
+    private void updatePort(Map<String, PortNumber> ports, Port port) {
+        ports.values().remove(port.number());
+        String portName = port.annotations().value(PORT_NAME);
+        if (port.isEnabled() && !Strings.isNullOrEmpty(portName)) {
+            ports.put(portName, port.number());
+        }
+    }
+
+    private class InternalDeviceListener implements DeviceListener {
+
+        @Override
+        public void event(DeviceEvent event) {
+            DeviceId deviceId = event.subject().id();
+
+            // updates only the devices already loaded, waits for the loading
+            // in progress not to lose the update
+            switch (event.type()) {
+                case PORT_ADDED:
+                case PORT_UPDATED:
+                    devicePorts.computeIfPresent(deviceId, (id, ports) -> {
+                        updatePort(ports, event.port());
+                        return ports;
+                    });
+                    break;
+                case PORT_REMOVED:
+                    devicePorts.computeIfPresent(deviceId, (id, ports) -> {
+                        ports.values().remove(event.port().number());
+                        return ports;
+                    });
+                    break;
+                case DEVICE_ADDED:
+                case DEVICE_REMOVED:
+                    // reloads the ports at the next lookup
+                    devicePorts.remove(deviceId);
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+}
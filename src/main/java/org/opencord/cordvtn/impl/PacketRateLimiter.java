@@ -0,0 +1,298 @@
+/*
+ * Copyright 2017-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.opencord.cordvtn.impl;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import org.onlab.packet.MacAddress;
+import org.onosproject.net.DeviceId;
+import org.opencord.cordvtn.api.core.PacketDropStats;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Limits the packet-in handled per source MAC address and device with a
+ * token bucket, and suppresses the duplicated packets received within a
+ * short window. Only the packets that pass update the token buckets and
+ * the duplicate window, so that the dropped packets do not extend the
+ * window. The dropped packets are counted per source.
+ */
+public final class PacketRateLimiter {
+
+    public static final int DEFAULT_RATE = 100;
+    public static final int DEFAULT_DUPLICATE_WINDOW = 100;
+
+    private static final int MAX_SOURCES = 10000;
+    private static final int SOURCE_EXPIRE_SECONDS = 60;
+
+    private static final Map<String, PacketRateLimiter> LIMITERS =
+            new ConcurrentHashMap<>();
+
+    private final String name;
+    private final LongSupplier clock;
+    private final Cache<Source, TokenBucket> buckets = CacheBuilder.newBuilder()
+            .maximumSize(MAX_SOURCES)
+            .expireAfterAccess(SOURCE_EXPIRE_SECONDS, TimeUnit.SECONDS)
+            .build();
+    private final Cache<Signature, Long> recentPackets = CacheBuilder.newBuilder()
+            .maximumSize(MAX_SOURCES)
+            .expireAfterWrite(SOURCE_EXPIRE_SECONDS, TimeUnit.SECONDS)
+            .build();
+    private final Cache<Source, AtomicLong> drops = CacheBuilder.newBuilder()
+            .maximumSize(MAX_SOURCES)
+            .expireAfterAccess(SOURCE_EXPIRE_SECONDS, TimeUnit.SECONDS)
+            .build();
+    private final AtomicLong rateLimitedCount = new AtomicLong();
+    private final AtomicLong duplicatedCount = new AtomicLong();
+
+    private volatile int rate = DEFAULT_RATE;
+    private volatile int duplicateWindow = DEFAULT_DUPLICATE_WINDOW;
+
+    private PacketRateLimiter(String name, LongSupplier clock) {
+        this.name = name;
+        this.clock = clock;
+    }
+
+    /**
+     * Returns a new packet rate limiter registered with the given name.
+     *
+     * @param name limiter name
+     * @return packet rate limiter
+     */
+    public static PacketRateLimiter newPacketRateLimiter(String name) {
+        return newPacketRateLimiter(name, System::currentTimeMillis);
+    }
+
+    /**
+     * Returns a new packet rate limiter registered with the given name, which
+     * reads the time from the given clock.
+     *
+     * @param name  limiter name
+     * @param clock clock in milliseconds
+     * @return packet rate limiter
+     */
+    static PacketRateLimiter newPacketRateLimiter(String name, LongSupplier clock) {
+        PacketRateLimiter limiter = new PacketRateLimiter(name, clock);
+        LIMITERS.put(name, limiter);
+        return limiter;
+    }
+
+    /**
+     * Returns all registered packet rate limiters sorted by name.
+     *
+     * @return list of packet rate limiters
+     */
+    static List<PacketRateLimiter> limiters() {
+        return ImmutableList.copyOf(LIMITERS.values().stream()
+                .sorted(Comparator.comparing(PacketRateLimiter::name))
+                .collect(Collectors.toList()));
+    }
+
+    /**
+     * Unregisters the limiter.
+     */
+    public void close() {
+        LIMITERS.remove(name, this);
+    }
+
+    /**
+     * Updates the packets allowed per second per source, which is also the
+     * burst size.
+     *
+     * @param rate packets per second; 0 disables the rate limit
+     */
+    public void setRate(int rate) {
+        checkArgument(rate >= 0, "Rate cannot be negative");
+        this.rate = rate;
+        buckets.invalidateAll();
+    }
+
+    /**
+     * Updates the window to suppress the duplicated packets in.
+     *
+     * @param duplicateWindow window in milliseconds; 0 disables the suppression
+     */
+    public void setDuplicateWindow(int duplicateWindow) {
+        checkArgument(duplicateWindow >= 0, "Duplicate window cannot be negative");
+        this.duplicateWindow = duplicateWindow;
+        recentPackets.invalidateAll();
+    }
+
+    /**
+     * Returns if the packet from the source should be handled. It returns
+     * false if the source exceeded the rate or the same packet, identified
+     * by the signature, was handled within the duplicate window.
+     *
+     * @param deviceId  device id the packet is received from
+     * @param srcMac    source mac address
+     * @param signature value identifying the packet content, compared with
+     *                  its equals method
+     * @return true if the packet should be handled
+     */
+    public boolean tryAcquire(DeviceId deviceId, MacAddress srcMac, Object signature) {
+        long now = clock.getAsLong();
+        Source source = new Source(deviceId, srcMac);
+
+        int window = duplicateWindow;
+        Signature packet = window > 0 ? new Signature(source, signature) : null;
+        if (packet != null) {
+            Long last = recentPackets.getIfPresent(packet);
+            if (last != null && now - last < window) {
+                duplicatedCount.incrementAndGet();
+                countDrop(source);
+                return false;
+            }
+        }
+
+        int currentRate = rate;
+        if (currentRate > 0) {
+            TokenBucket bucket = buckets.asMap().computeIfAbsent(
+                    source, s -> new TokenBucket(currentRate, now));
+            if (!bucket.tryConsume(currentRate, now)) {
+                rateLimitedCount.incrementAndGet();
+                countDrop(source);
+                return false;
+            }
+        }
+        if (packet != null) {
+            recentPackets.put(packet, now);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the name of the limiter.
+     *
+     * @return name
+     */
+    public String name() {
+        return name;
+    }
+
+    /**
+     * Returns the drop statistics of the limiter.
+     *
+     * @return packet drop stats
+     */
+    public PacketDropStats stats() {
+        Map<String, Long> sourceDrops = drops.asMap().entrySet().stream()
+                .collect(Collectors.toMap(e -> e.getKey().toString(),
+                                          e -> e.getValue().get()));
+        return PacketDropStats.builder()
+                .name(name)
+                .counts(rateLimitedCount.get(), duplicatedCount.get())
+                .drops(sourceDrops)
+                .build();
+    }
+
+    private void countDrop(Source source) {
+        drops.asMap().computeIfAbsent(source, s -> new AtomicLong()).incrementAndGet();
+    }
+
+    private static final class TokenBucket {
+        private double tokens;
+        private long lastRefill;
+
+        private TokenBucket(int capacity, long now) {
+            this.tokens = capacity;
+            this.lastRefill = now;
+        }
+
+        private synchronized boolean tryConsume(int rate, long now) {
+            double available = Math.min(rate, tokens + (now - lastRefill) * rate / 1000.0);
+            if (available < 1) {
+                // leave the bucket as is, the refill is counted from the
+                // last packet that passed
+                return false;
+            }
+            tokens = available - 1;
+            lastRefill = now;
+            return true;
+        }
+    }
+
+    private static final class Source {
+        private final DeviceId deviceId;
+        private final MacAddress mac;
+
+        private Source(DeviceId deviceId, MacAddress mac) {
+            this.deviceId = deviceId;
+            this.mac = mac;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj instanceof Source) {
+                Source that = (Source) obj;
+                return Objects.equals(deviceId, that.deviceId) &&
+                        Objects.equals(mac, that.mac);
+            }
+            return false;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(deviceId, mac);
+        }
+
+        @Override
+        public String toString() {
+            return deviceId + "/" + mac;
+        }
+    }
+
+    private static final class Signature {
+        private final Source source;
+        private final Object value;
+
+        private Signature(Source source, Object value) {
+            this.source = source;
+            this.value = value;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj instanceof Signature) {
+                Signature that = (Signature) obj;
+                return Objects.equals(value, that.value) &&
+                        Objects.equals(source, that.source);
+            }
+            return false;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(source, value);
+        }
+    }
+}
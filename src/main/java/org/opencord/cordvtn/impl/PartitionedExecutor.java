@@ -0,0 +1,77 @@
+/*
+ * Copyright 2017-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.opencord.cordvtn.impl;
+
+import org.slf4j.Logger;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.opencord.cordvtn.impl.MonitoredExecutor.newMonitoredExecutor;
+
+/**
+ * Executor that runs the tasks of the same key in order on one of its
+ * single thread partitions, while the tasks of different keys run in parallel.
+ * Each partition is a {@link MonitoredExecutor} with a bounded queue.
+ */
+public final class PartitionedExecutor {
+
+    private final MonitoredExecutor[] partitions;
+
+    /**
+     * Creates a partitioned executor.
+     *
+     * @param size      number of partitions
+     * @param groupName thread group name
+     * @param prefix    thread name prefix
+     * @param log       logger to log the uncaught exceptions
+     */
+    public PartitionedExecutor(int size, String groupName, String prefix, Logger log) {
+        checkArgument(size > 0, "Number of partitions should be positive");
+        partitions = new MonitoredExecutor[size];
+        for (int i = 0; i < size; i++) {
+            partitions[i] = newMonitoredExecutor(groupName, prefix + "-" + i, log);
+        }
+    }
+
+    /**
+     * Executes the task on the partition of the given key.
+     *
+     * @param key  partition key
+     * @param task task to execute
+     */
+    public void execute(Object key, Runnable task) {
+        checkNotNull(key);
+        partitions[Math.floorMod(key.hashCode(), partitions.length)].execute(task);
+    }
+
+    /**
+     * Returns the number of partitions.
+     *
+     * @return number of partitions
+     */
+    public int size() {
+        return partitions.length;
+    }
+
+    /**
+     * Shuts down all partitions.
+     */
+    public void shutdown() {
+        for (MonitoredExecutor partition : partitions) {
+            partition.shutdown();
+        }
+    }
+}
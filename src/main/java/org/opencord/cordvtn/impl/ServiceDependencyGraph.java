@@ -0,0 +1,161 @@
+/*
+ * Copyright 2017-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.opencord.cordvtn.impl;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.opencord.cordvtn.api.net.NetworkId;
+import org.opencord.cordvtn.api.net.ServiceNetwork.DependencyType;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Local index of the service dependencies with the providers and the
+ * subscribers of each service network.
+ */
+final class ServiceDependencyGraph {
+
+    // subscriber to its providers
+    private final Map<NetworkId, Map<NetworkId, DependencyType>> providers = Maps.newHashMap();
+    // provider to its subscribers
+    private final Map<NetworkId, Map<NetworkId, DependencyType>> subscribers = Maps.newHashMap();
+
+    /**
+     * Adds or updates the dependency of the subscriber on the provider.
+     *
+     * @param subscriber subscriber network id
+     * @param provider   provider network id
+     * @param type       dependency type
+     */
+    synchronized void addDependency(NetworkId subscriber, NetworkId provider,
+                                    DependencyType type) {
+        providers.computeIfAbsent(subscriber, id -> Maps.newHashMap()).put(provider, type);
+        subscribers.computeIfAbsent(provider, id -> Maps.newHashMap()).put(subscriber, type);
+    }
+
+    /**
+     * Removes the dependency of the subscriber on the provider.
+     *
+     * @param subscriber subscriber network id
+     * @param provider   provider network id
+     */
+    synchronized void removeDependency(NetworkId subscriber, NetworkId provider) {
+        removeEdge(providers, subscriber, provider);
+        removeEdge(subscribers, provider, subscriber);
+    }
+
+    /**
+     * Replaces all providers of the subscriber with the supplied ones.
+     *
+     * @param subscriber   subscriber network id
+     * @param newProviders providers and the dependency types
+     */
+    synchronized void updateProviders(NetworkId subscriber,
+                                      Map<NetworkId, DependencyType> newProviders) {
+        Map<NetworkId, DependencyType> existing = providers.get(subscriber);
+        if (existing != null) {
+            Sets.newHashSet(existing.keySet()).stream()
+                    .filter(provider -> !newProviders.containsKey(provider))
+                    .forEach(provider -> removeDependency(subscriber, provider));
+        }
+        newProviders.forEach((provider, type) -> addDependency(subscriber, provider, type));
+    }
+
+    /**
+     * Removes the network and all dependencies from and to the network.
+     *
+     * @param netId network id
+     */
+    synchronized void removeNetwork(NetworkId netId) {
+        Map<NetworkId, DependencyType> netProviders = providers.remove(netId);
+        if (netProviders != null) {
+            netProviders.keySet().forEach(provider -> removeEdge(subscribers, provider, netId));
+        }
+        Map<NetworkId, DependencyType> netSubscribers = subscribers.remove(netId);
+        if (netSubscribers != null) {
+            netSubscribers.keySet().forEach(subscriber -> removeEdge(providers, subscriber, netId));
+        }
+    }
+
+    /**
+     * Returns the providers of the network with the dependency types.
+     *
+     * @param netId network id
+     * @return map of provider network id and dependency type
+     */
+    synchronized Map<NetworkId, DependencyType> providers(NetworkId netId) {
+        Map<NetworkId, DependencyType> result = providers.get(netId);
+        return result == null ? ImmutableMap.of() : ImmutableMap.copyOf(result);
+    }
+
+    /**
+     * Returns the subscribers of the network with the dependency types.
+     *
+     * @param netId network id
+     * @return map of subscriber network id and dependency type
+     */
+    synchronized Map<NetworkId, DependencyType> subscribers(NetworkId netId) {
+        Map<NetworkId, DependencyType> result = subscribers.get(netId);
+        return result == null ? ImmutableMap.of() : ImmutableMap.copyOf(result);
+    }
+
+    /**
+     * Returns the providers the network depends on directly or indirectly.
+     *
+     * @param netId network id
+     * @return set of provider network ids
+     */
+    synchronized Set<NetworkId> transitiveProviders(NetworkId netId) {
+        Set<NetworkId> visited = Sets.newHashSet();
+        Deque<NetworkId> queue = new ArrayDeque<>();
+        queue.add(netId);
+        while (!queue.isEmpty()) {
+            Map<NetworkId, DependencyType> next = providers.get(queue.poll());
+            if (next == null) {
+                continue;
+            }
+            next.keySet().stream()
+                    .filter(provider -> !provider.equals(netId) && visited.add(provider))
+                    .forEach(queue::add);
+        }
+        return ImmutableSet.copyOf(visited);
+    }
+
+    /**
+     * Removes all dependencies from the graph.
+     */
+    synchronized void clear() {
+        providers.clear();
+        subscribers.clear();
+    }
+
+    private static void removeEdge(Map<NetworkId, Map<NetworkId, DependencyType>> edges,
+                                   NetworkId from, NetworkId to) {
+        Map<NetworkId, DependencyType> adjacent = edges.get(from);
+        if (adjacent == null) {
+            return;
+        }
+        adjacent.remove(to);
+        if (adjacent.isEmpty()) {
+            edges.remove(from);
+        }
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2017-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.opencord.cordvtn.impl;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import org.onosproject.store.service.AsyncConsistentMap;
+import org.onosproject.store.service.AtomicCounter;
+import org.onosproject.store.service.Versioned;
+import org.opencord.cordvtn.api.core.ServiceNetworkChange;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.LongFunction;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static com.google.common.base.Preconditions.checkState;
+import static org.opencord.cordvtn.api.core.ServiceNetworkChange.tombstone;
+
+/**
+ * Changelog of the service networks and ports kept in a consistent map by
+ * the changelog version.
+ * <p>
+ * The version of a change is taken from the counter after the change is
+ * made to the store, so a version can be missing for a while, or for good
+ * if the member that took it fails before recording the change. Readers
+ * stop at a missing version until it has been missing for the lost change
+ * timeout, and then put a tombstone there and move past it. A late writer
+ * finds the tombstone and records the change with a new version.
+ * <p>
+ * Every version taken, by a writer or by a reader putting a tombstone,
+ * removes the version that falls out of the retained window, so that the
+ * versions skipped by the writers are trimmed as well.
+ */
+final class ServiceNetworkChangelog {
+
+    private static final String ERR_TRIMMED = "Changes since version %s are no longer retained";
+    private static final String ERR_UNKNOWN = "Version %s is not recorded yet";
+
+    private final AsyncConsistentMap<Long, ServiceNetworkChange> changelog;
+    private final AtomicCounter changelogVersion;
+    private final long maxChanges;
+    private final long lostChangeTimeout;
+    private final LongSupplier clock;
+    // missing versions and the time they were found missing first
+    private final Map<Long, Long> missingVersions = Maps.newConcurrentMap();
+
+    /**
+     * Creates a changelog.
+     *
+     * @param changelog         consistent map of the changes by the version
+     * @param changelogVersion  counter of the latest version taken
+     * @param maxChanges        number of the latest changes retained
+     * @param lostChangeTimeout time in milliseconds a version can be missing
+     *                          before the readers skip it
+     * @param clock             clock in milliseconds
+     */
+    ServiceNetworkChangelog(AsyncConsistentMap<Long, ServiceNetworkChange> changelog,
+                            AtomicCounter changelogVersion,
+                            long maxChanges, long lostChangeTimeout,
+                            LongSupplier clock) {
+        this.changelog = changelog;
+        this.changelogVersion = changelogVersion;
+        this.maxChanges = maxChanges;
+        this.lostChangeTimeout = lostChangeTimeout;
+        this.clock = clock;
+    }
+
+    /**
+     * Records the change built for the next version.
+     *
+     * @param changeFor function to build the change of a version
+     * @return recorded change
+     */
+    ServiceNetworkChange record(LongFunction<ServiceNetworkChange> changeFor) {
+        ServiceNetworkChange change;
+        do {
+            long version = changelogVersion.incrementAndGet();
+            trim(version);
+            change = changeFor.apply(version);
+        } while (changelog.putIfAbsent(change.version(), change).join() != null);
+        return change;
+    }
+
+    /**
+     * Returns the changes recorded after the supplied version, in the order
+     * of the versions. The changes stop before the first version not
+     * recorded yet. The tombstones of the lost versions are included so
+     * that the caller resumes after them.
+     *
+     * @param sinceVersion version already known to the caller
+     * @return list of changes
+     * @throws IllegalStateException if the changes are no longer retained or
+     * the version is not taken yet
+     */
+    List<ServiceNetworkChange> changes(long sinceVersion) {
+        long latest = changelogVersion.get();
+        checkState(sinceVersion <= latest, ERR_UNKNOWN, sinceVersion);
+        checkState(sinceVersion >= latest - maxChanges, ERR_TRIMMED, sinceVersion);
+        missingVersions.keySet().removeIf(v -> v <= sinceVersion);
+
+        // reads all versions at once rather than one round trip per version
+        List<CompletableFuture<Versioned<ServiceNetworkChange>>> reads =
+                LongStream.rangeClosed(sinceVersion + 1, latest)
+                        .mapToObj(changelog::get)
+                        .collect(Collectors.toList());
+
+        ImmutableList.Builder<ServiceNetworkChange> changes = ImmutableList.builder();
+        long version = sinceVersion;
+        for (CompletableFuture<Versioned<ServiceNetworkChange>> read : reads) {
+            version++;
+            Versioned<ServiceNetworkChange> change = read.join();
+            if (change == null) {
+                change = skipIfLost(version);
+            }
+            if (change == null) {
+                // the change is not recorded yet; stop here so that the
+                // caller resumes from this version next time
+                break;
+            }
+            changes.add(change.value());
+        }
+        return changes.build();
+    }
+
+    /**
+     * Returns the latest version taken.
+     *
+     * @return changelog version
+     */
+    long version() {
+        return changelogVersion.get();
+    }
+
+    private Versioned<ServiceNetworkChange> skipIfLost(long version) {
+        long now = clock.getAsLong();
+        long missingSince = missingVersions.computeIfAbsent(version, v -> now);
+        if (now - missingSince < lostChangeTimeout) {
+            return null;
+        }
+        missingVersions.remove(version);
+        Versioned<ServiceNetworkChange> existing =
+                changelog.putIfAbsent(version, tombstone(version)).join();
+        if (existing == null) {
+            // the lost writer did not trim for the version
+            trim(version);
+        }
+        // the change is recorded by the writer just before the tombstone
+        return existing != null ? existing : new Versioned<>(tombstone(version), 0);
+    }
+
+    private void trim(long version) {
+        long expired = version - maxChanges;
+        if (expired > 0) {
+            changelog.remove(expired);
+        }
+    }
+}
@@ -15,7 +15,6 @@
  */
 package org.opencord.cordvtn.impl;
 
-import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Maps;
 import org.apache.felix.scr.annotations.Activate;
 import org.apache.felix.scr.annotations.Component;
@@ -23,6 +22,8 @@ import org.apache.felix.scr.annotations.Deactivate;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.ReferenceCardinality;
 import org.apache.felix.scr.annotations.Service;
+import org.onlab.packet.IpAddress;
+import org.onlab.packet.MacAddress;
 import org.onosproject.core.ApplicationId;
 import org.onosproject.core.CoreService;
 import org.onosproject.event.ListenerRegistry;
@@ -35,6 +36,7 @@ import org.onosproject.net.host.HostService;
 import org.opencord.cordvtn.api.Constants;
 import org.opencord.cordvtn.api.CordVtnConfig;
 import org.opencord.cordvtn.api.core.ServiceNetworkAdminService;
+import org.opencord.cordvtn.api.core.ServiceNetworkChange;
 import org.opencord.cordvtn.api.core.ServiceNetworkEvent;
 import org.opencord.cordvtn.api.core.ServiceNetworkListener;
 import org.opencord.cordvtn.api.core.ServiceNetworkService;
@@ -47,11 +49,11 @@ import org.opencord.cordvtn.api.net.ServiceNetwork.DependencyType;
 import org.opencord.cordvtn.api.net.ServicePort;
 import org.slf4j.Logger;
 
+import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Set;
-import java.util.stream.Collectors;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static org.slf4j.LoggerFactory.getLogger;
 
@@ -79,6 +81,9 @@ public class ServiceNetworkManager extends ListenerRegistry<ServiceNetworkEvent,
     private static final String ERR_NULL_SERVICE_PORT_ID = "Service port ID cannot be null";
     private static final String ERR_NULL_SERVICE_PORT_NAME = "Service port name cannot be null";
     private static final String ERR_NULL_SERVICE_PORT_NET_ID = "Service port network ID cannot be null";
+    private static final String ERR_NULL_MAC = "MAC address cannot be null";
+    private static final String ERR_NULL_IP = "IP address cannot be null";
+    private static final String ERR_INVALID_VERSION = "Changelog version cannot be negative";
 
     private static final String ERR_NOT_FOUND = " does not exist";
     private static final String ERR_IN_USE = " still in use";
@@ -139,6 +144,24 @@ public class ServiceNetworkManager extends ListenerRegistry<ServiceNetworkEvent,
         return snetStore.serviceNetworks();
     }
 
+    @Override
+    public Map<NetworkId, DependencyType> providers(NetworkId netId) {
+        checkNotNull(netId, ERR_NULL_SERVICE_NET_ID);
+        return snetStore.providers(netId);
+    }
+
+    @Override
+    public Map<NetworkId, DependencyType> subscribers(NetworkId netId) {
+        checkNotNull(netId, ERR_NULL_SERVICE_NET_ID);
+        return snetStore.subscribers(netId);
+    }
+
+    @Override
+    public Set<NetworkId> transitiveProviders(NetworkId netId) {
+        checkNotNull(netId, ERR_NULL_SERVICE_NET_ID);
+        return snetStore.transitiveProviders(netId);
+    }
+
     @Override
     public void createServiceNetwork(ServiceNetwork snet) {
         checkNotNull(snet, ERR_NULL_SERVICE_NET);
@@ -183,14 +206,17 @@ public class ServiceNetworkManager extends ListenerRegistry<ServiceNetworkEvent,
                 throw new IllegalStateException(error);
             }
             // remove dependencies on this network first
-            serviceNetworks().stream().filter(n -> isProvider(n, netId)).forEach(n -> {
-                Map<NetworkId, DependencyType> newProviders = Maps.newHashMap(n.providers());
-                newProviders.remove(netId);
-                ServiceNetwork updated = DefaultServiceNetwork.builder(n)
-                        .providers(newProviders)
-                        .build();
-                snetStore.updateServiceNetwork(updated);
-            });
+            snetStore.serviceNetworks().stream()
+                    .filter(n -> n.providers().containsKey(netId))
+                    .forEach(n -> {
+                        Map<NetworkId, DependencyType> newProviders =
+                                Maps.newHashMap(n.providers());
+                        newProviders.remove(netId);
+                        ServiceNetwork updated = DefaultServiceNetwork.builder(n)
+                                .providers(newProviders)
+                                .build();
+                        snetStore.updateServiceNetwork(updated);
+                    });
             ServiceNetwork snet = snetStore.removeServiceNetwork(netId);
             log.info(String.format(MSG_SERVICE_NET, snet.name(), MSG_REMOVED));
         }
@@ -209,10 +235,44 @@ public class ServiceNetworkManager extends ListenerRegistry<ServiceNetworkEvent,
 
     @Override
     public Set<ServicePort> servicePorts(NetworkId netId) {
-        Set<ServicePort> sports = snetStore.servicePorts().stream()
-                .filter(p -> Objects.equals(p.networkId(), netId))
-                .collect(Collectors.toSet());
-        return ImmutableSet.copyOf(sports);
+        checkNotNull(netId, ERR_NULL_SERVICE_NET_ID);
+        return snetStore.servicePorts(netId);
+    }
+
+    @Override
+    public ServicePort servicePortByName(String portName) {
+        checkNotNull(portName, ERR_NULL_SERVICE_PORT_NAME);
+        return snetStore.servicePortByName(portName);
+    }
+
+    @Override
+    public ServicePort servicePortByMac(MacAddress mac) {
+        checkNotNull(mac, ERR_NULL_MAC);
+        return snetStore.servicePortByMac(mac);
+    }
+
+    @Override
+    public Set<ServicePort> servicePortsByIp(IpAddress ip) {
+        checkNotNull(ip, ERR_NULL_IP);
+        return snetStore.servicePortsByIp(ip);
+    }
+
+    @Override
+    public ServicePort servicePortByIp(NetworkId netId, IpAddress ip) {
+        checkNotNull(netId, ERR_NULL_SERVICE_NET_ID);
+        checkNotNull(ip, ERR_NULL_IP);
+        return snetStore.servicePortByIp(netId, ip);
+    }
+
+    @Override
+    public List<ServiceNetworkChange> changes(long sinceVersion) {
+        checkArgument(sinceVersion >= 0, ERR_INVALID_VERSION);
+        return snetStore.changes(sinceVersion);
+    }
+
+    @Override
+    public long changelogVersion() {
+        return snetStore.changelogVersion();
     }
 
     @Override
@@ -262,21 +322,9 @@ public class ServiceNetworkManager extends ListenerRegistry<ServiceNetworkEvent,
         }
     }
 
-    /**
-     * Returns if the given target network is a provider of the given network.
-     *
-     * @param snet     service network
-     * @param targetId target network
-     * @return true if the service network is a provider of the target network
-     */
-    private boolean isProvider(ServiceNetwork snet, NetworkId targetId) {
-        checkNotNull(snet);
-        return snet.providers().keySet().contains(targetId);
-    }
-
     private boolean isNetworkInUse(NetworkId netId) {
         // TODO use instance service to see if there's running instance for the network
-        return !servicePorts(netId).isEmpty();
+        return !snetStore.servicePorts(netId).isEmpty();
     }
 
     private boolean isPortInUse(PortId portId) {
@@ -0,0 +1,373 @@
+/*
+ * Copyright 2017-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.opencord.cordvtn.impl;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.onlab.packet.IpAddress;
+import org.onlab.packet.MacAddress;
+import org.onosproject.store.service.Versioned;
+import org.opencord.cordvtn.api.net.NetworkId;
+import org.opencord.cordvtn.api.net.PortId;
+import org.opencord.cordvtn.api.net.ServiceNetwork;
+import org.opencord.cordvtn.api.net.ServicePort;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.function.LongSupplier;
+
+/**
+ * Locally held snapshot of the service networks and ports, with the ports
+ * indexed by network, name, MAC address and IP address.
+ * <p>
+ * Updates are ordered by the versions of the values in the distributed
+ * store; an update older than the entry in the snapshot is ignored. The
+ * versions of the removed entries are kept as tombstones for a while, so
+ * that a late update of a removed entry does not bring it back. The
+ * tombstones older than the timeout are dropped on the next removal, and
+ * all of them when the snapshot is cleared.
+ * <p>
+ * The indexes are updated incrementally, so that the reads by key never
+ * lock or copy the whole inventory. The same IP address can be used in more
+ * than one network, so the IP index holds every port with the address.
+ */
+final class ServiceNetworkSnapshot {
+
+    // time in milliseconds a tombstone is kept by default
+    private static final long DEFAULT_TOMBSTONE_TIMEOUT = 60000;
+
+    private final long tombstoneTimeout;
+    private final LongSupplier clock;
+    private final Map<NetworkId, Entry<ServiceNetwork>> networks = Maps.newConcurrentMap();
+    private final Map<PortId, Entry<ServicePort>> ports = Maps.newConcurrentMap();
+    private final Map<NetworkId, Set<ServicePort>> portsByNetwork = Maps.newConcurrentMap();
+    private final Map<String, ServicePort> portsByName = Maps.newConcurrentMap();
+    private final Map<MacAddress, ServicePort> portsByMac = Maps.newConcurrentMap();
+    private final Map<IpAddress, Set<ServicePort>> portsByIp = Maps.newConcurrentMap();
+
+    // built on the first read after an update
+    private volatile Set<ServiceNetwork> allNetworks = ImmutableSet.of();
+    private volatile Set<ServicePort> allPorts = ImmutableSet.of();
+    // tombstones in the order they were put, to expire the oldest first
+    private final Queue<Tombstone<?, ?>> tombstones = new ArrayDeque<>();
+
+    /**
+     * Creates a snapshot that keeps the tombstones for the default timeout.
+     */
+    ServiceNetworkSnapshot() {
+        this(DEFAULT_TOMBSTONE_TIMEOUT, System::currentTimeMillis);
+    }
+
+    /**
+     * Creates a snapshot.
+     *
+     * @param tombstoneTimeout time in milliseconds a tombstone is kept
+     * @param clock            clock in milliseconds
+     */
+    ServiceNetworkSnapshot(long tombstoneTimeout, LongSupplier clock) {
+        this.tombstoneTimeout = tombstoneTimeout;
+        this.clock = clock;
+    }
+
+    /**
+     * Adds or updates the service network if the version is newer than the
+     * one in the snapshot.
+     *
+     * @param snet    service network
+     * @param version version of the service network in the store
+     */
+    synchronized void putServiceNetwork(ServiceNetwork snet, long version) {
+        if (put(networks, snet.id(), snet, version) != null) {
+            allNetworks = null;
+        }
+    }
+
+    /**
+     * Adds or updates the service networks whose versions are newer than
+     * the ones in the snapshot.
+     *
+     * @param snets versioned service networks
+     */
+    synchronized void putServiceNetworks(Collection<Versioned<ServiceNetwork>> snets) {
+        snets.forEach(snet -> put(networks, snet.value().id(), snet.value(), snet.version()));
+        allNetworks = null;
+    }
+
+    /**
+     * Removes the service network if the version is not older than the one
+     * in the snapshot.
+     *
+     * @param netId   network id
+     * @param version version of the removed service network in the store
+     */
+    synchronized void removeServiceNetwork(NetworkId netId, long version) {
+        if (remove(networks, netId, version) != null) {
+            allNetworks = null;
+        }
+    }
+
+    /**
+     * Adds or updates the service port if the version is newer than the one
+     * in the snapshot.
+     *
+     * @param sport   service port
+     * @param version version of the service port in the store
+     */
+    synchronized void putServicePort(ServicePort sport, long version) {
+        Entry<ServicePort> existing = put(ports, sport.id(), sport, version);
+        if (existing != null) {
+            unindex(existing.value);
+            index(sport);
+            allPorts = null;
+        }
+    }
+
+    /**
+     * Adds or updates the service ports whose versions are newer than the
+     * ones in the snapshot.
+     *
+     * @param sports versioned service ports
+     */
+    synchronized void putServicePorts(Collection<Versioned<ServicePort>> sports) {
+        sports.forEach(sport -> putServicePort(sport.value(), sport.version()));
+    }
+
+    /**
+     * Removes the service port if the version is not older than the one in
+     * the snapshot.
+     *
+     * @param portId  port id
+     * @param version version of the removed service port in the store
+     */
+    synchronized void removeServicePort(PortId portId, long version) {
+        Entry<ServicePort> existing = remove(ports, portId, version);
+        if (existing != null) {
+            unindex(existing.value);
+            allPorts = null;
+        }
+    }
+
+    /**
+     * Removes all service networks and ports, and the tombstones of the
+     * removed ones from the snapshot.
+     */
+    synchronized void clear() {
+        networks.clear();
+        ports.clear();
+        portsByNetwork.clear();
+        portsByName.clear();
+        portsByMac.clear();
+        portsByIp.clear();
+        tombstones.clear();
+        allNetworks = ImmutableSet.of();
+        allPorts = ImmutableSet.of();
+    }
+
+    ServiceNetwork serviceNetwork(NetworkId netId) {
+        return value(networks.get(netId));
+    }
+
+    Set<ServiceNetwork> serviceNetworks() {
+        Set<ServiceNetwork> all = allNetworks;
+        return all != null ? all : buildAllNetworks();
+    }
+
+    ServicePort servicePort(PortId portId) {
+        return value(ports.get(portId));
+    }
+
+    Set<ServicePort> servicePorts() {
+        Set<ServicePort> all = allPorts;
+        return all != null ? all : buildAllPorts();
+    }
+
+    Set<ServicePort> servicePorts(NetworkId netId) {
+        return get(portsByNetwork, netId);
+    }
+
+    ServicePort servicePortByName(String name) {
+        return portsByName.get(name);
+    }
+
+    ServicePort servicePortByMac(MacAddress mac) {
+        return portsByMac.get(mac);
+    }
+
+    Set<ServicePort> servicePortsByIp(IpAddress ip) {
+        return get(portsByIp, ip);
+    }
+
+    ServicePort servicePortByIp(NetworkId netId, IpAddress ip) {
+        return servicePortsByIp(ip).stream()
+                .filter(sport -> Objects.equals(sport.networkId(), netId))
+                .findFirst()
+                .orElse(null);
+    }
+
+    private synchronized Set<ServiceNetwork> buildAllNetworks() {
+        if (allNetworks == null) {
+            allNetworks = values(networks);
+        }
+        return allNetworks;
+    }
+
+    private synchronized Set<ServicePort> buildAllPorts() {
+        if (allPorts == null) {
+            allPorts = values(ports);
+        }
+        return allPorts;
+    }
+
+    private void index(ServicePort sport) {
+        addTo(portsByNetwork, sport.networkId(), sport);
+        addTo(portsByIp, sport.ip(), sport);
+        if (sport.name() != null) {
+            portsByName.put(sport.name(), sport);
+        }
+        if (sport.mac() != null) {
+            portsByMac.put(sport.mac(), sport);
+        }
+    }
+
+    private void unindex(ServicePort sport) {
+        if (sport == null) {
+            return;
+        }
+        removeFrom(portsByNetwork, sport.networkId(), sport);
+        removeFrom(portsByIp, sport.ip(), sport);
+        if (sport.name() != null) {
+            portsByName.remove(sport.name(), sport);
+        }
+        if (sport.mac() != null) {
+            portsByMac.remove(sport.mac(), sport);
+        }
+    }
+
+    private static <K, V> void addTo(Map<K, Set<V>> index, K key, V value) {
+        if (key != null) {
+            index.computeIfAbsent(key, k -> Sets.newConcurrentHashSet()).add(value);
+        }
+    }
+
+    private static <K, V> void removeFrom(Map<K, Set<V>> index, K key, V value) {
+        if (key != null) {
+            index.computeIfPresent(key, (k, values) -> {
+                values.remove(value);
+                return values.isEmpty() ? null : values;
+            });
+        }
+    }
+
+    private static <K, V> Set<V> get(Map<K, Set<V>> index, K key) {
+        Set<V> values = index.get(key);
+        return values == null ? ImmutableSet.of() : ImmutableSet.copyOf(values);
+    }
+
+    /**
+     * Puts the value if the version is newer than the one of the existing
+     * entry or tombstone.
+     *
+     * @return the replaced entry, or an empty entry if none; null if the
+     * value is not changed
+     */
+    private static <K, V> Entry<V> put(Map<K, Entry<V>> entries, K key, V value,
+                                       long version) {
+        Entry<V> existing = entries.getOrDefault(key, Entry.none());
+        if (existing.version >= version) {
+            return null;
+        }
+        entries.put(key, new Entry<>(value, version));
+        return Objects.equals(existing.value, value) ? null : existing;
+    }
+
+    /**
+     * Replaces the entry with a tombstone if the version is not older than
+     * the one of the existing entry or tombstone.
+     *
+     * @return the removed entry; null if there is no entry to remove
+     */
+    private <K, V> Entry<V> remove(Map<K, Entry<V>> entries, K key, long version) {
+        long now = clock.getAsLong();
+        expireTombstones(now);
+        Entry<V> existing = entries.getOrDefault(key, Entry.none());
+        if (existing.version > version) {
+            return null;
+        }
+        Entry<V> tombstone = new Entry<>(null, version);
+        entries.put(key, tombstone);
+        tombstones.add(new Tombstone<>(entries, key, tombstone, now));
+        return existing.value == null ? null : existing;
+    }
+
+    private void expireTombstones(long now) {
+        while (!tombstones.isEmpty() && now - tombstones.peek().time >= tombstoneTimeout) {
+            tombstones.poll().expire();
+        }
+    }
+
+    private static <V> V value(Entry<V> entry) {
+        return entry == null ? null : entry.value;
+    }
+
+    private static <K, V> Set<V> values(Map<K, Entry<V>> entries) {
+        return ImmutableSet.copyOf(entries.values().stream()
+                .map(entry -> entry.value)
+                .filter(Objects::nonNull)
+                .iterator());
+    }
+
+    private static final class Tombstone<K, V> {
+        private final Map<K, Entry<V>> entries;
+        private final K key;
+        private final Entry<V> entry;
+        private final long time;
+
+        private Tombstone(Map<K, Entry<V>> entries, K key, Entry<V> entry, long time) {
+            this.entries = entries;
+            this.key = key;
+            this.entry = entry;
+            this.time = time;
+        }
+
+        private void expire() {
+            // the entry may be put again or replaced by a newer tombstone
+            entries.remove(key, entry);
+        }
+    }
+
+    private static final class Entry<V> {
+        private static final Entry<?> NONE = new Entry<>(null, Long.MIN_VALUE);
+
+        // null for the tombstone of a removed entry
+        private final V value;
+        private final long version;
+
+        private Entry(V value, long version) {
+            this.value = value;
+            this.version = version;
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <V> Entry<V> none() {
+            return (Entry<V>) NONE;
+        }
+    }
+}
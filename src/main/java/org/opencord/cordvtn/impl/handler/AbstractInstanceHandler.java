@@ -15,47 +15,61 @@
  */
 package org.opencord.cordvtn.impl.handler;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.hash.Hashing;
+import org.apache.felix.scr.annotations.Property;
 import org.onlab.osgi.DefaultServiceDirectory;
 import org.onlab.osgi.ServiceDirectory;
 import org.onlab.packet.Ip4Address;
 import org.onlab.packet.IpAddress;
 import org.onlab.util.Tools;
+import org.onosproject.cfg.ComponentConfigService;
 import org.onosproject.core.ApplicationId;
 import org.onosproject.core.CoreService;
 import org.onosproject.mastership.MastershipService;
 import org.onosproject.net.Device;
 import org.onosproject.net.DeviceId;
 import org.onosproject.net.Host;
-import org.onosproject.net.Port;
 import org.onosproject.net.PortNumber;
 import org.onosproject.net.behaviour.ExtensionTreatmentResolver;
+import org.onosproject.net.device.DeviceEvent;
+import org.onosproject.net.device.DeviceListener;
 import org.onosproject.net.device.DeviceService;
+import org.onosproject.net.flow.FlowRule;
+import org.onosproject.net.flow.FlowRuleOperation;
 import org.onosproject.net.flow.instructions.ExtensionPropertyException;
 import org.onosproject.net.flow.instructions.ExtensionTreatment;
 import org.onosproject.net.host.HostEvent;
 import org.onosproject.net.host.HostListener;
 import org.onosproject.net.host.HostService;
+import org.onosproject.net.intent.WorkPartitionService;
 import org.opencord.cordvtn.api.Constants;
+import org.opencord.cordvtn.api.core.DesiredFlowRuleProvider;
+import org.opencord.cordvtn.api.core.FlowRuleBatch;
 import org.opencord.cordvtn.api.core.Instance;
 import org.opencord.cordvtn.api.core.InstanceHandler;
+import org.opencord.cordvtn.api.core.InstanceService;
 import org.opencord.cordvtn.api.core.ServiceNetworkService;
 import org.opencord.cordvtn.api.net.NetworkId;
 import org.opencord.cordvtn.api.net.ServiceNetwork;
 import org.opencord.cordvtn.api.net.ServicePort;
 import org.opencord.cordvtn.api.node.CordVtnNode;
+import org.opencord.cordvtn.api.node.CordVtnNodeEvent;
+import org.opencord.cordvtn.api.node.CordVtnNodeListener;
 import org.opencord.cordvtn.api.node.CordVtnNodeService;
+import org.opencord.cordvtn.api.node.NodePortService;
+import org.opencord.cordvtn.impl.PartitionedExecutor;
+import org.osgi.service.component.ComponentContext;
 import org.slf4j.Logger;
 
 import java.util.Objects;
-import java.util.Optional;
 import java.util.Set;
-import java.util.concurrent.ExecutorService;
 import java.util.stream.Collectors;
 
-import static java.util.concurrent.Executors.newSingleThreadExecutor;
-import static org.onlab.util.Tools.groupedThreads;
-import static org.onosproject.net.AnnotationKeys.PORT_NAME;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.onosproject.net.flow.FlowRuleOperation.Type.ADD;
 import static org.onosproject.net.flow.instructions.ExtensionTreatmentType.ExtensionTreatmentTypes.NICIRA_SET_TUNNEL_DST;
 import static org.opencord.cordvtn.api.Constants.DEFAULT_TUNNEL;
 import static org.slf4j.LoggerFactory.getLogger;
@@ -63,38 +77,72 @@ import static org.slf4j.LoggerFactory.getLogger;
 /**
  * Provides default virtual network connectivity for service instances.
  */
-public abstract class AbstractInstanceHandler implements InstanceHandler {
+public abstract class AbstractInstanceHandler implements InstanceHandler,
+        DesiredFlowRuleProvider {
 
     protected final Logger log = getLogger(getClass());
 
     protected static final String ERR_VTN_NETWORK = "Failed to get VTN network for %s";
     protected static final String ERR_VTN_PORT = "Failed to get VTN port for %s";
     protected static final String PROPERTY_TUNNEL_DST = "tunnelDst";
+    protected static final String EVENT_THREADS = "eventThreads";
+    protected static final int DEFAULT_EVENT_THREADS = 4;
+    private static final int MAX_TUNNEL_DST_TREATMENTS = 10000;
+
+    @Property(name = EVENT_THREADS, intValue = DEFAULT_EVENT_THREADS,
+            label = "Number of threads to handle the events, the events of an instance " +
+                    "are handled in order by the same thread")
+    private int eventThreads = DEFAULT_EVENT_THREADS;
 
     protected CoreService coreService;
+    protected ComponentConfigService configService;
     protected MastershipService mastershipService;
     protected HostService hostService;
     protected DeviceService deviceService;
     protected ServiceNetworkService snetService;
     protected CordVtnNodeService nodeService;
+    protected InstanceService instanceService;
+    protected NodePortService nodePortService;
+    protected WorkPartitionService workPartitionService;
     protected ApplicationId appId;
     protected Set<ServiceNetwork.NetworkType> netTypes = ImmutableSet.of();
 
     protected HostListener hostListener = new InternalHostListener();
+    private final DeviceListener deviceListener = new InternalDeviceListener();
+    private final CordVtnNodeListener nodeListener = new InternalCordVtnNodeListener();
+
+    // tunnel destination treatments are not modified once built, share them
+    // among the flow rules until the device or the node changes
+    private final Cache<TunnelDstKey, ExtensionTreatment> tunnelDstTreatments =
+            CacheBuilder.newBuilder()
+                    .maximumSize(MAX_TUNNEL_DST_TREATMENTS)
+                    .build();
 
-    protected final ExecutorService eventExecutor = newSingleThreadExecutor(
-            groupedThreads(this.getClass().getSimpleName(), "event-handler", log));
+    protected PartitionedExecutor eventExecutor;
 
-    protected void activate() {
+    protected void activate(ComponentContext context) {
         ServiceDirectory services = new DefaultServiceDirectory();
         coreService = services.get(CoreService.class);
+        configService = services.get(ComponentConfigService.class);
         mastershipService = services.get(MastershipService.class);
         hostService = services.get(HostService.class);
         deviceService = services.get(DeviceService.class);
         snetService = services.get(ServiceNetworkService.class);
         nodeService = services.get(CordVtnNodeService.class);
+        instanceService = services.get(InstanceService.class);
+        nodePortService = services.get(NodePortService.class);
+        workPartitionService = services.get(WorkPartitionService.class);
 
         appId = coreService.registerApplication(Constants.CORDVTN_APP_ID);
+        configService.registerProperties(getClass());
+        Integer threads = Tools.getIntegerProperty(context.getProperties(), EVENT_THREADS);
+        if (threads != null && threads > 0) {
+            eventThreads = threads;
+        }
+        eventExecutor = new PartitionedExecutor(
+                eventThreads, this.getClass().getSimpleName(), "event-handler", log);
+        deviceService.addListener(deviceListener);
+        nodeService.addListener(nodeListener);
         hostService.addListener(hostListener);
 
         log.info("Started");
@@ -102,6 +150,10 @@ public abstract class AbstractInstanceHandler implements InstanceHandler {
 
     protected void deactivate() {
         hostService.removeListener(hostListener);
+        nodeService.removeListener(nodeListener);
+        deviceService.removeListener(deviceListener);
+        tunnelDstTreatments.invalidateAll();
+        configService.unregisterProperties(getClass(), false);
         eventExecutor.shutdown();
 
         log.info("Stopped");
@@ -112,15 +164,100 @@ public abstract class AbstractInstanceHandler implements InstanceHandler {
         instanceDetected(instance);
     }
 
-    protected Set<Instance> getInstances(NetworkId netId) {
-        return Tools.stream(hostService.getHosts())
-                .filter(host -> Objects.equals(
-                        netId.id(),
-                        host.annotations().value(Instance.NETWORK_ID)))
-                .map(Instance::of)
+    @Override
+    public Set<FlowRule> desiredFlowRules(DeviceId deviceId) {
+        // builds the rules of the instances on the given device only, the
+        // rules of the other instances on this device are added separately
+        FlowRuleBatch.Builder batch = FlowRuleBatch.builder();
+        instanceService.instances(deviceId).stream()
+                .filter(instance -> netTypes.isEmpty() || netTypes.contains(instance.netType()))
+                .filter(instance -> !instance.isAdditionalInstance())
+                .forEach(instance -> {
+                    try {
+                        populateInstanceRules(batch, instance);
+                    } catch (IllegalStateException e) {
+                        log.warn("Failed to get desired flow rules for {}", instance);
+                    }
+                });
+        populateRemoteInstanceRules(batch, deviceId);
+        return addedRules(batch.build(), deviceId);
+    }
+
+    protected Set<FlowRule> addedRules(FlowRuleBatch batch, DeviceId deviceId) {
+        return batch.operations().stream()
+                .filter(op -> op.type() == ADD)
+                .map(FlowRuleOperation::rule)
+                .filter(rule -> rule.deviceId().equals(deviceId))
                 .collect(Collectors.toSet());
     }
 
+    /**
+     * Adds the flow rules required for the supplied instance to the batch.
+     *
+     * @param batch    flow rule batch builder
+     * @param instance instance
+     */
+    protected abstract void populateInstanceRules(FlowRuleBatch.Builder batch,
+                                                  Instance instance);
+
+    /**
+     * Adds the flow rules required on the supplied device for the instances
+     * on the other devices to the batch. No rules by default.
+     *
+     * @param batch    flow rule batch builder
+     * @param deviceId device id
+     */
+    protected void populateRemoteInstanceRules(FlowRuleBatch.Builder batch,
+                                               DeviceId deviceId) {
+    }
+
+    /**
+     * Returns the key to partition the events of the supplied host. The events
+     * with the same key are handled in order.
+     *
+     * @param host host
+     * @return partition key
+     */
+    protected Object eventKey(Host host) {
+        // not by the device, the events of a moved instance stay in order
+        return host.id();
+    }
+
+    /**
+     * Returns if this cluster member handles the events of the supplied host.
+     * The master of the device of the host handles them by default.
+     *
+     * @param host host
+     * @return true if the local member handles the events
+     */
+    protected boolean isEventOwner(Host host) {
+        return mastershipService.isLocalMaster(host.location().deviceId());
+    }
+
+    protected Set<Instance> getInstances() {
+        return snetService.serviceNetworks().stream()
+                .filter(snet -> netTypes.isEmpty() || netTypes.contains(snet.type()))
+                .flatMap(snet -> getInstances(snet.id()).stream())
+                .collect(Collectors.toSet());
+    }
+
+    protected Set<Instance> getInstances(NetworkId netId) {
+        return instanceService.instances(netId);
+    }
+
+    /**
+     * Returns if the works of the supplied network belong to the work
+     * partition of this cluster member. The partitions are reassigned to the
+     * other members on failure.
+     *
+     * @param netId network id
+     * @return true if the local member owns the network
+     */
+    protected boolean isMine(NetworkId netId) {
+        return workPartitionService.isMine(netId, id -> Hashing.sha256()
+                .hashString(id.id(), UTF_8).asLong());
+    }
+
     protected ServiceNetwork getServiceNetwork(Instance instance) {
         ServiceNetwork snet = snetService.serviceNetwork(instance.netId());
         if (snet == null) {
@@ -145,14 +282,11 @@ public abstract class AbstractInstanceHandler implements InstanceHandler {
             log.debug("Failed to get node for {}", deviceId);
             return null;
         }
-        Optional<PortNumber> port = getPortNumber(deviceId, node.dataInterface());
-        return port.isPresent() ? port.get() : null;
-
+        return nodePortService.portNumber(deviceId, node.dataInterface());
     }
 
     protected PortNumber tunnelPort(DeviceId deviceId) {
-        Optional<PortNumber> port = getPortNumber(deviceId, DEFAULT_TUNNEL);
-        return port.isPresent() ? port.get() : null;
+        return nodePortService.portNumber(deviceId, DEFAULT_TUNNEL);
     }
 
     protected PortNumber hostManagementPort(DeviceId deviceId) {
@@ -163,17 +297,27 @@ public abstract class AbstractInstanceHandler implements InstanceHandler {
         }
 
         if (node.hostManagementInterface() != null) {
-            Optional<PortNumber> port =
-                    getPortNumber(deviceId, node.hostManagementInterface());
-            return port.isPresent() ? port.get() : null;
+            return nodePortService.portNumber(deviceId, node.hostManagementInterface());
         } else {
             return null;
         }
     }
 
     protected ExtensionTreatment tunnelDstTreatment(DeviceId deviceId, Ip4Address remoteIp) {
+        TunnelDstKey key = new TunnelDstKey(deviceId, remoteIp);
+        ExtensionTreatment treatment = tunnelDstTreatments.getIfPresent(key);
+        if (treatment == null) {
+            treatment = buildTunnelDstTreatment(deviceId, remoteIp);
+            if (treatment != null) {
+                tunnelDstTreatments.put(key, treatment);
+            }
+        }
+        return treatment;
+    }
+
+    private ExtensionTreatment buildTunnelDstTreatment(DeviceId deviceId, Ip4Address remoteIp) {
         Device device = deviceService.getDevice(deviceId);
-        if (device != null && !device.is(ExtensionTreatmentResolver.class)) {
+        if (device == null || !device.is(ExtensionTreatmentResolver.class)) {
             log.error("The extension treatment is not supported");
             return null;
         }
@@ -189,6 +333,11 @@ public abstract class AbstractInstanceHandler implements InstanceHandler {
         }
     }
 
+    private void invalidateTunnelDstTreatments(DeviceId deviceId) {
+        tunnelDstTreatments.asMap().keySet()
+                .removeIf(key -> key.deviceId.equals(deviceId));
+    }
+
     protected IpAddress dataIp(DeviceId deviceId) {
         CordVtnNode node = nodeService.node(deviceId);
         if (node == null) {
@@ -198,27 +347,17 @@ public abstract class AbstractInstanceHandler implements InstanceHandler {
         return node.dataIp().ip();
     }
 
-    private Optional<PortNumber> getPortNumber(DeviceId deviceId, String portName) {
-        PortNumber port = deviceService.getPorts(deviceId).stream()
-                .filter(p -> p.annotations().value(PORT_NAME).equals(portName) &&
-                        p.isEnabled())
-                .map(Port::number)
-                .findAny()
-                .orElse(null);
-        return Optional.ofNullable(port);
-    }
-
     private class InternalHostListener implements HostListener {
 
         @Override
         public void event(HostEvent event) {
-            eventExecutor.execute(() -> handle(event));
+            eventExecutor.execute(eventKey(event.subject()), () -> handle(event));
         }
 
         private void handle(HostEvent event) {
             Host host = event.subject();
-            if (!mastershipService.isLocalMaster(host.location().deviceId())) {
-                // do not allow to proceed without mastership
+            if (!isEventOwner(host)) {
+                // do not allow to proceed without the ownership
                 return;
             }
 
@@ -243,4 +382,57 @@ public abstract class AbstractInstanceHandler implements InstanceHandler {
             }
         }
     }
+
+    private class InternalDeviceListener implements DeviceListener {
+
+        @Override
+        public void event(DeviceEvent event) {
+            switch (event.type()) {
+            case DEVICE_ADDED:
+            case DEVICE_UPDATED:
+            case DEVICE_REMOVED:
+            case DEVICE_AVAILABILITY_CHANGED:
+                invalidateTunnelDstTreatments(event.subject().id());
+                break;
+            default:
+                break;
+            }
+        }
+    }
+
+    private class InternalCordVtnNodeListener implements CordVtnNodeListener {
+
+        @Override
+        public void event(CordVtnNodeEvent event) {
+            invalidateTunnelDstTreatments(event.subject().integrationBridgeId());
+        }
+    }
+
+    private static final class TunnelDstKey {
+        private final DeviceId deviceId;
+        private final Ip4Address remoteIp;
+
+        private TunnelDstKey(DeviceId deviceId, Ip4Address remoteIp) {
+            this.deviceId = deviceId;
+            this.remoteIp = remoteIp;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj instanceof TunnelDstKey) {
+                TunnelDstKey that = (TunnelDstKey) obj;
+                return Objects.equals(deviceId, that.deviceId) &&
+                        Objects.equals(remoteIp, that.remoteIp);
+            }
+            return false;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(deviceId, remoteIp);
+        }
+    }
 }
@@ -29,11 +29,17 @@ import org.onosproject.net.flow.FlowRule;
 import org.onosproject.net.flow.TrafficSelector;
 import org.onosproject.net.flow.TrafficTreatment;
 import org.opencord.cordvtn.api.core.CordVtnPipeline;
+import org.opencord.cordvtn.api.core.FlowRuleBatch;
 import org.opencord.cordvtn.api.core.Instance;
 import org.opencord.cordvtn.api.core.InstanceHandler;
 import org.opencord.cordvtn.api.core.ServiceNetworkService;
+import org.opencord.cordvtn.api.net.NetworkId;
 import org.opencord.cordvtn.api.node.CordVtnNodeService;
+import org.osgi.service.component.ComponentContext;
 
+import java.util.Set;
+
+import static org.opencord.cordvtn.api.Constants.NOT_APPLICABLE;
 import static org.opencord.cordvtn.api.net.ServiceNetwork.NetworkType.ACCESS_AGENT;
 
 /**
@@ -52,29 +58,47 @@ public class AccessAgentInstanceHandler extends AbstractInstanceHandler implemen
     protected CordVtnPipeline pipeline;
 
     @Activate
-    protected void activate() {
+    protected void activate(ComponentContext context) {
         netTypes = ImmutableSet.of(ACCESS_AGENT);
-        super.activate();
+        super.activate(context);
+        pipeline.addFlowRuleProvider(this);
     }
 
     @Deactivate
     protected void deactivate() {
+        pipeline.removeFlowRuleProvider(this);
         super.deactivate();
     }
 
     @Override
     public void instanceDetected(Instance instance) {
         log.info("Access agent instance detected {}", instance);
-        populateAccessAgentRules(instance, true);
+        FlowRuleBatch.Builder batch = FlowRuleBatch.builder();
+        populateAccessAgentRules(batch, instance, true);
+        pipeline.processFlowRules(batch.build());
     }
 
     @Override
     public void instanceRemoved(Instance instance) {
         log.info("Access agent instance removed {}", instance);
-        populateAccessAgentRules(instance, false);
+        FlowRuleBatch.Builder batch = FlowRuleBatch.builder();
+        populateAccessAgentRules(batch, instance, false);
+        pipeline.processFlowRules(batch.build());
+    }
+
+    @Override
+    protected Set<Instance> getInstances() {
+        // access agents do not belong to any service network
+        return getInstances(NetworkId.of(NOT_APPLICABLE));
+    }
+
+    @Override
+    protected void populateInstanceRules(FlowRuleBatch.Builder batch, Instance instance) {
+        populateAccessAgentRules(batch, instance, true);
     }
 
-    private void populateAccessAgentRules(Instance instance, boolean install) {
+    private void populateAccessAgentRules(FlowRuleBatch.Builder batch, Instance instance,
+                                          boolean install) {
         TrafficSelector selector = DefaultTrafficSelector.builder()
                 .matchEthDst(instance.mac())
                 .build();
@@ -93,7 +117,7 @@ public class AccessAgentInstanceHandler extends AbstractInstanceHandler implemen
                 .makePermanent()
                 .build();
 
-        pipeline.processFlowRule(install, flowRule);
+        batch.process(install, flowRule);
 
         selector = DefaultTrafficSelector.builder()
                 .matchInPort(instance.portNumber())
@@ -113,6 +137,6 @@ public class AccessAgentInstanceHandler extends AbstractInstanceHandler implemen
                 .makePermanent()
                 .build();
 
-        pipeline.processFlowRule(install, flowRule);
+        batch.process(install, flowRule);
     }
 }
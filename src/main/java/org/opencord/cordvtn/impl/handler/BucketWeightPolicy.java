@@ -0,0 +1,79 @@
+/*
+ * Copyright 2017-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.opencord.cordvtn.impl.handler;
+
+import com.google.common.base.Strings;
+import org.onosproject.net.DeviceId;
+import org.opencord.cordvtn.api.core.Instance;
+
+/**
+ * Policies to decide the weight of a provider instance bucket in the
+ * provider group of a device.
+ */
+enum BucketWeightPolicy {
+
+    /**
+     * Gives the same weight to all instances.
+     */
+    EQUAL {
+        @Override
+        short weight(DeviceId deviceId, Instance instance) {
+            return DEFAULT_WEIGHT;
+        }
+    },
+
+    /**
+     * Prefers the instances on the same device over the remote instances
+     * reached through the tunnel.
+     */
+    LOCALITY {
+        @Override
+        short weight(DeviceId deviceId, Instance instance) {
+            return deviceId.equals(instance.deviceId()) ? LOCAL_WEIGHT : DEFAULT_WEIGHT;
+        }
+    },
+
+    /**
+     * Uses the weight in the bucket weight annotation of the instance.
+     */
+    ANNOTATION {
+        @Override
+        short weight(DeviceId deviceId, Instance instance) {
+            String weight = instance.getAnnotation(Instance.BUCKET_WEIGHT);
+            if (Strings.isNullOrEmpty(weight)) {
+                return DEFAULT_WEIGHT;
+            }
+            try {
+                short value = Short.parseShort(weight);
+                return value > 0 ? value : DEFAULT_WEIGHT;
+            } catch (NumberFormatException e) {
+                return DEFAULT_WEIGHT;
+            }
+        }
+    };
+
+    static final short DEFAULT_WEIGHT = 1;
+    static final short LOCAL_WEIGHT = 10;
+
+    /**
+     * Returns the bucket weight of the instance in the group of the device.
+     *
+     * @param deviceId device id of the group
+     * @param instance provider instance
+     * @return bucket weight
+     */
+    abstract short weight(DeviceId deviceId, Instance instance);
+}
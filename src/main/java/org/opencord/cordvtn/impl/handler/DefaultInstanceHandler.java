@@ -15,7 +15,9 @@
  */
 package org.opencord.cordvtn.impl.handler;
 
+import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import org.apache.felix.scr.annotations.Activate;
 import org.apache.felix.scr.annotations.Component;
@@ -23,41 +25,46 @@ import org.apache.felix.scr.annotations.Deactivate;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.ReferenceCardinality;
 import org.onlab.packet.Ethernet;
-import org.onlab.packet.Ip4Address;
 import org.onlab.packet.Ip4Prefix;
 import org.onlab.packet.IpAddress;
 import org.onlab.packet.IpPrefix;
 import org.onlab.packet.MacAddress;
 import org.onlab.packet.VlanId;
 import org.onosproject.net.DefaultAnnotations;
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.Host;
 import org.onosproject.net.HostId;
 import org.onosproject.net.PortNumber;
 import org.onosproject.net.flow.DefaultFlowRule;
 import org.onosproject.net.flow.DefaultTrafficSelector;
 import org.onosproject.net.flow.DefaultTrafficTreatment;
 import org.onosproject.net.flow.FlowRule;
-import org.onosproject.net.flow.FlowRuleService;
 import org.onosproject.net.flow.TrafficSelector;
 import org.onosproject.net.flow.TrafficTreatment;
 import org.onosproject.net.flow.criteria.Criterion;
 import org.onosproject.net.flow.criteria.IPCriterion;
 import org.onosproject.net.flow.instructions.ExtensionTreatment;
-import org.onosproject.net.flow.instructions.Instruction;
-import org.onosproject.net.flow.instructions.Instructions;
 import org.onosproject.net.flow.instructions.L2ModificationInstruction;
 import org.onosproject.net.host.DefaultHostDescription;
 import org.onosproject.net.host.HostDescription;
+import org.onosproject.net.host.HostEvent;
+import org.onosproject.net.host.HostListener;
 import org.opencord.cordvtn.api.core.CordVtnPipeline;
+import org.opencord.cordvtn.api.core.FlowRuleBatch;
 import org.opencord.cordvtn.api.core.Instance;
 import org.opencord.cordvtn.api.core.InstanceHandler;
 import org.opencord.cordvtn.api.core.InstanceService;
 import org.opencord.cordvtn.api.core.ServiceNetworkService;
 import org.opencord.cordvtn.api.net.AddressPair;
+import org.opencord.cordvtn.api.net.NetworkId;
 import org.opencord.cordvtn.api.net.ServiceNetwork;
 import org.opencord.cordvtn.api.net.ServicePort;
 import org.opencord.cordvtn.api.node.CordVtnNode;
 import org.opencord.cordvtn.api.node.CordVtnNodeService;
+import org.osgi.service.component.ComponentContext;
 
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -71,9 +78,6 @@ import static org.opencord.cordvtn.api.net.ServiceNetwork.NetworkType.*;
 @Component(immediate = true)
 public class DefaultInstanceHandler extends AbstractInstanceHandler implements InstanceHandler {
 
-    @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
-    protected FlowRuleService flowRuleService;
-
     @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
     protected ServiceNetworkService snetService;
 
@@ -86,17 +90,53 @@ public class DefaultInstanceHandler extends AbstractInstanceHandler implements I
     @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
     protected InstanceService instanceService;
 
+    // instances in each network, the network rules shared by the instances
+    // are installed with the first instance and removed with the last one
+    // by the owner of the network partition
+    private final Map<NetworkId, Set<HostId>> networkInstances = Maps.newHashMap();
+    // last known state of the networks with instances, the network rules are
+    // removed with it when the network is removed before its last instance
+    private final Map<NetworkId, ServiceNetwork> instanceNetworks = Maps.newHashMap();
+    private final HostListener networkInstanceListener = new InternalNetworkInstanceListener();
+
     @Activate
-    protected void activate() {
+    protected void activate(ComponentContext context) {
         netTypes = ImmutableSet.of(PRIVATE, PUBLIC, VSG);
-        super.activate();
+        super.activate(context);
+        hostService.addListener(networkInstanceListener);
+        snetService.serviceNetworks().stream()
+                .filter(snet -> netTypes.contains(snet.type()))
+                .flatMap(snet -> instanceService.instances(snet.id()).stream())
+                .filter(instance -> !instance.isAdditionalInstance())
+                .forEach(this::addNetworkInstance);
+        pipeline.addFlowRuleProvider(this);
     }
 
     @Deactivate
     protected void deactivate() {
+        pipeline.removeFlowRuleProvider(this);
+        hostService.removeListener(networkInstanceListener);
         super.deactivate();
     }
 
+    @Override
+    public Set<FlowRule> desiredFlowRules(DeviceId deviceId) {
+        Set<NetworkId> netIds;
+        synchronized (networkInstances) {
+            netIds = ImmutableSet.copyOf(networkInstances.keySet());
+        }
+        FlowRuleBatch.Builder batch = FlowRuleBatch.builder();
+        netIds.stream()
+                .map(snetService::serviceNetwork)
+                .filter(Objects::nonNull)
+                .forEach(snet -> populateNetworkRules(batch, snet, true));
+
+        return ImmutableSet.<FlowRule>builder()
+                .addAll(super.desiredFlowRules(deviceId))
+                .addAll(addedRules(batch.build(), deviceId))
+                .build();
+    }
+
     @Override
     public void instanceDetected(Instance instance) {
         log.info("Instance is detected or updated {}", instance);
@@ -104,26 +144,16 @@ public class DefaultInstanceHandler extends AbstractInstanceHandler implements I
             return;
         }
 
-        ServiceNetwork snet = getServiceNetwork(instance);
-        populateDefaultRules(instance, snet, true);
+        FlowRuleBatch.Builder batch = FlowRuleBatch.builder();
+        populateInstanceRules(batch, instance);
 
-        // TODO handle the case that vlan id is added and then removed
-        ServicePort sport = getServicePort(instance);
-        if (sport.vlanId() != null) {
-            populateVlanRule(
-                    instance,
-                    sport.vlanId(),
-                    dataPort(instance.deviceId()),
-                    true);
-        }
         // FIXME don't add the existing instance again
+        ServicePort sport = getServicePort(instance);
         sport.addressPairs().forEach(pair -> {
             // add instance for the additional address pairs
             addAdditionalInstance(instance, pair.ip(), pair.mac());
         });
-        Set<IpAddress> ipAddrs = sport.addressPairs().stream()
-                .map(AddressPair::ip).collect(Collectors.toSet());
-        populateAddressPairRule(instance, ipAddrs, true);
+        pipeline.processFlowRules(batch.build());
     }
 
     @Override
@@ -134,12 +164,14 @@ public class DefaultInstanceHandler extends AbstractInstanceHandler implements I
         log.info("Instance is removed {}", instance);
 
         ServiceNetwork snet = getServiceNetwork(instance);
-        populateDefaultRules(instance, snet, false);
+        FlowRuleBatch.Builder batch = FlowRuleBatch.builder();
+        populateDefaultRules(batch, instance, snet, false);
 
         // FIXME service port might be already removed
         ServicePort sport = getServicePort(instance);
         if (sport.vlanId() != null) {
             populateVlanRule(
+                    batch,
                     instance,
                     sport.vlanId(),
                     dataPort(instance.deviceId()),
@@ -149,9 +181,11 @@ public class DefaultInstanceHandler extends AbstractInstanceHandler implements I
         Set<IpAddress> ipAddrs = sport.addressPairs().stream()
                 .map(AddressPair::ip).collect(Collectors.toSet());
         populateAddressPairRule(
+                batch,
                 instance,
                 isOriginalInstance ? ImmutableSet.of() : ipAddrs,
                 false);
+        pipeline.processFlowRules(batch.build());
     }
 
     @Override
@@ -169,6 +203,44 @@ public class DefaultInstanceHandler extends AbstractInstanceHandler implements I
         instanceDetected(instance);
     }
 
+    @Override
+    protected void populateInstanceRules(FlowRuleBatch.Builder batch, Instance instance) {
+        ServiceNetwork snet = getServiceNetwork(instance);
+        populateDefaultRules(batch, instance, snet, true);
+
+        // TODO handle the case that vlan id is added and then removed
+        ServicePort sport = getServicePort(instance);
+        if (sport.vlanId() != null) {
+            populateVlanRule(
+                    batch,
+                    instance,
+                    sport.vlanId(),
+                    dataPort(instance.deviceId()),
+                    true);
+        }
+        Set<IpAddress> ipAddrs = sport.addressPairs().stream()
+                .map(AddressPair::ip).collect(Collectors.toSet());
+        populateAddressPairRule(batch, instance, ipAddrs, true);
+    }
+
+    @Override
+    protected void populateRemoteInstanceRules(FlowRuleBatch.Builder batch,
+                                               DeviceId deviceId) {
+        // the destination rules of the remote instances tunnel to their nodes
+        getInstances().stream()
+                .filter(instance -> !instance.isAdditionalInstance())
+                .filter(instance -> !instance.deviceId().equals(deviceId))
+                .forEach(instance -> {
+                    try {
+                        ServiceNetwork snet = getServiceNetwork(instance);
+                        populateRemoteDstIpRule(batch, instance, snet.segmentId().id(),
+                                                deviceId, true);
+                    } catch (IllegalStateException e) {
+                        log.warn("Failed to get desired flow rules for {}", instance);
+                    }
+                });
+    }
+
     private void addAdditionalInstance(Instance instance, IpAddress ip, MacAddress mac) {
         HostId hostId = HostId.hostId(mac);
         DefaultAnnotations.Builder annotations = DefaultAnnotations.builder()
@@ -188,24 +260,70 @@ public class DefaultInstanceHandler extends AbstractInstanceHandler implements I
         instanceService.addInstance(hostId, hostDesc);
     }
 
-    private void populateDefaultRules(Instance instance, ServiceNetwork snet, boolean install) {
+    private void populateDefaultRules(FlowRuleBatch.Builder batch, Instance instance,
+                                      ServiceNetwork snet, boolean install) {
         long vni = snet.segmentId().id();
+
+        populateInPortRule(batch, instance, install);
+        populateDstIpRule(batch, instance, vni, install);
+        populateTunnelInRule(batch, instance, vni, install);
+    }
+
+    private void populateNetworkRules(FlowRuleBatch.Builder batch, ServiceNetwork snet,
+                                      boolean install) {
         Ip4Prefix serviceIpRange = snet.subnet().getIp4Prefix();
+        populateDirectAccessRule(batch, serviceIpRange, serviceIpRange, install);
+        populateServiceIsolationRule(batch, serviceIpRange, install);
+    }
 
-        populateInPortRule(instance, install);
-        populateDstIpRule(instance, vni, install);
-        populateTunnelInRule(instance, vni, install);
+    private void processNetworkRules(ServiceNetwork snet, boolean install) {
+        FlowRuleBatch.Builder batch = FlowRuleBatch.builder();
+        populateNetworkRules(batch, snet, install);
+        pipeline.processFlowRules(batch.build());
+        log.debug("{} network rules for {}", install ? "Installed" : "Removed", snet.id());
+    }
 
-        if (install) {
-            populateDirectAccessRule(serviceIpRange, serviceIpRange, true);
-            populateServiceIsolationRule(serviceIpRange, true);
-        } else if (getInstances(snet.id()).isEmpty()) {
-            populateDirectAccessRule(serviceIpRange, serviceIpRange, false);
-            populateServiceIsolationRule(serviceIpRange, false);
+    /**
+     * Adds the instance to the network it belongs to.
+     *
+     * @param instance instance
+     * @return true if the instance is the first one in the network
+     */
+    private boolean addNetworkInstance(Instance instance) {
+        ServiceNetwork snet = snetService.serviceNetwork(instance.netId());
+        synchronized (networkInstances) {
+            if (snet != null) {
+                instanceNetworks.put(instance.netId(), snet);
+            }
+            Set<HostId> hosts = networkInstances.computeIfAbsent(
+                    instance.netId(), netId -> Sets.newHashSet());
+            return hosts.add(instance.host().id()) && hosts.size() == 1;
         }
     }
 
-    private void populateInPortRule(Instance instance, boolean install) {
+    /**
+     * Removes the instance from the network it belongs to.
+     *
+     * @param instance instance
+     * @return last known state of the network if the instance was the last
+     * one in the network; null otherwise
+     */
+    private ServiceNetwork removeNetworkInstance(Instance instance) {
+        synchronized (networkInstances) {
+            Set<HostId> hosts = networkInstances.get(instance.netId());
+            if (hosts == null || !hosts.remove(instance.host().id())) {
+                return null;
+            }
+            if (hosts.isEmpty()) {
+                networkInstances.remove(instance.netId());
+                return instanceNetworks.remove(instance.netId());
+            }
+            return null;
+        }
+    }
+
+    private void populateInPortRule(FlowRuleBatch.Builder batch, Instance instance,
+                                    boolean install) {
         TrafficSelector selector = DefaultTrafficSelector.builder()
                 .matchInPort(instance.portNumber())
                 .matchEthType(Ethernet.TYPE_IPV4)
@@ -226,7 +344,7 @@ public class DefaultInstanceHandler extends AbstractInstanceHandler implements I
                 .makePermanent()
                 .build();
 
-        pipeline.processFlowRule(install, flowRule);
+        batch.process(install, flowRule);
 
         selector = DefaultTrafficSelector.builder()
                 .matchInPort(instance.portNumber())
@@ -246,12 +364,11 @@ public class DefaultInstanceHandler extends AbstractInstanceHandler implements I
                 .makePermanent()
                 .build();
 
-        pipeline.processFlowRule(install, flowRule);
+        batch.process(install, flowRule);
     }
 
-    private void populateDstIpRule(Instance instance, long vni, boolean install) {
-        Ip4Address tunnelIp = dataIp(instance.deviceId()).getIp4Address();
-
+    private void populateDstIpRule(FlowRuleBatch.Builder batch, Instance instance,
+                                   long vni, boolean install) {
         TrafficSelector selector = DefaultTrafficSelector.builder()
                 .matchEthType(Ethernet.TYPE_IPV4)
                 .matchIPDst(instance.ipAddress().toIpPrefix())
@@ -272,41 +389,54 @@ public class DefaultInstanceHandler extends AbstractInstanceHandler implements I
                 .makePermanent()
                 .build();
 
-        pipeline.processFlowRule(install, flowRule);
+        batch.process(install, flowRule);
 
         for (CordVtnNode node : nodeService.completeNodes()) {
             if (node.integrationBridgeId().equals(instance.deviceId())) {
                 continue;
             }
+            populateRemoteDstIpRule(batch, instance, vni, node.integrationBridgeId(), install);
+        }
+    }
 
-            ExtensionTreatment tunnelDst =
-                    tunnelDstTreatment(node.integrationBridgeId(), tunnelIp);
-            if (tunnelDst == null) {
-                continue;
-            }
+    private void populateRemoteDstIpRule(FlowRuleBatch.Builder batch, Instance instance,
+                                         long vni, DeviceId deviceId, boolean install) {
+        IpAddress dataIp = dataIp(instance.deviceId());
+        if (dataIp == null) {
+            return;
+        }
+        ExtensionTreatment tunnelDst = tunnelDstTreatment(deviceId, dataIp.getIp4Address());
+        if (tunnelDst == null) {
+            return;
+        }
 
-            treatment = DefaultTrafficTreatment.builder()
-                    .setEthDst(instance.mac())
-                    .setTunnelId(vni)
-                    .extension(tunnelDst, node.integrationBridgeId())
-                    .setOutput(tunnelPort(node.integrationBridgeId()))
-                    .build();
+        TrafficSelector selector = DefaultTrafficSelector.builder()
+                .matchEthType(Ethernet.TYPE_IPV4)
+                .matchIPDst(instance.ipAddress().toIpPrefix())
+                .build();
 
-            flowRule = DefaultFlowRule.builder()
-                    .fromApp(appId)
-                    .withSelector(selector)
-                    .withTreatment(treatment)
-                    .withPriority(CordVtnPipeline.PRIORITY_DEFAULT)
-                    .forDevice(node.integrationBridgeId())
-                    .forTable(CordVtnPipeline.TABLE_DST)
-                    .makePermanent()
-                    .build();
+        TrafficTreatment treatment = DefaultTrafficTreatment.builder()
+                .setEthDst(instance.mac())
+                .setTunnelId(vni)
+                .extension(tunnelDst, deviceId)
+                .setOutput(tunnelPort(deviceId))
+                .build();
 
-            pipeline.processFlowRule(install, flowRule);
-        }
+        FlowRule flowRule = DefaultFlowRule.builder()
+                .fromApp(appId)
+                .withSelector(selector)
+                .withTreatment(treatment)
+                .withPriority(CordVtnPipeline.PRIORITY_DEFAULT)
+                .forDevice(deviceId)
+                .forTable(CordVtnPipeline.TABLE_DST)
+                .makePermanent()
+                .build();
+
+        batch.process(install, flowRule);
     }
 
-    private void populateTunnelInRule(Instance instance, long vni, boolean install) {
+    private void populateTunnelInRule(FlowRuleBatch.Builder batch, Instance instance,
+                                      long vni, boolean install) {
         TrafficSelector selector = DefaultTrafficSelector.builder()
                 .matchTunnelId(vni)
                 .matchEthDst(instance.mac())
@@ -326,10 +456,11 @@ public class DefaultInstanceHandler extends AbstractInstanceHandler implements I
                 .makePermanent()
                 .build();
 
-        pipeline.processFlowRule(install, flowRule);
+        batch.process(install, flowRule);
     }
 
-    private void populateDirectAccessRule(Ip4Prefix srcRange, Ip4Prefix dstRange, boolean install) {
+    private void populateDirectAccessRule(FlowRuleBatch.Builder batch, Ip4Prefix srcRange,
+                                          Ip4Prefix dstRange, boolean install) {
         TrafficSelector selector = DefaultTrafficSelector.builder()
                 .matchEthType(Ethernet.TYPE_IPV4)
                 .matchIPSrc(srcRange)
@@ -352,11 +483,12 @@ public class DefaultInstanceHandler extends AbstractInstanceHandler implements I
                     .makePermanent()
                     .build();
 
-            pipeline.processFlowRule(install, flowRuleDirect);
+            batch.process(install, flowRuleDirect);
         });
     }
 
-    private void populateServiceIsolationRule(Ip4Prefix dstRange, boolean install) {
+    private void populateServiceIsolationRule(FlowRuleBatch.Builder batch, Ip4Prefix dstRange,
+                                              boolean install) {
         TrafficSelector selector = DefaultTrafficSelector.builder()
                 .matchEthType(Ethernet.TYPE_IPV4)
                 .matchIPDst(dstRange)
@@ -377,12 +509,12 @@ public class DefaultInstanceHandler extends AbstractInstanceHandler implements I
                     .makePermanent()
                     .build();
 
-            pipeline.processFlowRule(install, flowRuleDirect);
+            batch.process(install, flowRuleDirect);
         });
     }
 
-    private void populateVlanRule(Instance instance, VlanId vlanId, PortNumber dataPort,
-                                  boolean install) {
+    private void populateVlanRule(FlowRuleBatch.Builder batch, Instance instance,
+                                  VlanId vlanId, PortNumber dataPort, boolean install) {
         TrafficSelector selector = DefaultTrafficSelector.builder()
                 .matchInPort(dataPort)
                 .matchVlanId(vlanId)
@@ -402,7 +534,7 @@ public class DefaultInstanceHandler extends AbstractInstanceHandler implements I
                 .makePermanent()
                 .build();
 
-        pipeline.processFlowRule(install, flowRule);
+        batch.process(install, flowRule);
 
         selector = DefaultTrafficSelector.builder()
                 .matchInPort(instance.portNumber())
@@ -423,11 +555,11 @@ public class DefaultInstanceHandler extends AbstractInstanceHandler implements I
                 .makePermanent()
                 .build();
 
-        pipeline.processFlowRule(install, flowRule);
+        batch.process(install, flowRule);
     }
 
-    private void populateAddressPairRule(Instance instance, Set<IpAddress> ipAddrs,
-                                         boolean install) {
+    private void populateAddressPairRule(FlowRuleBatch.Builder batch, Instance instance,
+                                         Set<IpAddress> ipAddrs, boolean install) {
         // for traffic coming from WAN, tag 500 and take through the vSG VM
         // based on destination ip
         ipAddrs.forEach(wanIp -> {
@@ -454,38 +586,26 @@ public class DefaultInstanceHandler extends AbstractInstanceHandler implements I
                     .makePermanent()
                     .build();
 
-            pipeline.processFlowRule(install, downstreamFlowRule);
+            batch.process(install, downstreamFlowRule);
         });
 
         // remove downstream flow rules for the vSG not shown in vsgWanIps
-        for (FlowRule rule : flowRuleService.getFlowRulesById(appId)) {
-            if (!rule.deviceId().equals(instance.deviceId())) {
-                continue;
-            }
-            PortNumber output = getOutputFromTreatment(rule);
-            if (output == null || !output.equals(instance.portNumber()) ||
-                    !isVlanPushFromTreatment(rule)) {
+        Set<FlowRule> rules = pipeline.flowRules(
+                instance.deviceId(),
+                CordVtnPipeline.TABLE_DST,
+                instance.portNumber());
+        for (FlowRule rule : rules) {
+            if (!isVlanPushFromTreatment(rule)) {
                 continue;
             }
 
             IpPrefix dstIp = getDstIpFromSelector(rule);
             if (dstIp != null && !ipAddrs.contains(dstIp.address())) {
-                pipeline.processFlowRule(false, rule);
+                batch.remove(rule);
             }
         }
     }
 
-    private PortNumber getOutputFromTreatment(FlowRule flowRule) {
-        Instruction instruction = flowRule.treatment().allInstructions().stream()
-                .filter(inst -> inst instanceof Instructions.OutputInstruction)
-                .findFirst()
-                .orElse(null);
-        if (instruction == null) {
-            return null;
-        }
-        return ((Instructions.OutputInstruction) instruction).port();
-    }
-
     private IpPrefix getDstIpFromSelector(FlowRule flowRule) {
         Criterion criterion = flowRule.selector().getCriterion(IPV4_DST);
         if (criterion != null && criterion instanceof IPCriterion) {
@@ -503,4 +623,60 @@ public class DefaultInstanceHandler extends AbstractInstanceHandler implements I
                 .findAny()
                 .isPresent();
     }
+
+    private class InternalNetworkInstanceListener implements HostListener {
+
+        @Override
+        public void event(HostEvent event) {
+            // keeps track of the instances regardless of the mastership, the
+            // owner of the network partition handles the network rules
+            Host host = event.subject();
+            if (Strings.isNullOrEmpty(host.annotations().value(Instance.NETWORK_ID))) {
+                return;
+            }
+            Instance instance = Instance.of(host);
+            if (!netTypes.contains(instance.netType()) || instance.isAdditionalInstance()) {
+                return;
+            }
+
+            NetworkId netId = instance.netId();
+            switch (event.type()) {
+                case HOST_ADDED:
+                case HOST_UPDATED:
+                    if (addNetworkInstance(instance)) {
+                        eventExecutor.execute(netId, () -> networkInstanceAdded(netId));
+                    }
+                    break;
+                case HOST_REMOVED:
+                    ServiceNetwork snet = removeNetworkInstance(instance);
+                    if (snet != null) {
+                        eventExecutor.execute(netId, () -> networkInstanceRemoved(snet));
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        private void networkInstanceAdded(NetworkId netId) {
+            if (!isMine(netId)) {
+                // do not allow to proceed without the partition ownership
+                return;
+            }
+            ServiceNetwork snet = snetService.serviceNetwork(netId);
+            if (snet == null) {
+                log.warn("Failed to get VTN network {}", netId);
+                return;
+            }
+            processNetworkRules(snet, true);
+        }
+
+        private void networkInstanceRemoved(ServiceNetwork snet) {
+            if (!isMine(snet.id())) {
+                // do not allow to proceed without the partition ownership
+                return;
+            }
+            processNetworkRules(snet, false);
+        }
+    }
 }
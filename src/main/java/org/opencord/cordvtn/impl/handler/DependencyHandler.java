@@ -15,13 +15,21 @@
  */
 package org.opencord.cordvtn.impl.handler;
 
+import com.google.common.base.Strings;
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.LinkedListMultimap;
+import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.SetMultimap;
 import org.apache.felix.scr.annotations.Activate;
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Deactivate;
+import org.apache.felix.scr.annotations.Modified;
+import org.apache.felix.scr.annotations.Property;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.ReferenceCardinality;
 import org.apache.felix.scr.annotations.Service;
@@ -29,16 +37,17 @@ import org.onlab.packet.Ethernet;
 import org.onlab.packet.Ip4Address;
 import org.onlab.packet.IpAddress;
 import org.onlab.packet.IpPrefix;
-import org.onosproject.cluster.ClusterService;
-import org.onosproject.cluster.LeadershipService;
-import org.onosproject.cluster.NodeId;
+import org.onlab.util.Tools;
 import org.onosproject.core.GroupId;
 import org.onosproject.net.DeviceId;
+import org.onosproject.net.Host;
+import org.onosproject.net.HostId;
 import org.onosproject.net.PortNumber;
 import org.onosproject.net.flow.DefaultFlowRule;
 import org.onosproject.net.flow.DefaultTrafficSelector;
 import org.onosproject.net.flow.DefaultTrafficTreatment;
 import org.onosproject.net.flow.FlowRule;
+import org.onosproject.net.flow.FlowRuleOperation;
 import org.onosproject.net.flow.TrafficSelector;
 import org.onosproject.net.flow.TrafficTreatment;
 import org.onosproject.net.flow.instructions.ExtensionTreatment;
@@ -51,6 +60,7 @@ import org.onosproject.net.group.GroupDescription;
 import org.onosproject.net.group.GroupKey;
 import org.onosproject.net.group.GroupService;
 import org.opencord.cordvtn.api.core.CordVtnPipeline;
+import org.opencord.cordvtn.api.core.FlowRuleBatch;
 import org.opencord.cordvtn.api.core.Instance;
 import org.opencord.cordvtn.api.core.ServiceNetworkEvent;
 import org.opencord.cordvtn.api.core.ServiceNetworkListener;
@@ -59,19 +69,33 @@ import org.opencord.cordvtn.api.net.NetworkId;
 import org.opencord.cordvtn.api.net.ServiceNetwork;
 import org.opencord.cordvtn.api.net.ServiceNetwork.DependencyType;
 import org.opencord.cordvtn.api.node.CordVtnNode;
+import org.opencord.cordvtn.api.node.CordVtnNodeEvent;
+import org.opencord.cordvtn.api.node.CordVtnNodeListener;
 import org.opencord.cordvtn.api.node.CordVtnNodeService;
+import org.osgi.service.component.ComponentContext;
 import org.slf4j.Logger;
 
+import java.util.Dictionary;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
+import static java.util.concurrent.Executors.newSingleThreadScheduledExecutor;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.onlab.util.Tools.groupedThreads;
+import static org.onosproject.net.flow.FlowRuleOperation.Type.REMOVE;
 import static org.onosproject.net.group.DefaultGroupBucket.createSelectGroupBucket;
 import static org.opencord.cordvtn.api.core.CordVtnPipeline.*;
+import static org.opencord.cordvtn.api.core.ServiceNetworkEvent.Type.SERVICE_NETWORK_PROVIDER_ADDED;
+import static org.opencord.cordvtn.api.core.ServiceNetworkEvent.Type.SERVICE_NETWORK_UPDATED;
 import static org.opencord.cordvtn.api.net.ServiceNetwork.DependencyType.BIDIRECTIONAL;
 import static org.opencord.cordvtn.api.net.ServiceNetwork.NetworkType.*;
+import static org.opencord.cordvtn.api.node.CordVtnNodeState.COMPLETE;
 import static org.slf4j.LoggerFactory.getLogger;
 
 /**
@@ -86,16 +110,32 @@ public class DependencyHandler extends AbstractInstanceHandler {
     private static final String ERR_NET_FAIL = "Failed to get VTN network ";
     private static final String ADDED = "Added ";
     private static final String REMOVED = "Removed ";
+    private static final String GROUP_SYNC_INTERVAL = "groupSyncInterval";
+    private static final int DEFAULT_GROUP_SYNC_INTERVAL = 300;
+    private static final String BUCKET_WEIGHT_POLICY = "bucketWeightPolicy";
+    private static final String DEPENDENCY_BATCH_WINDOW = "dependencyBatchWindow";
+    private static final int DEFAULT_DEPENDENCY_BATCH_WINDOW = 100;
+    private static final String DEFAULT_BUCKET_WEIGHT_POLICY = "LOCALITY";
+
+    @Property(name = GROUP_SYNC_INTERVAL, intValue = DEFAULT_GROUP_SYNC_INTERVAL,
+            label = "Interval in seconds to rebuild the provider groups from " +
+                    "the current instances, 0 to disable")
+    private int groupSyncInterval = DEFAULT_GROUP_SYNC_INTERVAL;
+
+    @Property(name = BUCKET_WEIGHT_POLICY, value = DEFAULT_BUCKET_WEIGHT_POLICY,
+            label = "Policy to weight the provider group buckets, " +
+                    "EQUAL, LOCALITY or ANNOTATION")
+    private volatile BucketWeightPolicy bucketWeightPolicy =
+            BucketWeightPolicy.valueOf(DEFAULT_BUCKET_WEIGHT_POLICY);
+
+    @Property(name = DEPENDENCY_BATCH_WINDOW, intValue = DEFAULT_DEPENDENCY_BATCH_WINDOW,
+            label = "Window in milliseconds to gather the dependency changes of " +
+                    "a provider and provision them together, 0 to disable")
+    private int dependencyBatchWindow = DEFAULT_DEPENDENCY_BATCH_WINDOW;
 
     @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
     protected GroupService groupService;
 
-    @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
-    protected LeadershipService leadershipService;
-
-    @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
-    protected ClusterService clusterService;
-
     @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
     protected ServiceNetworkService snetService;
 
@@ -106,22 +146,77 @@ public class DependencyHandler extends AbstractInstanceHandler {
     protected CordVtnPipeline pipeline;
 
     private final ServiceNetworkListener snetListener = new InternalServiceNetworkListener();
-    private NodeId localNodeId;
+    private final CordVtnNodeListener nodeListener = new InternalNodeListener();
+    private final ScheduledExecutorService scheduler = newSingleThreadScheduledExecutor(
+            groupedThreads(this.getClass().getSimpleName(), "scheduler", log));
+    // pending dependency events per provider network
+    private final ListMultimap<NetworkId, ServiceNetworkEvent> pendingDependencies =
+            LinkedListMultimap.create();
+    // instances of each network on each device, updated in the order of the
+    // instance events, the subscriber rules shared by the instances on a
+    // device are installed with the first one and removed with the last one
+    private final Map<NetworkId, SetMultimap<DeviceId, HostId>> deviceInstances =
+            Maps.newHashMap();
 
     @Activate
-    protected void activate() {
+    protected void activate(ComponentContext context) {
         netTypes = ImmutableSet.of(PRIVATE, PUBLIC, VSG);
-        super.activate();
-        localNodeId = clusterService.getLocalNode().id();
-        leadershipService.runForLeadership(appId.name());
+        super.activate(context);
+        snetService.serviceNetworks().stream()
+                .filter(snet -> netTypes.contains(snet.type()))
+                .flatMap(snet -> instanceService.instances(snet.id()).stream())
+                .forEach(this::addDeviceInstance);
+        bucketWeightPolicy = getBucketWeightPolicy(context.getProperties());
+        Integer window = Tools.getIntegerProperty(context.getProperties(), DEPENDENCY_BATCH_WINDOW);
+        if (window != null && window >= 0) {
+            dependencyBatchWindow = window;
+        }
         snetService.addListener(snetListener);
+        nodeService.addListener(nodeListener);
+        pipeline.addFlowRuleProvider(this);
+
+        Integer interval = Tools.getIntegerProperty(context.getProperties(), GROUP_SYNC_INTERVAL);
+        if (interval != null) {
+            groupSyncInterval = interval;
+        }
+        if (groupSyncInterval > 0) {
+            scheduler.scheduleWithFixedDelay(this::syncProviderGroups,
+                    groupSyncInterval, groupSyncInterval, SECONDS);
+        }
+    }
+
+    @Modified
+    protected void modified(ComponentContext context) {
+        BucketWeightPolicy updatedPolicy = getBucketWeightPolicy(context.getProperties());
+        if (updatedPolicy != bucketWeightPolicy) {
+            bucketWeightPolicy = updatedPolicy;
+            // rebuilds the buckets of the existing provider groups with the new weights
+            syncProviderGroups();
+        }
+        log.info("Modified");
     }
 
     @Deactivate
     protected void deactivate() {
+        scheduler.shutdown();
+        nodeService.removeListener(nodeListener);
+        pipeline.removeFlowRuleProvider(this);
         super.deactivate();
         snetService.removeListener(snetListener);
-        leadershipService.withdraw(appId.name());
+    }
+
+    private BucketWeightPolicy getBucketWeightPolicy(Dictionary<?, ?> properties) {
+        String policy = Tools.get(properties, BUCKET_WEIGHT_POLICY);
+        if (Strings.isNullOrEmpty(policy)) {
+            return bucketWeightPolicy;
+        }
+        try {
+            return BucketWeightPolicy.valueOf(policy.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            log.warn("Unknown bucket weight policy {}, using {}",
+                     policy, bucketWeightPolicy);
+            return bucketWeightPolicy;
+        }
     }
 
     @Override
@@ -131,11 +226,31 @@ public class DependencyHandler extends AbstractInstanceHandler {
             final String error = ERR_NET_FAIL + instance.netId();
             throw new IllegalStateException(error);
         }
+        boolean isOnlyOnDevice = addDeviceInstance(instance);
         if (!snet.providers().isEmpty()) {
-            updateSubscriberInstances(snet, instance, true);
+            updateSubscriberInstances(snet, instance, true, isOnlyOnDevice);
         }
         // TODO check if subscribers on this network
-        updateProviderInstances(snet);
+        if (isMine(snet.id())) {
+            updateProviderInstance(snet, instance, true);
+        }
+    }
+
+    @Override
+    public void instanceUpdated(Instance instance) {
+        ServiceNetwork snet = snetService.serviceNetwork(instance.netId());
+        if (snet == null) {
+            final String error = ERR_NET_FAIL + instance.netId();
+            throw new IllegalStateException(error);
+        }
+        boolean isOnlyOnDevice = addDeviceInstance(instance);
+        if (!snet.providers().isEmpty()) {
+            updateSubscriberInstances(snet, instance, true, isOnlyOnDevice);
+        }
+        // the previous bucket of the updated instance is unknown, rebuild them all
+        if (isMine(snet.id())) {
+            updateProviderInstances(snet);
+        }
     }
 
     @Override
@@ -145,30 +260,300 @@ public class DependencyHandler extends AbstractInstanceHandler {
             final String error = ERR_NET_FAIL + instance.netId();
             throw new IllegalStateException(error);
         }
+        boolean isOnlyOnDevice = removeDeviceInstance(instance);
         if (!snet.providers().isEmpty()) {
-            updateSubscriberInstances(snet, instance, false);
+            updateSubscriberInstances(snet, instance, false, isOnlyOnDevice);
         }
         // TODO check if subscribers on this network and remove group if unused
-        updateProviderInstances(snet);
+        if (isMine(snet.id())) {
+            updateProviderInstance(snet, instance, false);
+        }
+    }
+
+    @Override
+    protected boolean isEventOwner(Host host) {
+        // every member takes the instance events, the groups and the dependency
+        // rules of a provider network are updated only by the partition owner
+        // of the provider network, the same member handles its dependency events
+        return true;
+    }
+
+    @Override
+    protected Object eventKey(Host host) {
+        // handles the instance events of a network in order, the provider
+        // group of the network is shared by the instances on all devices
+        String netId = host.annotations().value(Instance.NETWORK_ID);
+        return Strings.isNullOrEmpty(netId) ? super.eventKey(host) : NetworkId.of(netId);
     }
 
-    private void dependencyAdded(ServiceNetwork subscriber, ServiceNetwork provider,
-                                 DependencyType type) {
-        populateDependencyRules(subscriber, provider, type, true);
-        log.info("Dependency is created subscriber:{}, provider:{}, type: {}",
-                 subscriber.name(),
-                 provider.name(), type.name());
+    @Override
+    public Set<FlowRule> desiredFlowRules(DeviceId deviceId) {
+        if (!isCompleteNode(deviceId)) {
+            return ImmutableSet.of();
+        }
+        // builds the rules of the given device only, the rules refer to the
+        // provider groups that exist on the device; the owner of a provider
+        // network creates its missing group, the others leave out the rules
+        // until the owner creates it
+        Set<DeviceId> devices = ImmutableSet.of(deviceId);
+        FlowRuleBatch.Builder batch = FlowRuleBatch.builder();
+        snetService.serviceNetworks().forEach(subscriber -> {
+            subscriber.providers().forEach((providerId, type) -> {
+                ServiceNetwork provider = snetService.serviceNetwork(providerId);
+                if (provider != null) {
+                    populateDependencyRules(batch, subscriber, provider, type, devices,
+                                            device -> getExistingProviderGroup(provider, device),
+                                            true);
+                }
+            });
+        });
+        return addedRules(batch.build(), deviceId);
     }
 
-    private void dependencyRemoved(ServiceNetwork subscriber, ServiceNetwork provider,
-                                   DependencyType type) {
-        populateDependencyRules(subscriber, provider, type, false);
-        if (!isProviderInUse(provider.id())) {
-            removeGroup(provider.id());
+    @Override
+    protected void populateInstanceRules(FlowRuleBatch.Builder batch, Instance instance) {
+        // in port rules of the subscriber instances are part of the dependency rules
+    }
+
+    private void dependencyChanged(ServiceNetworkEvent event) {
+        NetworkId providerId = event.provider().provider().id();
+        synchronized (pendingDependencies) {
+            boolean scheduled = pendingDependencies.containsKey(providerId);
+            pendingDependencies.put(providerId, event);
+            if (scheduled) {
+                return;
+            }
+        }
+        // dependency changes are handled in the partition of the provider
+        // network, where its instance events update the provider group
+        Runnable task = () -> eventExecutor.execute(
+                providerId, () -> processDependencies(providerId));
+        if (dependencyBatchWindow > 0) {
+            scheduler.schedule(task, dependencyBatchWindow, MILLISECONDS);
+        } else {
+            task.run();
+        }
+    }
+
+    private void processDependencies(NetworkId providerId) {
+        List<ServiceNetworkEvent> events;
+        synchronized (pendingDependencies) {
+            events = pendingDependencies.removeAll(providerId);
+        }
+        if (events.isEmpty() || !isMine(providerId)) {
+            // do not allow to proceed without the partition ownership
+            return;
+        }
+
+        // collapses the events of each subscriber in the window to the net
+        // change, a dependency added and removed again leaves no rules behind
+        Map<NetworkId, ServiceNetworkEvent> firstEvents = Maps.newLinkedHashMap();
+        Map<NetworkId, ServiceNetworkEvent> lastEvents = Maps.newLinkedHashMap();
+        events.forEach(event -> {
+            firstEvents.putIfAbsent(event.subject().id(), event);
+            lastEvents.put(event.subject().id(), event);
+        });
+
+        // provisions the dependency rules of all subscribers together,
+        // the provider groups are created once and shared by them
+        FlowRuleBatch.Builder batch = FlowRuleBatch.builder();
+        boolean isRemoved = false;
+        for (NetworkId subscriberId : lastEvents.keySet()) {
+            ServiceNetworkEvent first = firstEvents.get(subscriberId);
+            ServiceNetworkEvent last = lastEvents.get(subscriberId);
+            boolean wasInstalled = first.type() != SERVICE_NETWORK_PROVIDER_ADDED;
+            boolean install = last.type() == SERVICE_NETWORK_PROVIDER_ADDED;
+            if (!wasInstalled && !install) {
+                continue;
+            }
+            if (wasInstalled && install) {
+                // removed and added again, changes only the rules that differ
+                FlowRuleBatch.Builder oldRules = FlowRuleBatch.builder();
+                FlowRuleBatch.Builder newRules = FlowRuleBatch.builder();
+                populateDependencyRules(oldRules, first.subject(), first.provider().provider(),
+                                        first.provider().type(), false);
+                populateDependencyRules(newRules, last.subject(), last.provider().provider(),
+                                        last.provider().type(), true);
+                diffRules(oldRules.build(), newRules.build()).operations().forEach(
+                        op -> batch.process(op.type() != REMOVE, op.rule()));
+            } else {
+                populateDependencyRules(batch, last.subject(), last.provider().provider(),
+                                        last.provider().type(), install);
+            }
+            isRemoved |= !install;
+            log.info("Dependency is {} subscriber:{}, provider:{}, type: {}",
+                     install ? "created" : "removed",
+                     last.subject().name(),
+                     last.provider().provider().name(),
+                     last.provider().type().name());
+        }
+        pipeline.processFlowRules(batch.build());
+        if (isRemoved) {
+            removeUnusedGroups(providerId);
+        }
+    }
+
+    private void serviceNetworkUpdated(ServiceNetwork prev, ServiceNetwork snet) {
+        boolean isAddressChanged = !Objects.equals(prev.subnet(), snet.subnet()) ||
+                !Objects.equals(prev.serviceIp(), snet.serviceIp());
+        boolean isSegmentChanged = !Objects.equals(prev.segmentId(), snet.segmentId());
+        // the providers added or removed are handled by the dependency events
+        Set<NetworkId> typeChanged = prev.providers().entrySet().stream()
+                .filter(p -> snet.providers().containsKey(p.getKey()))
+                .filter(p -> snet.providers().get(p.getKey()) != p.getValue())
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toSet());
+
+        // the dependency rules and the groups of a provider network are
+        // updated in the partition of the provider network
+        prev.providers().keySet().stream()
+                .filter(providerId -> snet.providers().containsKey(providerId))
+                .filter(providerId -> isAddressChanged || typeChanged.contains(providerId))
+                .forEach(providerId -> eventExecutor.execute(providerId, () -> {
+                    if (!isMine(providerId)) {
+                        // do not allow to proceed without the partition ownership
+                        return;
+                    }
+                    subscriberUpdated(prev, snet, providerId);
+                }));
+        if (isAddressChanged || isSegmentChanged) {
+            eventExecutor.execute(snet.id(), () -> {
+                if (!isMine(snet.id())) {
+                    // do not allow to proceed without the partition ownership
+                    return;
+                }
+                providerUpdated(prev, snet, isAddressChanged, isSegmentChanged);
+            });
+        }
+    }
+
+    private void subscriberUpdated(ServiceNetwork prev, ServiceNetwork snet,
+                                   NetworkId providerId) {
+        ServiceNetwork provider = snetService.serviceNetwork(providerId);
+        if (provider == null) {
+            log.warn(ERR_NET_FAIL + providerId);
+            return;
+        }
+        FlowRuleBatch.Builder oldRules = FlowRuleBatch.builder();
+        FlowRuleBatch.Builder newRules = FlowRuleBatch.builder();
+        populateDependencyRules(oldRules, prev, provider,
+                                prev.providers().get(providerId), false);
+        populateDependencyRules(newRules, snet, provider,
+                                snet.providers().get(providerId), true);
+        FlowRuleBatch batch = diffRules(oldRules.build(), newRules.build());
+        pipeline.processFlowRules(batch);
+        log.info("Updated dependency rules of {} on provider {}: {} operations",
+                 snet.name(), provider.name(), batch.operations().size());
+    }
+
+    private void providerUpdated(ServiceNetwork prev, ServiceNetwork snet,
+                                 boolean isAddressChanged, boolean isSegmentChanged) {
+        if (isAddressChanged) {
+            FlowRuleBatch.Builder oldRules = FlowRuleBatch.builder();
+            FlowRuleBatch.Builder newRules = FlowRuleBatch.builder();
+            snetService.subscribers(snet.id()).forEach((subscriberId, type) -> {
+                ServiceNetwork subscriber = snetService.serviceNetwork(subscriberId);
+                if (subscriber == null) {
+                    return;
+                }
+                populateDependencyRules(oldRules, subscriber, prev, type, false);
+                populateDependencyRules(newRules, subscriber, snet, type, true);
+            });
+            FlowRuleBatch batch = diffRules(oldRules.build(), newRules.build());
+            pipeline.processFlowRules(batch);
+            log.info("Updated dependency rules of subscribers of {}: {} operations",
+                     snet.name(), batch.operations().size());
+        }
+        if (isSegmentChanged) {
+            // the tunnel ID of the remote instance buckets changed
+            updateProviderInstances(snet);
+        }
+    }
+
+    /**
+     * Returns the operations to change the rules of the old batch to the
+     * rules of the new batch; rules in both batches are updated only if
+     * their treatment differs.
+     *
+     * @param oldBatch batch of the rules to replace
+     * @param newBatch batch of the rules to install
+     * @return flow rule batch
+     */
+    static FlowRuleBatch diffRules(FlowRuleBatch oldBatch, FlowRuleBatch newBatch) {
+        // flow rule equality ignores the treatment, keep the old rules to compare
+        Map<FlowRule, FlowRule> oldRules = Maps.newHashMap();
+        oldBatch.operations().forEach(op -> oldRules.put(op.rule(), op.rule()));
+        Set<FlowRule> newRules = newBatch.operations().stream()
+                .map(FlowRuleOperation::rule)
+                .collect(Collectors.toSet());
+
+        FlowRuleBatch.Builder batch = FlowRuleBatch.builder();
+        oldRules.keySet().stream()
+                .filter(rule -> !newRules.contains(rule))
+                .forEach(batch::remove);
+        newRules.stream()
+                .filter(rule -> {
+                    FlowRule old = oldRules.get(rule);
+                    return old == null || !old.treatment().equals(rule.treatment());
+                })
+                .forEach(batch::add);
+        return batch.build();
+    }
+
+    private void updateProviderInstance(ServiceNetwork provider, Instance instance,
+                                        boolean isDetected) {
+        if (dataIp(instance.deviceId()) == null) {
+            // the bucket of the instance cannot be built without its node
+            updateProviderInstances(provider);
+            return;
+        }
+        if (isDetected && !isCompleteNode(instance.deviceId())) {
+            // the bucket is added when the node becomes complete
+            return;
+        }
+
+        GroupKey groupKey = getGroupKey(provider.id());
+        for (CordVtnNode node : nodeService.completeNodes()) {
+            DeviceId deviceId = node.integrationBridgeId();
+            Group group = groupService.getGroup(deviceId, groupKey);
+            if (group == null) {
+                continue;
+            }
+            GroupBucket bucket = getProviderGroupBucket(
+                    deviceId, provider.segmentId().id(), instance);
+            boolean exists = group.buckets().buckets().contains(bucket);
+            if (isDetected && !exists) {
+                groupService.addBucketsToGroup(
+                        deviceId,
+                        groupKey,
+                        new GroupBuckets(ImmutableList.of(bucket)),
+                        groupKey, appId);
+                log.debug("Added bucket to provider({}) group on {}: {}",
+                          provider.id(), deviceId, bucket);
+            } else if (!isDetected && exists) {
+                groupService.removeBucketsFromGroup(
+                        deviceId,
+                        groupKey,
+                        new GroupBuckets(ImmutableList.of(bucket)),
+                        groupKey, appId);
+                log.debug("Removed bucket from provider({}) group on {}: {}",
+                          provider.id(), deviceId, bucket);
+            }
         }
-        log.info("Dependency is removed subscriber:{}, provider:{}, type: {}",
-                 subscriber.name(),
-                 provider.name(), type.name());
+    }
+
+    private void syncProviderGroups() {
+        snetService.serviceNetworks().stream()
+                .flatMap(snet -> snet.providers().keySet().stream())
+                .distinct()
+                .filter(this::isMine)
+                .forEach(providerId -> eventExecutor.execute(providerId, () -> {
+                    ServiceNetwork provider = snetService.serviceNetwork(providerId);
+                    if (provider != null) {
+                        updateProviderInstances(provider);
+                    }
+                    removeUnusedGroups(providerId);
+                }));
     }
 
     private void updateProviderInstances(ServiceNetwork provider) {
@@ -191,8 +576,10 @@ public class DependencyHandler extends AbstractInstanceHandler {
                 continue;
             }
 
-            List<GroupBucket> bucketsToRemove = Lists.newArrayList(oldBuckets);
-            bucketsToRemove.removeAll(newBuckets);
+            Set<GroupBucket> newBucketSet = ImmutableSet.copyOf(newBuckets);
+            List<GroupBucket> bucketsToRemove = oldBuckets.stream()
+                    .filter(bucket -> !newBucketSet.contains(bucket))
+                    .collect(Collectors.toList());
             if (!bucketsToRemove.isEmpty()) {
                 groupService.removeBucketsFromGroup(
                         deviceId,
@@ -203,8 +590,10 @@ public class DependencyHandler extends AbstractInstanceHandler {
                           provider.id(), deviceId, bucketsToRemove);
             }
 
-            List<GroupBucket> bucketsToAdd = Lists.newArrayList(newBuckets);
-            bucketsToAdd.removeAll(oldBuckets);
+            Set<GroupBucket> oldBucketSet = ImmutableSet.copyOf(oldBuckets);
+            List<GroupBucket> bucketsToAdd = newBuckets.stream()
+                    .filter(bucket -> !oldBucketSet.contains(bucket))
+                    .collect(Collectors.toList());
             if (!bucketsToAdd.isEmpty()) {
                 groupService.addBucketsToGroup(
                         deviceId,
@@ -217,36 +606,125 @@ public class DependencyHandler extends AbstractInstanceHandler {
         }
     }
 
+    /**
+     * Adds the instance to the instances of its network on its device.
+     *
+     * @param instance instance
+     * @return true if the instance is the only one of its network on the device
+     */
+    boolean addDeviceInstance(Instance instance) {
+        HostId hostId = instance.host().id();
+        synchronized (deviceInstances) {
+            SetMultimap<DeviceId, HostId> devices = deviceInstances.computeIfAbsent(
+                    instance.netId(), netId -> HashMultimap.create());
+            // a moved instance is no longer on its previous device
+            devices.entries().removeIf(entry -> entry.getValue().equals(hostId) &&
+                    !entry.getKey().equals(instance.deviceId()));
+            devices.put(instance.deviceId(), hostId);
+            return devices.get(instance.deviceId()).size() == 1;
+        }
+    }
+
+    /**
+     * Removes the instance from the instances of its network on its device.
+     *
+     * @param instance instance
+     * @return true if no other instance of its network is on the device
+     */
+    boolean removeDeviceInstance(Instance instance) {
+        synchronized (deviceInstances) {
+            SetMultimap<DeviceId, HostId> devices = deviceInstances.get(instance.netId());
+            if (devices == null) {
+                return true;
+            }
+            devices.remove(instance.deviceId(), instance.host().id());
+            if (devices.isEmpty()) {
+                deviceInstances.remove(instance.netId());
+            }
+            return !devices.containsKey(instance.deviceId());
+        }
+    }
+
     private void updateSubscriberInstances(ServiceNetwork subscriber, Instance instance,
-                                           boolean isDetected) {
+                                           boolean isDetected, boolean isOnlyOnDevice) {
+        // the provider groups and the indirect access rules of the subscriber
+        // exist only on the devices with the subscriber instances, they change
+        // only when the first instance is added to or the last one is removed
+        // from the device; the instance events of the subscriber network are
+        // handled in order, the instance store may be ahead of them already
+
+        // the provider groups are created and removed only by the owner of
+        // the partition of the provider network, with the other updates
+        subscriber.providers().keySet().forEach(providerId -> eventExecutor.execute(
+                providerId, () -> updateSubscriberInstance(
+                        subscriber, providerId, instance, isDetected, isOnlyOnDevice)));
+    }
+
+    private void updateSubscriberInstance(ServiceNetwork subscriber, NetworkId providerId,
+                                          Instance instance, boolean isDetected,
+                                          boolean isOnlyOnDevice) {
+        if (!isMine(providerId)) {
+            // do not allow to proceed without the partition ownership
+            return;
+        }
+        ServiceNetwork provider = snetService.serviceNetwork(providerId);
+        if (provider == null) {
+            log.warn(ERR_NET_FAIL + providerId);
+            return;
+        }
         DeviceId deviceId = instance.deviceId();
-        final String isAdded = isDetected ? ADDED : REMOVED;
-        subscriber.providers().keySet().forEach(providerId -> {
-            populateInPortRule(
-                    ImmutableMap.of(deviceId, ImmutableSet.of(instance.portNumber())),
-                    ImmutableMap.of(deviceId, getGroupId(providerId, deviceId)),
+        GroupId groupId = isDetected ? getProviderGroup(provider, deviceId) :
+                getGroupId(providerId, deviceId);
+        Map<DeviceId, GroupId> providerGroup = ImmutableMap.of(deviceId, groupId);
+
+        FlowRuleBatch.Builder batch = FlowRuleBatch.builder();
+        populateInPortRule(
+                batch,
+                ImmutableMap.of(deviceId, ImmutableSet.of(instance.portNumber())),
+                providerGroup,
+                isDetected);
+        if (isOnlyOnDevice) {
+            populateIndirectAccessRule(
+                    batch,
+                    subscriber.subnet().getIp4Prefix(),
+                    provider.serviceIp().getIp4Address(),
+                    providerGroup,
                     isDetected);
-            log.info(isAdded + "subscriber instance({}) for provider({})",
-                     instance.host().id(), providerId.id());
-        });
+        }
+        pipeline.processFlowRules(batch.build());
+        log.info((isDetected ? ADDED : REMOVED) + "subscriber instance({}) for provider({})",
+                 instance.host().id(), providerId.id());
+
+        if (!isDetected && isOnlyOnDevice &&
+                !getSubscriberDevices(providerId, instance).contains(deviceId)) {
+            removeGroup(providerId, deviceId);
+        }
+    }
+
+    private Set<DeviceId> getSubscriberDevices(NetworkId providerId, Instance excluded) {
+        return snetService.subscribers(providerId).keySet().stream()
+                .flatMap(subscriberId -> getInstances(subscriberId).stream())
+                .filter(instance -> excluded == null ||
+                        !instance.host().id().equals(excluded.host().id()))
+                .map(Instance::deviceId)
+                .collect(Collectors.toSet());
     }
 
-    private boolean isProviderInUse(NetworkId providerId) {
-        return snetService.serviceNetworks().stream()
-                .flatMap(net -> net.providers().keySet().stream())
-                .anyMatch(provider -> Objects.equals(provider, providerId));
+    private void removeUnusedGroups(NetworkId providerId) {
+        Set<DeviceId> subscriberDevices = getSubscriberDevices(providerId, null);
+        nodeService.completeNodes().stream()
+                .map(CordVtnNode::integrationBridgeId)
+                .filter(deviceId -> !subscriberDevices.contains(deviceId))
+                .forEach(deviceId -> removeGroup(providerId, deviceId));
     }
 
-    private void removeGroup(NetworkId netId) {
+    private void removeGroup(NetworkId netId, DeviceId deviceId) {
         GroupKey groupKey = getGroupKey(netId);
-        nodeService.completeNodes().forEach(node -> {
-            DeviceId deviceId = node.integrationBridgeId();
-            Group group = groupService.getGroup(deviceId, groupKey);
-            if (group != null) {
-                groupService.removeGroup(deviceId, groupKey, appId);
-            }
-        });
-        log.debug("Removed group for network {}", netId);
+        Group group = groupService.getGroup(deviceId, groupKey);
+        if (group != null) {
+            groupService.removeGroup(deviceId, groupKey, appId);
+            log.debug("Removed group for network {} on {}", netId, deviceId);
+        }
     }
 
     private GroupId getGroupId(NetworkId netId, DeviceId deviceId) {
@@ -280,41 +758,75 @@ public class DependencyHandler extends AbstractInstanceHandler {
         return groupId;
     }
 
-    private void populateDependencyRules(ServiceNetwork subscriber, ServiceNetwork provider,
+    /**
+     * Returns the provider group on the device, creating it if the local
+     * member owns the provider network.
+     *
+     * @param provider provider network
+     * @param deviceId device id
+     * @return group id; null if the group does not exist on the device yet
+     */
+    private GroupId getExistingProviderGroup(ServiceNetwork provider, DeviceId deviceId) {
+        if (isMine(provider.id())) {
+            return getProviderGroup(provider, deviceId);
+        }
+        Group group = groupService.getGroup(deviceId, getGroupKey(provider.id()));
+        return group == null ? null : getGroupId(provider.id(), deviceId);
+    }
+
+    private void populateDependencyRules(FlowRuleBatch.Builder batch,
+                                         ServiceNetwork subscriber, ServiceNetwork provider,
                                          DependencyType type, boolean install) {
-        Map<DeviceId, GroupId> providerGroups = Maps.newHashMap();
-        Map<DeviceId, Set<PortNumber>> subscriberPorts = Maps.newHashMap();
+        Set<DeviceId> devices = nodeService.completeNodes().stream()
+                .map(CordVtnNode::integrationBridgeId)
+                .collect(Collectors.toSet());
+        Function<DeviceId, GroupId> providerGroup = install ?
+                deviceId -> getProviderGroup(provider, deviceId) :
+                deviceId -> getGroupId(provider.id(), deviceId);
+        populateDependencyRules(batch, subscriber, provider, type, devices,
+                                providerGroup, install);
+    }
 
-        nodeService.completeNodes().forEach(node -> {
-            DeviceId deviceId = node.integrationBridgeId();
-            GroupId groupId = getProviderGroup(provider, deviceId);
-            providerGroups.put(deviceId, groupId);
-
-            Set<PortNumber> ports = getInstances(subscriber.id())
-                    .stream()
-                    .filter(instance -> instance.deviceId().equals(deviceId))
-                    .map(Instance::portNumber)
-                    .collect(Collectors.toSet());
-            subscriberPorts.put(deviceId, ports);
+    private void populateDependencyRules(FlowRuleBatch.Builder batch,
+                                         ServiceNetwork subscriber, ServiceNetwork provider,
+                                         DependencyType type, Set<DeviceId> devices,
+                                         Function<DeviceId, GroupId> providerGroup,
+                                         boolean install) {
+        Map<DeviceId, GroupId> providerGroups = Maps.newHashMap();
+        Map<DeviceId, Set<PortNumber>> subscriberPorts = getInstances(subscriber.id())
+                .stream()
+                .filter(instance -> devices.contains(instance.deviceId()))
+                .collect(Collectors.groupingBy(
+                        Instance::deviceId,
+                        Collectors.mapping(Instance::portNumber, Collectors.toSet())));
+
+        // provider groups are created only on the devices with the subscriber instances
+        subscriberPorts.keySet().forEach(deviceId -> {
+            GroupId groupId = providerGroup.apply(deviceId);
+            if (groupId != null) {
+                providerGroups.put(deviceId, groupId);
+            }
         });
 
         // TODO support IPv6
         IpPrefix sSubnet = subscriber.subnet().getIp4Prefix();
         IpPrefix pSubnet = provider.subnet().getIp4Prefix();
 
-        populateInPortRule(subscriberPorts, providerGroups, install);
+        populateInPortRule(batch, subscriberPorts, providerGroups, install);
         populateIndirectAccessRule(
+                batch,
                 sSubnet,
                 provider.serviceIp().getIp4Address(),
                 providerGroups,
                 install);
-        populateDirectAccessRule(sSubnet, pSubnet, install);
+        populateDirectAccessRule(batch, devices, sSubnet, pSubnet, install);
         if (type == BIDIRECTIONAL) {
-            populateDirectAccessRule(pSubnet, sSubnet, install);
+            populateDirectAccessRule(batch, devices, pSubnet, sSubnet, install);
         }
     }
 
-    private void populateIndirectAccessRule(IpPrefix srcSubnet, IpAddress serviceIp,
+    private void populateIndirectAccessRule(FlowRuleBatch.Builder batch,
+                                            IpPrefix srcSubnet, IpAddress serviceIp,
                                             Map<DeviceId, GroupId> outGroups,
                                             boolean install) {
         // TODO support IPv6
@@ -339,11 +851,12 @@ public class DependencyHandler extends AbstractInstanceHandler {
                     .makePermanent()
                     .build();
 
-            pipeline.processFlowRule(install, flowRule);
+            batch.process(install, flowRule);
         }
     }
 
-    private void populateDirectAccessRule(IpPrefix srcIp, IpPrefix dstIp, boolean install) {
+    private void populateDirectAccessRule(FlowRuleBatch.Builder batch, Set<DeviceId> devices,
+                                          IpPrefix srcIp, IpPrefix dstIp, boolean install) {
         // TODO support IPv6
         TrafficSelector selector = DefaultTrafficSelector.builder()
                 .matchEthType(Ethernet.TYPE_IPV4)
@@ -355,8 +868,7 @@ public class DependencyHandler extends AbstractInstanceHandler {
                 .transition(TABLE_DST)
                 .build();
 
-        nodeService.completeNodes().forEach(node -> {
-            DeviceId deviceId = node.integrationBridgeId();
+        devices.forEach(deviceId -> {
             FlowRule flowRuleDirect = DefaultFlowRule.builder()
                     .fromApp(appId)
                     .withSelector(selector)
@@ -367,11 +879,12 @@ public class DependencyHandler extends AbstractInstanceHandler {
                     .makePermanent()
                     .build();
 
-            pipeline.processFlowRule(install, flowRuleDirect);
+            batch.process(install, flowRuleDirect);
         });
     }
 
-    private void populateInPortRule(Map<DeviceId, Set<PortNumber>> subscriberPorts,
+    private void populateInPortRule(FlowRuleBatch.Builder batch,
+                                    Map<DeviceId, Set<PortNumber>> subscriberPorts,
                                     Map<DeviceId, GroupId> providerGroups,
                                     boolean install) {
         for (Map.Entry<DeviceId, Set<PortNumber>> entry : subscriberPorts.entrySet()) {
@@ -400,7 +913,7 @@ public class DependencyHandler extends AbstractInstanceHandler {
                         .makePermanent()
                         .build();
 
-                pipeline.processFlowRule(install, flowRule);
+                batch.process(install, flowRule);
             });
         }
     }
@@ -408,60 +921,67 @@ public class DependencyHandler extends AbstractInstanceHandler {
     private GroupBuckets getProviderGroupBuckets(DeviceId deviceId, long tunnelId,
                                                  Set<Instance> instances) {
         List<GroupBucket> buckets = Lists.newArrayList();
-        instances.forEach(instance -> {
-            Ip4Address tunnelIp = dataIp(instance.deviceId()).getIp4Address();
-
-            if (deviceId.equals(instance.deviceId())) {
-                TrafficTreatment treatment = DefaultTrafficTreatment.builder()
-                        .setEthDst(instance.mac())
-                        .setOutput(instance.portNumber())
-                        .build();
-                buckets.add(createSelectGroupBucket(treatment));
-            } else {
-                ExtensionTreatment tunnelDst = tunnelDstTreatment(deviceId, tunnelIp);
-                TrafficTreatment treatment = DefaultTrafficTreatment.builder()
-                        .setEthDst(instance.mac())
-                        .extension(tunnelDst, deviceId)
-                        .setTunnelId(tunnelId)
-                        .setOutput(tunnelPort(instance.deviceId()))
-                        .build();
-                buckets.add(createSelectGroupBucket(treatment));
-            }
-        });
+        instances.stream()
+                .filter(instance -> isCompleteNode(instance.deviceId()))
+                .forEach(instance -> buckets.add(
+                        getProviderGroupBucket(deviceId, tunnelId, instance)));
         return new GroupBuckets(buckets);
     }
 
+    private GroupBucket getProviderGroupBucket(DeviceId deviceId, long tunnelId,
+                                               Instance instance) {
+        short weight = bucketWeightPolicy.weight(deviceId, instance);
+        if (deviceId.equals(instance.deviceId())) {
+            TrafficTreatment treatment = DefaultTrafficTreatment.builder()
+                    .setEthDst(instance.mac())
+                    .setOutput(instance.portNumber())
+                    .build();
+            return createSelectGroupBucket(treatment, weight);
+        }
+
+        Ip4Address tunnelIp = dataIp(instance.deviceId()).getIp4Address();
+        ExtensionTreatment tunnelDst = tunnelDstTreatment(deviceId, tunnelIp);
+        TrafficTreatment treatment = DefaultTrafficTreatment.builder()
+                .setEthDst(instance.mac())
+                .extension(tunnelDst, deviceId)
+                .setTunnelId(tunnelId)
+                .setOutput(tunnelPort(instance.deviceId()))
+                .build();
+        return createSelectGroupBucket(treatment, weight);
+    }
+
+    private boolean isCompleteNode(DeviceId deviceId) {
+        CordVtnNode node = nodeService.node(deviceId);
+        return node != null && node.state() == COMPLETE;
+    }
+
     private class InternalServiceNetworkListener implements ServiceNetworkListener {
 
         @Override
         public void event(ServiceNetworkEvent event) {
-            eventExecutor.execute(() -> {
-                NodeId leader = leadershipService.getLeader(appId.name());
-                if (!Objects.equals(localNodeId, leader)) {
-                    // do not allow to proceed without leadership
-                    return;
-                }
-                handle(event);
-            });
+            if (event.type() == SERVICE_NETWORK_UPDATED && event.prevSubject() != null) {
+                serviceNetworkUpdated(event.prevSubject(), event.subject());
+                return;
+            }
+            if (event.provider() == null) {
+                // only the dependency events are handled
+                return;
+            }
+            handle(event);
         }
 
         private void handle(ServiceNetworkEvent event) {
             switch (event.type()) {
                 case SERVICE_NETWORK_PROVIDER_ADDED:
                     log.debug("Dependency added: {}", event);
-                    dependencyAdded(event.subject(),
-                            event.provider().provider(),
-                            event.provider().type());
+                    dependencyChanged(event);
                     break;
                 case SERVICE_NETWORK_PROVIDER_REMOVED:
                     log.debug("Dependency removed: {}", event);
-                    dependencyRemoved(event.subject(),
-                            event.provider().provider(),
-                            event.provider().type());
+                    dependencyChanged(event);
                     break;
                 case SERVICE_NETWORK_CREATED:
                 case SERVICE_NETWORK_UPDATED:
-                    // TODO handle dependency rule related element updates
                 case SERVICE_NETWORK_REMOVED:
                 case SERVICE_PORT_CREATED:
                 case SERVICE_PORT_UPDATED:
@@ -472,4 +992,21 @@ public class DependencyHandler extends AbstractInstanceHandler {
             }
         }
     }
+
+    private class InternalNodeListener implements CordVtnNodeListener {
+
+        @Override
+        public void event(CordVtnNodeEvent event) {
+            switch (event.type()) {
+                case NODE_COMPLETE:
+                case NODE_INCOMPLETE:
+                case NODE_REMOVED:
+                    // add or remove the buckets of the instances on the node
+                    syncProviderGroups();
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
 }
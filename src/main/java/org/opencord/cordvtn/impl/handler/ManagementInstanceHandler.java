@@ -30,11 +30,13 @@ import org.onosproject.net.flow.FlowRule;
 import org.onosproject.net.flow.TrafficSelector;
 import org.onosproject.net.flow.TrafficTreatment;
 import org.opencord.cordvtn.api.core.CordVtnPipeline;
+import org.opencord.cordvtn.api.core.FlowRuleBatch;
 import org.opencord.cordvtn.api.core.Instance;
 import org.opencord.cordvtn.api.core.InstanceHandler;
 import org.opencord.cordvtn.api.core.ServiceNetworkService;
 import org.opencord.cordvtn.api.net.ServiceNetwork;
 import org.opencord.cordvtn.api.node.CordVtnNodeService;
+import org.osgi.service.component.ComponentContext;
 
 import static org.opencord.cordvtn.api.net.ServiceNetwork.NetworkType.MANAGEMENT_HOST;
 import static org.opencord.cordvtn.api.net.ServiceNetwork.NetworkType.MANAGEMENT_LOCAL;
@@ -56,53 +58,74 @@ public class ManagementInstanceHandler extends AbstractInstanceHandler implement
     protected CordVtnPipeline pipeline;
 
     @Activate
-    protected void activate() {
+    protected void activate(ComponentContext context) {
         netTypes = ImmutableSet.of(MANAGEMENT_LOCAL, MANAGEMENT_HOST);
-        super.activate();
+        super.activate(context);
+        pipeline.addFlowRuleProvider(this);
     }
 
     @Deactivate
     protected void deactivate() {
+        pipeline.removeFlowRuleProvider(this);
         super.deactivate();
     }
 
     @Override
     public void instanceDetected(Instance instance) {
         ServiceNetwork vtnNet = getServiceNetwork(instance);
+        FlowRuleBatch.Builder batch = FlowRuleBatch.builder();
 
         switch (vtnNet.type()) {
             case MANAGEMENT_LOCAL:
                 log.info("LOCAL management instance is detected {}", instance);
-                populateLocalManagementRules(instance, true);
+                populateLocalManagementRules(batch, instance, true);
                 break;
             case MANAGEMENT_HOST:
                 log.info("HOSTS management instance is detected {}", instance);
-                populateHostsManagementRules(instance, true);
+                populateHostsManagementRules(batch, instance, true);
                 break;
             default:
                 break;
         }
+        pipeline.processFlowRules(batch.build());
     }
 
     @Override
     public void instanceRemoved(Instance instance) {
         ServiceNetwork vtnNet = getServiceNetwork(instance);
+        FlowRuleBatch.Builder batch = FlowRuleBatch.builder();
 
         switch (vtnNet.type()) {
             case MANAGEMENT_LOCAL:
                 log.info("LOCAL management instance removed {}", instance);
-                populateLocalManagementRules(instance, false);
+                populateLocalManagementRules(batch, instance, false);
                 break;
             case MANAGEMENT_HOST:
                 log.info("HOSTS management instance removed {}", instance);
-                populateHostsManagementRules(instance, false);
+                populateHostsManagementRules(batch, instance, false);
                 break;
             default:
                 break;
         }
+        pipeline.processFlowRules(batch.build());
     }
 
-    private void populateLocalManagementRules(Instance instance, boolean install) {
+    @Override
+    protected void populateInstanceRules(FlowRuleBatch.Builder batch, Instance instance) {
+        switch (getServiceNetwork(instance).type()) {
+            case MANAGEMENT_LOCAL:
+                populateLocalManagementRules(batch, instance, true);
+                break;
+            case MANAGEMENT_HOST:
+                populateHostsManagementRules(batch, instance, true);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void populateLocalManagementRules(FlowRuleBatch.Builder batch, Instance instance,
+                                              boolean install) {
         TrafficSelector selector = DefaultTrafficSelector.builder()
                 .matchEthType(Ethernet.TYPE_IPV4)
                 .matchIPDst(instance.ipAddress().toIpPrefix())
@@ -123,10 +146,11 @@ public class ManagementInstanceHandler extends AbstractInstanceHandler implement
                 .makePermanent()
                 .build();
 
-        pipeline.processFlowRule(install, flowRule);
+        batch.process(install, flowRule);
     }
 
-    private void populateHostsManagementRules(Instance instance, boolean install) {
+    private void populateHostsManagementRules(FlowRuleBatch.Builder batch, Instance instance,
+                                              boolean install) {
         PortNumber hostMgmtPort = hostManagementPort(instance.deviceId());
         if (hostMgmtPort == null) {
             log.warn("Can not find host management port in {}", instance.deviceId());
@@ -151,7 +175,7 @@ public class ManagementInstanceHandler extends AbstractInstanceHandler implement
                 .makePermanent()
                 .build();
 
-        pipeline.processFlowRule(install, flowRule);
+        batch.process(install, flowRule);
 
         selector = DefaultTrafficSelector.builder()
                 .matchEthType(Ethernet.TYPE_IPV4)
@@ -173,6 +197,6 @@ public class ManagementInstanceHandler extends AbstractInstanceHandler implement
                 .makePermanent()
                 .build();
 
-        pipeline.processFlowRule(install, flowRule);
+        batch.process(install, flowRule);
     }
 }
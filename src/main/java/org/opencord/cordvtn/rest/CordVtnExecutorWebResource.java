@@ -0,0 +1,56 @@
+/*
+ * Copyright 2017-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.opencord.cordvtn.rest;
+
+import org.onlab.osgi.DefaultServiceDirectory;
+import org.onosproject.rest.AbstractWebResource;
+import org.opencord.cordvtn.api.core.ExecutorStats;
+import org.opencord.cordvtn.api.core.ExecutorStatsService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+/**
+ * Query the event executors of the service and their queue statistics.
+ */
+@Path("executors")
+public class CordVtnExecutorWebResource extends AbstractWebResource {
+    protected final Logger log = LoggerFactory.getLogger(getClass());
+
+    private static final String EXECUTORS = "Executors";
+
+    private final ExecutorStatsService statsService =
+            DefaultServiceDirectory.getService(ExecutorStatsService.class);
+
+    /**
+     * Returns the queue statistics of all event executors.
+     *
+     * @return 200 OK with the executor statistics
+     */
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getExecutors() {
+        log.trace("Received executors GET");
+
+        return ok(encodeArray(ExecutorStats.class, EXECUTORS,
+                              statsService.executorStats())).build();
+    }
+}
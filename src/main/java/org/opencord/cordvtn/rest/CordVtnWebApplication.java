@@ -31,6 +31,8 @@ public class CordVtnWebApplication extends AbstractWebApplication {
                           NeutronMl2NetworksWebResource.class,
                           NeutronMl2SubnetsWebResource.class,
                           NeutronMl2PortsWebResource.class,
+                          ServiceNetworkChangeWebResource.class,
+                          CordVtnExecutorWebResource.class,
                           CordVtnWebLoggingFilter.class);
     }
 }
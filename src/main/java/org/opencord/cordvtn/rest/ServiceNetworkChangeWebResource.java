@@ -0,0 +1,104 @@
+/*
+ * Copyright 2017-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.opencord.cordvtn.rest;
+
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.onosproject.rest.AbstractWebResource;
+import org.opencord.cordvtn.api.core.ServiceNetworkChange;
+import org.opencord.cordvtn.api.core.ServiceNetworkService;
+import org.opencord.cordvtn.api.net.ServiceNetwork;
+import org.opencord.cordvtn.api.net.ServicePort;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.ws.rs.DefaultValue;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.util.List;
+
+import static javax.ws.rs.core.Response.Status.GONE;
+
+/**
+ * Query the changes of the service networks and ports.
+ */
+@Path("changes")
+public class ServiceNetworkChangeWebResource extends AbstractWebResource {
+    protected final Logger log = LoggerFactory.getLogger(getClass());
+
+    private static final String LATEST_VERSION = "latestVersion";
+    private static final String CHANGES = "Changes";
+
+    private final ServiceNetworkService snetService = get(ServiceNetworkService.class);
+
+    /**
+     * Returns the service network and port changes made after the supplied
+     * changelog version. The latest version in the result moves past the
+     * lost versions as well, which come with no change.
+     *
+     * @param since changelog version already known to the caller
+     * @return 200 OK with the changes, 410 GONE with the latest version if
+     * the changes since the version are no longer retained or the version is
+     * not taken yet; the caller reads the service networks and ports again
+     * and resumes from the latest version
+     */
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getChanges(@DefaultValue("0") @QueryParam("since") long since) {
+        log.trace("Received changes GET since {}", since);
+
+        List<ServiceNetworkChange> changes;
+        try {
+            changes = snetService.changes(since);
+        } catch (IllegalStateException e) {
+            ObjectNode root = mapper().createObjectNode()
+                    .put(LATEST_VERSION, snetService.changelogVersion());
+            return Response.status(GONE).entity(root).build();
+        }
+
+        ObjectNode root = mapper().createObjectNode();
+        root.put(LATEST_VERSION, changes.isEmpty() ? since :
+                changes.get(changes.size() - 1).version());
+        ArrayNode result = root.putArray(CHANGES);
+        for (ServiceNetworkChange change : changes) {
+            if (change.isTombstone()) {
+                continue;
+            }
+            ObjectNode changeJson = result.addObject()
+                    .put("version", change.version())
+                    .put("type", change.type().name());
+            if (change.networkId() != null) {
+                changeJson.put("networkId", change.networkId().id());
+            }
+            if (change.portId() != null) {
+                changeJson.put("portId", change.portId().id());
+            }
+            if (change.serviceNetwork() != null) {
+                changeJson.set("ServiceNetwork", codec(ServiceNetwork.class)
+                        .encode(change.serviceNetwork(), this));
+            }
+            if (change.servicePort() != null) {
+                changeJson.set("ServicePort", codec(ServicePort.class)
+                        .encode(change.servicePort(), this));
+            }
+        }
+        return Response.ok(root).build();
+    }
+}
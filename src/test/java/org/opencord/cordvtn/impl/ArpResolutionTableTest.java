@@ -0,0 +1,118 @@
+/*
+ * Copyright 2017-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.opencord.cordvtn.impl;
+
+import com.google.common.collect.ImmutableSet;
+import org.junit.Before;
+import org.junit.Test;
+import org.onlab.packet.Ip4Address;
+import org.onlab.packet.IpAddress;
+import org.onlab.packet.MacAddress;
+import org.onlab.packet.VlanId;
+import org.onosproject.net.DefaultHost;
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.Host;
+import org.onosproject.net.HostId;
+import org.onosproject.net.HostLocation;
+import org.onosproject.net.PortNumber;
+import org.onosproject.net.provider.ProviderId;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test of {@link ArpResolutionTable}.
+ */
+public class ArpResolutionTableTest {
+
+    private static final ProviderId PROVIDER_ID = new ProviderId("host", "test");
+    private static final DeviceId DEVICE_1 = DeviceId.deviceId("of:0000000000000001");
+    private static final long SEGMENT_1 = 1;
+    private static final long SEGMENT_2 = 2;
+    private static final Ip4Address IP_1 = Ip4Address.valueOf("10.0.0.1");
+    private static final Ip4Address IP_2 = Ip4Address.valueOf("10.0.0.2");
+
+    // the same addresses are used in both segments
+    private static final Host SEG_1_HOST_1 = host("00:00:00:00:01:01", IP_1);
+    private static final Host SEG_1_HOST_2 = host("00:00:00:00:01:02", IP_2);
+    private static final Host SEG_2_HOST_1 = host("00:00:00:00:02:01", IP_1);
+    private static final Host SEG_2_HOST_2 = host("00:00:00:00:02:02", IP_2);
+    private static final MacAddress UNKNOWN_MAC = MacAddress.valueOf("00:00:00:00:00:99");
+
+    private ArpResolutionTable table;
+
+    @Before
+    public void setUp() {
+        table = new ArpResolutionTable();
+        table.add(SEGMENT_1, SEG_1_HOST_1);
+        table.add(SEGMENT_1, SEG_1_HOST_2);
+        table.add(SEGMENT_2, SEG_2_HOST_1);
+        table.add(SEGMENT_2, SEG_2_HOST_2);
+    }
+
+    @Test
+    public void testOverlappingIps() {
+        assertEquals(SEG_1_HOST_2, table.resolve(SEG_1_HOST_1.mac(), IP_2.toInt()));
+        assertEquals(SEG_1_HOST_1, table.resolve(SEG_1_HOST_2.mac(), IP_1.toInt()));
+        assertEquals(SEG_2_HOST_2, table.resolve(SEG_2_HOST_1.mac(), IP_2.toInt()));
+        assertEquals(SEG_2_HOST_1, table.resolve(SEG_2_HOST_2.mac(), IP_1.toInt()));
+    }
+
+    @Test
+    public void testUnknownRequester() {
+        assertFalse(table.contains(UNKNOWN_MAC));
+        assertNull(table.resolve(UNKNOWN_MAC, IP_1.toInt()));
+    }
+
+    @Test
+    public void testUnknownTarget() {
+        int unknownIp = Ip4Address.valueOf("10.0.0.3").toInt();
+
+        assertTrue(table.contains(SEG_1_HOST_1.mac()));
+        assertNull(table.resolve(SEG_1_HOST_1.mac(), unknownIp));
+    }
+
+    @Test
+    public void testRemove() {
+        table.remove(SEG_1_HOST_2);
+
+        assertFalse(table.contains(SEG_1_HOST_2.mac()));
+        assertNull(table.resolve(SEG_1_HOST_1.mac(), IP_2.toInt()));
+        assertEquals(SEG_2_HOST_2, table.resolve(SEG_2_HOST_1.mac(), IP_2.toInt()));
+    }
+
+    @Test
+    public void testMoveToAnotherSegment() {
+        table.remove(SEG_2_HOST_2);
+        table.add(SEGMENT_2, SEG_1_HOST_2);
+
+        assertNull(table.resolve(SEG_1_HOST_1.mac(), IP_2.toInt()));
+        assertEquals(SEG_1_HOST_2, table.resolve(SEG_2_HOST_1.mac(), IP_2.toInt()));
+    }
+
+    private static Host host(String mac, IpAddress ip) {
+        MacAddress macAddress = MacAddress.valueOf(mac);
+        return new DefaultHost(
+                PROVIDER_ID,
+                HostId.hostId(macAddress),
+                macAddress,
+                VlanId.NONE,
+                new HostLocation(DEVICE_1, PortNumber.portNumber(1), 0L),
+                ImmutableSet.of(ip));
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2017-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.opencord.cordvtn.impl;
+
+import org.junit.Test;
+import org.onlab.packet.ARP;
+import org.onlab.packet.Ethernet;
+import org.onlab.packet.Ip4Address;
+import org.onlab.packet.MacAddress;
+
+import static org.junit.Assert.assertArrayEquals;
+
+/**
+ * Unit test of the ARP reply frames built by {@link CordVtnArpProxy}.
+ */
+public class CordVtnArpProxyTest {
+
+    private static final MacAddress REQUESTER_MAC = MacAddress.valueOf("fa:16:3e:00:00:01");
+    private static final MacAddress REPLY_MAC = MacAddress.valueOf("00:00:00:00:00:01");
+    private static final Ip4Address REQUESTER_IP = Ip4Address.valueOf("10.0.0.2");
+    private static final Ip4Address TARGET_IP = Ip4Address.valueOf("10.0.0.1");
+
+    @Test
+    public void testArpReplyFrame() {
+        Ethernet request = arpRequest(REQUESTER_MAC, REQUESTER_MAC);
+        assertArpReply(request);
+    }
+
+    @Test
+    public void testArpReplyFrameWithDifferentSenderMac() {
+        // the reply is addressed to the ethernet source of the request
+        Ethernet request = arpRequest(REQUESTER_MAC,
+                                      MacAddress.valueOf("fa:16:3e:00:00:02"));
+        assertArpReply(request);
+    }
+
+    private static void assertArpReply(Ethernet request) {
+        byte[] expected = ARP.buildArpReply(TARGET_IP, REPLY_MAC, request).serialize();
+        byte[] actual = CordVtnArpProxy.buildArpReply(
+                TARGET_IP, REPLY_MAC, request.getSourceMAC(), (ARP) request.getPayload());
+        assertArrayEquals(expected, actual);
+    }
+
+    private static Ethernet arpRequest(MacAddress ethSrc, MacAddress senderMac) {
+        ARP arp = new ARP();
+        arp.setOpCode(ARP.OP_REQUEST);
+        arp.setHardwareType(ARP.HW_TYPE_ETHERNET);
+        arp.setHardwareAddressLength((byte) Ethernet.DATALAYER_ADDRESS_LENGTH);
+        arp.setProtocolType(ARP.PROTO_TYPE_IP);
+        arp.setProtocolAddressLength((byte) Ip4Address.BYTE_LENGTH);
+        arp.setSenderHardwareAddress(senderMac.toBytes());
+        arp.setSenderProtocolAddress(REQUESTER_IP.toOctets());
+        arp.setTargetHardwareAddress(MacAddress.ZERO.toBytes());
+        arp.setTargetProtocolAddress(TARGET_IP.toOctets());
+
+        Ethernet eth = new Ethernet();
+        eth.setEtherType(Ethernet.TYPE_ARP);
+        eth.setSourceMACAddress(ethSrc);
+        eth.setDestinationMACAddress(MacAddress.BROADCAST);
+        eth.setPayload(arp);
+        return eth;
+    }
+}
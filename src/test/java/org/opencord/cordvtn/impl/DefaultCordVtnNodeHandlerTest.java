@@ -35,6 +35,7 @@ import org.onosproject.cluster.LeadershipServiceAdapter;
 import org.onosproject.cluster.NodeId;
 import org.onosproject.core.ApplicationId;
 import org.onosproject.core.CoreServiceAdapter;
+import org.onosproject.mastership.MastershipServiceAdapter;
 import org.onosproject.core.DefaultApplicationId;
 import org.onosproject.event.DefaultEventSinkRegistry;
 import org.onosproject.event.Event;
@@ -48,6 +49,7 @@ import org.onosproject.net.DeviceId;
 import org.onosproject.net.Host;
 import org.onosproject.net.HostId;
 import org.onosproject.net.Port;
+import org.onosproject.net.PortNumber;
 import org.onosproject.net.behaviour.BridgeConfig;
 import org.onosproject.net.behaviour.BridgeDescription;
 import org.onosproject.net.behaviour.InterfaceConfig;
@@ -64,7 +66,11 @@ import org.onosproject.net.provider.ProviderId;
 import org.onosproject.ovsdb.controller.OvsdbClientService;
 import org.onosproject.ovsdb.controller.OvsdbController;
 import org.opencord.cordvtn.api.core.CordVtnPipeline;
+import org.opencord.cordvtn.api.core.DesiredFlowRuleProvider;
+import org.opencord.cordvtn.api.core.FlowRuleBatch;
+import org.opencord.cordvtn.api.core.Instance;
 import org.opencord.cordvtn.api.core.InstanceService;
+import org.opencord.cordvtn.api.net.NetworkId;
 import org.opencord.cordvtn.api.node.CordVtnNode;
 import org.opencord.cordvtn.api.node.CordVtnNodeAdminService;
 import org.opencord.cordvtn.api.node.CordVtnNodeEvent;
@@ -101,6 +107,7 @@ public class DefaultCordVtnNodeHandlerTest extends CordVtnNodeTest {
 
     private static final ApplicationId TEST_APP_ID = new DefaultApplicationId(1, "test");
     private static final NodeId LOCAL_NODE_ID = new NodeId("local");
+    private static final NodeId REMOTE_NODE_ID = new NodeId("remote");
     private static final ControllerNode LOCAL_CTRL =
             new DefaultControllerNode(LOCAL_NODE_ID, IpAddress.valueOf("127.0.0.1"));
 
@@ -135,12 +142,16 @@ public class DefaultCordVtnNodeHandlerTest extends CordVtnNodeTest {
 
     private TestDeviceService deviceService;
     private TestNodeManager nodeManager;
+    private TestLeadershipService leadershipService;
+    private TestMastershipService mastershipService;
     private DefaultCordVtnNodeHandler target;
 
     @Before
     public void setUp() throws Exception {
         this.deviceService = new TestDeviceService();
         this.nodeManager = new TestNodeManager();
+        this.leadershipService = new TestLeadershipService();
+        this.mastershipService = new TestMastershipService();
 
         // add fake ovsdb device
         this.deviceService.devMap.put(OVSDB_DEVICE.id(), OVSDB_DEVICE);
@@ -181,8 +192,9 @@ public class DefaultCordVtnNodeHandlerTest extends CordVtnNodeTest {
 
         target = new DefaultCordVtnNodeHandler();
         target.coreService = new TestCoreService();
-        target.leadershipService = new TestLeadershipService();
+        target.leadershipService = this.leadershipService;
         target.clusterService = new TestClusterService();
+        target.mastershipService = this.mastershipService;
         target.configService = new TestConfigService();
         target.deviceService = this.deviceService;
         target.deviceAdminService = mockDeviceAdminService;
@@ -318,6 +330,46 @@ public class DefaultCordVtnNodeHandlerTest extends CordVtnNodeTest {
         assertEquals(ERR_STATE, PORT_CREATED, current.state());
     }
 
+    /**
+     * Checks if the node is not bootstrapped by a member which is not the
+     * master of the OVSDB device of the node, even if it is the leader.
+     */
+    @Test
+    public void testNodeIgnoredWithoutMastership() {
+        mastershipService.masters.put(OVSDB_DEVICE.id(), REMOTE_NODE_ID);
+
+        deviceService.addDevice(OF_DEVICE_1);
+        CordVtnNode current = nodeManager.node(NODE_1.integrationBridgeId());
+        assertEquals(ERR_STATE, INIT, current.state());
+    }
+
+    /**
+     * Checks if the node is bootstrapped by the master of the OVSDB device
+     * of the node, even if it is not the leader.
+     */
+    @Test
+    public void testNodeHandledByMaster() {
+        mastershipService.masters.put(OVSDB_DEVICE.id(), LOCAL_NODE_ID);
+        leadershipService.leader = REMOTE_NODE_ID;
+
+        deviceService.addDevice(OF_DEVICE_1);
+        CordVtnNode current = nodeManager.node(NODE_1.integrationBridgeId());
+        assertEquals(ERR_STATE, DEVICE_CREATED, current.state());
+    }
+
+    /**
+     * Checks if the node without the master of the OVSDB device is not
+     * bootstrapped by a member which is not the leader.
+     */
+    @Test
+    public void testNodeIgnoredWithoutMasterAndLeadership() {
+        leadershipService.leader = REMOTE_NODE_ID;
+
+        deviceService.addDevice(OF_DEVICE_1);
+        CordVtnNode current = nodeManager.node(NODE_1.integrationBridgeId());
+        assertEquals(ERR_STATE, INIT, current.state());
+    }
+
     private static final class TestDevice extends DefaultDevice {
         InterfaceConfig mockInterfaceConfig = createMock(InterfaceConfig.class);
         BridgeConfig mockBridgeConfig = createMock(BridgeConfig.class);
@@ -379,10 +431,20 @@ public class DefaultCordVtnNodeHandlerTest extends CordVtnNodeTest {
     }
 
     private static class TestLeadershipService extends LeadershipServiceAdapter {
+        NodeId leader = LOCAL_NODE_ID;
 
         @Override
         public NodeId getLeader(String path) {
-            return LOCAL_NODE_ID;
+            return leader;
+        }
+    }
+
+    private static class TestMastershipService extends MastershipServiceAdapter {
+        Map<DeviceId, NodeId> masters = Maps.newHashMap();
+
+        @Override
+        public NodeId getMasterFor(DeviceId deviceId) {
+            return masters.get(deviceId);
         }
     }
 
@@ -521,6 +583,16 @@ public class DefaultCordVtnNodeHandlerTest extends CordVtnNodeTest {
 
     private static class TestInstanceService implements InstanceService {
 
+        @Override
+        public Set<Instance> instances(NetworkId netId) {
+            return ImmutableSet.of();
+        }
+
+        @Override
+        public Set<Instance> instances(DeviceId deviceId) {
+            return ImmutableSet.of();
+        }
+
         @Override
         public void addInstance(ConnectPoint connectPoint) {
 
@@ -558,6 +630,31 @@ public class DefaultCordVtnNodeHandlerTest extends CordVtnNodeTest {
         public void processFlowRule(boolean install, FlowRule rule) {
 
         }
+
+        @Override
+        public void processFlowRules(FlowRuleBatch batch) {
+
+        }
+
+        @Override
+        public Set<FlowRule> flowRules(DeviceId deviceId, int tableId, PortNumber output) {
+            return ImmutableSet.of();
+        }
+
+        @Override
+        public void reconcile(CordVtnNode node) {
+
+        }
+
+        @Override
+        public void addFlowRuleProvider(DesiredFlowRuleProvider provider) {
+
+        }
+
+        @Override
+        public void removeFlowRuleProvider(DesiredFlowRuleProvider provider) {
+
+        }
     }
 
     public class TestEventDispatcher extends DefaultEventSinkRegistry
@@ -0,0 +1,282 @@
+/*
+ * Copyright 2017-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.opencord.cordvtn.impl;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.onlab.junit.TestUtils;
+import org.onlab.packet.Ethernet;
+import org.onlab.packet.IpPrefix;
+import org.onosproject.core.ApplicationId;
+import org.onosproject.core.DefaultApplicationId;
+import org.onosproject.net.Device;
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.PortNumber;
+import org.onosproject.net.flow.DefaultFlowEntry;
+import org.onosproject.net.flow.DefaultFlowRule;
+import org.onosproject.net.flow.DefaultTrafficSelector;
+import org.onosproject.net.flow.DefaultTrafficTreatment;
+import org.onosproject.net.flow.FlowEntry;
+import org.onosproject.net.flow.FlowRule;
+import org.onosproject.net.flow.FlowRuleOperation;
+import org.onosproject.net.flow.FlowRuleOperations;
+import org.onosproject.net.flow.FlowRuleServiceAdapter;
+import org.opencord.cordvtn.api.core.FlowRuleBatch;
+
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.onosproject.net.flow.FlowEntry.FlowEntryState.ADDED;
+import static org.onosproject.net.flow.FlowRuleOperation.Type.ADD;
+import static org.onosproject.net.flow.FlowRuleOperation.Type.REMOVE;
+import static org.opencord.cordvtn.api.core.CordVtnPipeline.PRIORITY_DEFAULT;
+import static org.opencord.cordvtn.api.core.CordVtnPipeline.TABLE_DST;
+import static org.opencord.cordvtn.api.node.CordVtnNodeState.COMPLETE;
+
+/**
+ * Unit test of the flow rule processing of {@link DefaultCordVtnPipeline}.
+ */
+public class DefaultCordVtnPipelineTest extends CordVtnNodeTest {
+
+    private static final ApplicationId APP_ID = new DefaultApplicationId(1, "test");
+    private static final Device OF_DEVICE_1 = createDevice(1);
+    private static final DeviceId DEVICE_1 = OF_DEVICE_1.id();
+    private static final PortNumber PORT_1 = PortNumber.portNumber(1);
+    private static final PortNumber PORT_2 = PortNumber.portNumber(2);
+    private static final int COALESCE_WINDOW = 10;
+
+    private final BlockingQueue<FlowRuleOperations> applied = new LinkedBlockingQueue<>();
+    private final List<FlowEntry> flowEntries = Lists.newArrayList();
+    private DefaultCordVtnPipeline pipeline;
+
+    @Before
+    public void setUp() {
+        pipeline = new DefaultCordVtnPipeline();
+        pipeline.flowRuleService = new TestFlowRuleService();
+        pipeline.nodePortService = (deviceId, portName) -> PORT_1;
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        ScheduledExecutorService flushExecutor = TestUtils.getField(pipeline, "flushExecutor");
+        flushExecutor.shutdownNow();
+    }
+
+    @Test
+    public void testAddThenRemoveImmediate() throws Exception {
+        testAddThenRemove(0);
+    }
+
+    @Test
+    public void testAddThenRemoveCoalesced() throws Exception {
+        testAddThenRemove(COALESCE_WINDOW);
+    }
+
+    @Test
+    public void testRemoveThenAddImmediate() throws Exception {
+        testRemoveThenAdd(0);
+    }
+
+    @Test
+    public void testRemoveThenAddCoalesced() throws Exception {
+        testRemoveThenAdd(COALESCE_WINDOW);
+    }
+
+    @Test
+    public void testLastTreatmentWins() throws Exception {
+        TestUtils.setField(pipeline, "flowCoalesceWindow", 0);
+        pipeline.processFlowRules(FlowRuleBatch.builder()
+                .add(createRule(PORT_1))
+                .add(createRule(PORT_2))
+                .build());
+
+        List<FlowRuleOperation> ops = operations(nextApplied());
+        assertEquals(1, ops.size());
+        assertEquals(ADD, ops.get(0).type());
+        assertTrue(pipeline.flowRules(DEVICE_1, TABLE_DST, PORT_1).isEmpty());
+        assertEquals(1, pipeline.flowRules(DEVICE_1, TABLE_DST, PORT_2).size());
+    }
+
+    @Test
+    public void testDisableWindowWithPendingOperations() throws Exception {
+        // long enough not to flush the pending operations during the test
+        TestUtils.setField(pipeline, "flowCoalesceWindow", 60000);
+        FlowRule rule = createRule(PORT_1);
+        pipeline.processFlowRule(true, rule);
+        assertNull(applied.poll());
+
+        TestUtils.setField(pipeline, "flowCoalesceWindow", 0);
+        pipeline.processFlowRule(false, rule);
+
+        List<FlowRuleOperation> ops = operations(nextApplied());
+        assertEquals(1, ops.size());
+        assertEquals(REMOVE, ops.get(0).type());
+        assertTrue(pipeline.flowRules(DEVICE_1, TABLE_DST, PORT_1).isEmpty());
+        assertNull(applied.poll());
+    }
+
+    @Test
+    public void testProcessAfterDeactivate() throws Exception {
+        TestUtils.setField(pipeline, "flowCoalesceWindow", COALESCE_WINDOW);
+        ScheduledExecutorService flushExecutor = TestUtils.getField(pipeline, "flushExecutor");
+        flushExecutor.shutdown();
+
+        // applied immediately instead of being scheduled on the stopped executor
+        pipeline.processFlowRule(true, createRule(PORT_1));
+        List<FlowRuleOperation> ops = operations(nextApplied());
+        assertEquals(1, ops.size());
+        assertEquals(ADD, ops.get(0).type());
+    }
+
+    @Test
+    public void testIndexUpdatedOnEnqueue() throws Exception {
+        TestUtils.setField(pipeline, "flowCoalesceWindow", 60000);
+        FlowRule rule = createRule(PORT_1);
+        pipeline.processFlowRule(true, rule);
+        assertEquals(1, pipeline.flowRules(DEVICE_1, TABLE_DST, PORT_1).size());
+
+        pipeline.processFlowRules(FlowRuleBatch.builder()
+                .remove(rule)
+                .add(createRule(PORT_2))
+                .build());
+        assertTrue(pipeline.flowRules(DEVICE_1, TABLE_DST, PORT_1).isEmpty());
+        assertEquals(1, pipeline.flowRules(DEVICE_1, TABLE_DST, PORT_2).size());
+        assertNull(applied.poll());
+    }
+
+    @Test
+    public void testReconcile() throws Exception {
+        TestUtils.setField(pipeline, "appId", APP_ID);
+        TestUtils.setField(pipeline, "flowCoalesceWindow", 0);
+
+        FlowRule missing = createRule("10.0.0.1/32", PORT_1, PRIORITY_DEFAULT);
+        FlowRule updated = createRule("10.0.0.2/32", PORT_2, PRIORITY_DEFAULT);
+        FlowRule outdated = createRule("10.0.0.2/32", PORT_1, PRIORITY_DEFAULT);
+        FlowRule unchanged = createRule("10.0.0.3/32", PORT_1, PRIORITY_DEFAULT);
+        FlowRule stale = createRule("10.0.0.4/32", PORT_1, PRIORITY_DEFAULT);
+        FlowRule intercept = createRule("10.0.0.5/32", PORT_1, 40000);
+        pipeline.addFlowRuleProvider(deviceId -> ImmutableSet.of(missing, updated, unchanged));
+        flowEntries.add(new DefaultFlowEntry(outdated, ADDED, 0, 0, 0));
+        flowEntries.add(new DefaultFlowEntry(unchanged, ADDED, 0, 0, 0));
+        flowEntries.add(new DefaultFlowEntry(stale, ADDED, 0, 0, 0));
+        flowEntries.add(new DefaultFlowEntry(intercept, ADDED, 0, 0, 0));
+
+        pipeline.reconcile(createNode("node-01", OF_DEVICE_1, COMPLETE));
+
+        List<FlowRuleOperation> ops = operations(nextApplied());
+        assertTrue(hasOperation(ops, ADD, missing));
+        assertTrue(hasOperation(ops, ADD, updated));
+        assertTrue(hasOperation(ops, REMOVE, stale));
+        assertFalse(hasOperation(ops, REMOVE, updated));
+        assertFalse(ops.stream().anyMatch(op -> op.rule().equals(unchanged)));
+        assertFalse(ops.stream().anyMatch(op -> op.rule().equals(intercept)));
+        assertEquals(1, pipeline.flowRules(DEVICE_1, TABLE_DST, PORT_2).size());
+    }
+
+    private void testAddThenRemove(int window) throws Exception {
+        TestUtils.setField(pipeline, "flowCoalesceWindow", window);
+        FlowRule rule = createRule(PORT_1);
+        pipeline.processFlowRules(FlowRuleBatch.builder()
+                .add(rule)
+                .remove(rule)
+                .build());
+
+        List<FlowRuleOperation> ops = operations(nextApplied());
+        assertEquals(1, ops.size());
+        assertEquals(REMOVE, ops.get(0).type());
+        assertTrue(pipeline.flowRules(DEVICE_1, TABLE_DST, PORT_1).isEmpty());
+        assertNull(applied.poll());
+    }
+
+    private void testRemoveThenAdd(int window) throws Exception {
+        TestUtils.setField(pipeline, "flowCoalesceWindow", window);
+        FlowRule rule = createRule(PORT_1);
+        pipeline.processFlowRules(FlowRuleBatch.builder()
+                .remove(rule)
+                .add(rule)
+                .build());
+
+        List<FlowRuleOperation> ops = operations(nextApplied());
+        assertEquals(1, ops.size());
+        assertEquals(ADD, ops.get(0).type());
+        assertEquals(1, pipeline.flowRules(DEVICE_1, TABLE_DST, PORT_1).size());
+        assertNull(applied.poll());
+    }
+
+    private FlowRuleOperations nextApplied() throws InterruptedException {
+        FlowRuleOperations ops = applied.poll(1, SECONDS);
+        assertNotNull("Flow rules were not applied", ops);
+        return ops;
+    }
+
+    private static List<FlowRuleOperation> operations(FlowRuleOperations ops) {
+        List<FlowRuleOperation> result = Lists.newArrayList();
+        ops.stages().forEach(result::addAll);
+        return ImmutableList.copyOf(result);
+    }
+
+    private static boolean hasOperation(List<FlowRuleOperation> ops,
+                                        FlowRuleOperation.Type type, FlowRule rule) {
+        return ops.stream().anyMatch(op -> op.type() == type && op.rule().equals(rule) &&
+                op.rule().treatment().equals(rule.treatment()));
+    }
+
+    private static FlowRule createRule(PortNumber output) {
+        return createRule("10.0.0.1/32", output, PRIORITY_DEFAULT);
+    }
+
+    private static FlowRule createRule(String dstIp, PortNumber output, int priority) {
+        return DefaultFlowRule.builder()
+                .fromApp(APP_ID)
+                .withSelector(DefaultTrafficSelector.builder()
+                        .matchEthType(Ethernet.TYPE_IPV4)
+                        .matchIPDst(IpPrefix.valueOf(dstIp))
+                        .build())
+                .withTreatment(DefaultTrafficTreatment.builder()
+                        .setOutput(output)
+                        .build())
+                .withPriority(priority)
+                .forDevice(DEVICE_1)
+                .forTable(TABLE_DST)
+                .makePermanent()
+                .build();
+    }
+
+    private class TestFlowRuleService extends FlowRuleServiceAdapter {
+
+        @Override
+        public void apply(FlowRuleOperations ops) {
+            applied.add(ops);
+        }
+
+        @Override
+        public Iterable<FlowEntry> getFlowEntries(DeviceId deviceId) {
+            return ImmutableList.copyOf(flowEntries);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2017-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.opencord.cordvtn.impl;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.onlab.packet.Ethernet;
+import org.onlab.packet.IpPrefix;
+import org.onosproject.core.ApplicationId;
+import org.onosproject.core.DefaultApplicationId;
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.PortNumber;
+import org.onosproject.net.flow.DefaultFlowRule;
+import org.onosproject.net.flow.DefaultTrafficSelector;
+import org.onosproject.net.flow.DefaultTrafficTreatment;
+import org.onosproject.net.flow.FlowRule;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.opencord.cordvtn.api.core.CordVtnPipeline.TABLE_ACCESS;
+import static org.opencord.cordvtn.api.core.CordVtnPipeline.TABLE_DST;
+
+/**
+ * Unit test of {@link FlowRuleIndex}.
+ */
+public class FlowRuleIndexTest {
+
+    private static final ApplicationId APP_ID = new DefaultApplicationId(1, "test");
+    private static final DeviceId DEVICE_1 = DeviceId.deviceId("of:0000000000000001");
+    private static final DeviceId DEVICE_2 = DeviceId.deviceId("of:0000000000000002");
+    private static final PortNumber PORT_1 = PortNumber.portNumber(1);
+    private static final PortNumber PORT_2 = PortNumber.portNumber(2);
+
+    private FlowRuleIndex index;
+
+    @Before
+    public void setUp() {
+        index = new FlowRuleIndex();
+    }
+
+    @Test
+    public void testAddAndQuery() {
+        FlowRule rule1 = createRule(DEVICE_1, TABLE_DST, "10.0.0.1/32", PORT_1);
+        FlowRule rule2 = createRule(DEVICE_1, TABLE_DST, "10.0.0.2/32", PORT_1);
+        FlowRule rule3 = createRule(DEVICE_2, TABLE_DST, "10.0.0.1/32", PORT_1);
+        FlowRule rule4 = createRule(DEVICE_1, TABLE_ACCESS, "10.0.0.1/32", PORT_1);
+        index.add(rule1);
+        index.add(rule2);
+        index.add(rule3);
+        index.add(rule4);
+
+        assertEquals(2, index.flowRules(DEVICE_1, TABLE_DST, PORT_1).size());
+        assertEquals(1, index.flowRules(DEVICE_2, TABLE_DST, PORT_1).size());
+        assertEquals(1, index.flowRules(DEVICE_1, TABLE_ACCESS, PORT_1).size());
+        assertTrue(index.flowRules(DEVICE_1, TABLE_DST, PORT_2).isEmpty());
+    }
+
+    @Test
+    public void testReplace() {
+        index.add(createRule(DEVICE_1, TABLE_DST, "10.0.0.1/32", PORT_1));
+        index.add(createRule(DEVICE_1, TABLE_DST, "10.0.0.1/32", PORT_2));
+
+        assertTrue(index.flowRules(DEVICE_1, TABLE_DST, PORT_1).isEmpty());
+        assertEquals(1, index.flowRules(DEVICE_1, TABLE_DST, PORT_2).size());
+    }
+
+    @Test
+    public void testRemove() {
+        FlowRule rule = createRule(DEVICE_1, TABLE_DST, "10.0.0.1/32", PORT_1);
+        index.add(rule);
+        index.remove(rule);
+
+        assertTrue(index.flowRules(DEVICE_1, TABLE_DST, PORT_1).isEmpty());
+    }
+
+    private FlowRule createRule(DeviceId deviceId, int tableId, String dstIp,
+                                PortNumber output) {
+        return DefaultFlowRule.builder()
+                .fromApp(APP_ID)
+                .withSelector(DefaultTrafficSelector.builder()
+                        .matchEthType(Ethernet.TYPE_IPV4)
+                        .matchIPDst(IpPrefix.valueOf(dstIp))
+                        .build())
+                .withTreatment(DefaultTrafficTreatment.builder()
+                        .setOutput(output)
+                        .build())
+                .withPriority(5000)
+                .forDevice(deviceId)
+                .forTable(tableId)
+                .makePermanent()
+                .build();
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2017-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.opencord.cordvtn.impl;
+
+import com.google.common.collect.ImmutableSet;
+import org.junit.Before;
+import org.junit.Test;
+import org.onlab.junit.TestUtils;
+import org.onlab.packet.IpAddress;
+import org.onlab.packet.MacAddress;
+import org.onlab.packet.VlanId;
+import org.onosproject.net.DefaultAnnotations;
+import org.onosproject.net.DefaultHost;
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.Host;
+import org.onosproject.net.HostId;
+import org.onosproject.net.HostLocation;
+import org.onosproject.net.PortNumber;
+import org.onosproject.net.host.HostEvent;
+import org.onosproject.net.host.HostListener;
+import org.onosproject.net.provider.ProviderId;
+import org.opencord.cordvtn.api.core.Instance;
+import org.opencord.cordvtn.api.net.NetworkId;
+
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.onosproject.net.host.HostEvent.Type.HOST_ADDED;
+import static org.onosproject.net.host.HostEvent.Type.HOST_MOVED;
+import static org.onosproject.net.host.HostEvent.Type.HOST_REMOVED;
+import static org.onosproject.net.host.HostEvent.Type.HOST_UPDATED;
+import static org.opencord.cordvtn.api.net.ServiceNetwork.NetworkType.PRIVATE;
+
+/**
+ * Unit test of the instance index of {@link InstanceManager}.
+ */
+public class InstanceManagerTest {
+
+    private static final ProviderId PROVIDER_ID = new ProviderId("host", "test");
+    private static final DeviceId DEVICE_1 = DeviceId.deviceId("of:0000000000000001");
+    private static final DeviceId DEVICE_2 = DeviceId.deviceId("of:0000000000000002");
+    private static final NetworkId NET_1 = NetworkId.of("net-1");
+    private static final NetworkId NET_2 = NetworkId.of("net-2");
+    private static final MacAddress MAC_1 = MacAddress.valueOf("02:00:00:00:00:01");
+    private static final MacAddress MAC_2 = MacAddress.valueOf("02:00:00:00:00:02");
+
+    private InstanceManager manager;
+    private HostListener listener;
+
+    @Before
+    public void setUp() throws Exception {
+        manager = new InstanceManager();
+        listener = TestUtils.getField(manager, "hostListener");
+    }
+
+    @Test
+    public void testAddAndRemove() {
+        Host host1 = createHost(MAC_1, DEVICE_1, NET_1);
+        Host host2 = createHost(MAC_2, DEVICE_1, NET_2);
+        listener.event(new HostEvent(HOST_ADDED, host1));
+        listener.event(new HostEvent(HOST_ADDED, host2));
+
+        assertEquals(ImmutableSet.of(host1.id()), hostIds(manager.instances(NET_1)));
+        assertEquals(ImmutableSet.of(host2.id()), hostIds(manager.instances(NET_2)));
+        assertEquals(2, manager.instances(DEVICE_1).size());
+
+        listener.event(new HostEvent(HOST_REMOVED, host1));
+        assertTrue(manager.instances(NET_1).isEmpty());
+        assertEquals(1, manager.instances(DEVICE_1).size());
+    }
+
+    @Test
+    public void testHostMoved() {
+        Host host = createHost(MAC_1, DEVICE_1, NET_1);
+        Host moved = createHost(MAC_1, DEVICE_2, NET_1);
+        listener.event(new HostEvent(HOST_ADDED, host));
+        listener.event(new HostEvent(HOST_MOVED, moved, host));
+
+        assertTrue(manager.instances(DEVICE_1).isEmpty());
+        assertEquals(ImmutableSet.of(moved.id()), hostIds(manager.instances(DEVICE_2)));
+        assertEquals(DEVICE_2, manager.instances(NET_1).iterator().next().deviceId());
+    }
+
+    @Test
+    public void testNetworkChanged() {
+        Host host = createHost(MAC_1, DEVICE_1, NET_1);
+        Host updated = createHost(MAC_1, DEVICE_1, NET_2);
+        listener.event(new HostEvent(HOST_ADDED, host));
+        listener.event(new HostEvent(HOST_UPDATED, updated, host));
+
+        assertTrue(manager.instances(NET_1).isEmpty());
+        assertEquals(1, manager.instances(NET_2).size());
+    }
+
+    @Test
+    public void testNetworkIdDropped() {
+        Host host = createHost(MAC_1, DEVICE_1, NET_1);
+        Host updated = new DefaultHost(
+                PROVIDER_ID, host.id(), host.mac(), host.vlan(), host.location(),
+                host.ipAddresses());
+        listener.event(new HostEvent(HOST_ADDED, host));
+        listener.event(new HostEvent(HOST_UPDATED, updated, host));
+
+        assertTrue(manager.instances(NET_1).isEmpty());
+        assertTrue(manager.instances(DEVICE_1).isEmpty());
+    }
+
+    @Test
+    public void testRemoveMissedUpdate() {
+        // the update with the new location was missed, the removal event
+        // carries the latest state
+        Host host = createHost(MAC_1, DEVICE_1, NET_1);
+        listener.event(new HostEvent(HOST_ADDED, host));
+        listener.event(new HostEvent(HOST_REMOVED, createHost(MAC_1, DEVICE_2, NET_1)));
+
+        assertTrue(manager.instances(NET_1).isEmpty());
+        assertTrue(manager.instances(DEVICE_1).isEmpty());
+        assertTrue(manager.instances(DEVICE_2).isEmpty());
+    }
+
+    private static Set<HostId> hostIds(Set<Instance> instances) {
+        return instances.stream()
+                .map(instance -> instance.host().id())
+                .collect(Collectors.toSet());
+    }
+
+    private static Host createHost(MacAddress mac, DeviceId deviceId, NetworkId netId) {
+        DefaultAnnotations annotations = DefaultAnnotations.builder()
+                .set(Instance.NETWORK_TYPE, PRIVATE.name())
+                .set(Instance.NETWORK_ID, netId.id())
+                .set(Instance.PORT_ID, "port-" + mac)
+                .set(Instance.CREATE_TIME, "0")
+                .build();
+        return new DefaultHost(
+                PROVIDER_ID,
+                HostId.hostId(mac),
+                mac,
+                VlanId.NONE,
+                new HostLocation(deviceId, PortNumber.portNumber(1), 0L),
+                ImmutableSet.of(IpAddress.valueOf("10.0.0.2")),
+                annotations);
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2017-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.opencord.cordvtn.impl;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.opencord.cordvtn.impl.MonitoredExecutor.newMonitoredExecutor;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Unit test of {@link MonitoredExecutor}.
+ */
+public class MonitoredExecutorTest {
+
+    private static final long TIMEOUT_SEC = 5;
+
+    private final Logger log = getLogger(getClass());
+    private final List<String> executed = new CopyOnWriteArrayList<>();
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private MonitoredExecutor executor;
+
+    @Before
+    public void setUp() {
+        executor = newMonitoredExecutor("cordvtn-test", "executor", 1, log);
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        executor.shutdownNow();
+    }
+
+    /**
+     * Tests if the pending task of a key is replaced by the newer task.
+     */
+    @Test
+    public void testCoalesceByKey() throws InterruptedException {
+        blockWorker();
+        executor.execute("key", () -> executed.add("first"));
+        executor.execute("key", () -> executed.add("second"));
+        assertEquals(1, executor.coalescedCount());
+
+        release.countDown();
+        drain();
+        assertEquals(1, executed.size());
+        assertEquals("second", executed.get(0));
+    }
+
+    /**
+     * Tests if the caller waits for a free slot when the queue is full and
+     * no task is lost.
+     */
+    @Test
+    public void testWaitWhenQueueFull() throws InterruptedException {
+        blockWorker();
+        executor.execute(() -> executed.add("queued"));
+
+        Thread caller = new Thread(() -> executor.execute(() -> executed.add("waited")));
+        caller.start();
+        caller.join(100);
+        assertTrue(caller.isAlive());
+        assertEquals(1, executor.rejectedCount());
+
+        release.countDown();
+        caller.join(TimeUnit.SECONDS.toMillis(TIMEOUT_SEC));
+        assertFalse(caller.isAlive());
+        drain();
+        assertEquals(2, executed.size());
+        assertEquals("queued", executed.get(0));
+        assertEquals("waited", executed.get(1));
+    }
+
+    /**
+     * Tests if a task submitted by the worker to the full queue runs in
+     * place instead of waiting for the worker itself.
+     */
+    @Test
+    public void testRunInPlaceFromWorker() throws InterruptedException {
+        executor.execute(() -> {
+            executor.execute(() -> executed.add("queued"));
+            executor.execute(() -> executed.add("in place"));
+        });
+        drain();
+        assertEquals(2, executed.size());
+        assertEquals("in place", executed.get(0));
+        assertEquals("queued", executed.get(1));
+        assertEquals(1, executor.rejectedCount());
+    }
+
+    /**
+     * Tests if a shut down executor rejects the tasks without counting them
+     * and is removed from the executor list.
+     */
+    @Test
+    public void testShutdown() {
+        assertTrue(MonitoredExecutor.executors().contains(executor));
+        executor.shutdown();
+        assertFalse(MonitoredExecutor.executors().contains(executor));
+
+        try {
+            executor.execute(() -> executed.add("rejected"));
+        } catch (RejectedExecutionException e) {
+            assertEquals(0, executor.rejectedCount());
+            return;
+        }
+        throw new AssertionError("Task is accepted after shutdown");
+    }
+
+    private void blockWorker() throws InterruptedException {
+        executor.execute(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(started.await(TIMEOUT_SEC, TimeUnit.SECONDS));
+    }
+
+    private void drain() throws InterruptedException {
+        CountDownLatch drained = new CountDownLatch(1);
+        executor.execute(drained::countDown);
+        assertTrue(drained.await(TIMEOUT_SEC, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2017-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.opencord.cordvtn.impl;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.onlab.packet.MacAddress;
+import org.onosproject.net.DeviceId;
+import org.opencord.cordvtn.api.core.PacketDropStats;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test of {@link PacketRateLimiter}.
+ */
+public class PacketRateLimiterTest {
+
+    private static final DeviceId DEVICE_1 = DeviceId.deviceId("of:0000000000000001");
+    private static final MacAddress MAC_1 = MacAddress.valueOf("00:00:00:00:00:01");
+    private static final MacAddress MAC_2 = MacAddress.valueOf("00:00:00:00:00:02");
+    private static final int RATE = 10;
+    private static final int WINDOW = 100;
+
+    private final AtomicLong clock = new AtomicLong(1000);
+    private PacketRateLimiter limiter;
+
+    @Before
+    public void setUp() {
+        limiter = PacketRateLimiter.newPacketRateLimiter("test", clock::get);
+        limiter.setRate(RATE);
+        limiter.setDuplicateWindow(0);
+    }
+
+    @After
+    public void tearDown() {
+        limiter.close();
+    }
+
+    @Test
+    public void testBurstAndRefill() {
+        for (int i = 0; i < RATE; i++) {
+            assertTrue(limiter.tryAcquire(DEVICE_1, MAC_1, i));
+        }
+        assertFalse(limiter.tryAcquire(DEVICE_1, MAC_1, RATE));
+
+        // a token is refilled every 1000 / RATE milliseconds
+        clock.addAndGet(1000 / RATE);
+        assertTrue(limiter.tryAcquire(DEVICE_1, MAC_1, RATE));
+        assertFalse(limiter.tryAcquire(DEVICE_1, MAC_1, RATE + 1));
+
+        // the other sources have their own buckets
+        assertTrue(limiter.tryAcquire(DEVICE_1, MAC_2, 0));
+    }
+
+    @Test
+    public void testDropsDoNotDelayRefill() {
+        for (int i = 0; i < RATE; i++) {
+            assertTrue(limiter.tryAcquire(DEVICE_1, MAC_1, i));
+        }
+        // keep flooding in a shorter interval than the refill
+        for (int i = 0; i < 9; i++) {
+            clock.addAndGet(1000 / RATE / 10);
+            assertFalse(limiter.tryAcquire(DEVICE_1, MAC_1, i));
+        }
+        clock.addAndGet(1000 / RATE / 10);
+        assertTrue(limiter.tryAcquire(DEVICE_1, MAC_1, RATE));
+    }
+
+    @Test
+    public void testDisabledRate() {
+        limiter.setRate(0);
+        for (int i = 0; i < RATE * 10; i++) {
+            assertTrue(limiter.tryAcquire(DEVICE_1, MAC_1, i));
+        }
+    }
+
+    @Test
+    public void testDuplicateWindow() {
+        limiter.setDuplicateWindow(WINDOW);
+
+        assertTrue(limiter.tryAcquire(DEVICE_1, MAC_1, 1L));
+        assertFalse(limiter.tryAcquire(DEVICE_1, MAC_1, 1L));
+        assertTrue(limiter.tryAcquire(DEVICE_1, MAC_1, 2L));
+        assertTrue(limiter.tryAcquire(DEVICE_1, MAC_2, 1L));
+
+        clock.addAndGet(WINDOW);
+        assertTrue(limiter.tryAcquire(DEVICE_1, MAC_1, 1L));
+    }
+
+    @Test
+    public void testDuplicatesDoNotExtendWindow() {
+        limiter.setDuplicateWindow(WINDOW);
+
+        assertTrue(limiter.tryAcquire(DEVICE_1, MAC_1, 1L));
+        clock.addAndGet(WINDOW / 2);
+        assertFalse(limiter.tryAcquire(DEVICE_1, MAC_1, 1L));
+        clock.addAndGet(WINDOW / 2);
+        assertTrue(limiter.tryAcquire(DEVICE_1, MAC_1, 1L));
+    }
+
+    @Test
+    public void testRateLimitedPacketIsNotDuplicate() {
+        // longer than the refill interval
+        limiter.setDuplicateWindow(WINDOW * 10);
+        for (int i = 0; i < RATE; i++) {
+            assertTrue(limiter.tryAcquire(DEVICE_1, MAC_1, i));
+        }
+        assertFalse(limiter.tryAcquire(DEVICE_1, MAC_1, RATE));
+
+        // the retry is handled once a token is refilled
+        clock.addAndGet(1000 / RATE);
+        assertTrue(limiter.tryAcquire(DEVICE_1, MAC_1, RATE));
+    }
+
+    @Test
+    public void testStats() {
+        limiter.setDuplicateWindow(WINDOW);
+        for (int i = 0; i < RATE; i++) {
+            limiter.tryAcquire(DEVICE_1, MAC_1, i);
+        }
+        limiter.tryAcquire(DEVICE_1, MAC_1, 0);
+        limiter.tryAcquire(DEVICE_1, MAC_1, RATE);
+
+        PacketDropStats stats = limiter.stats();
+        assertEquals("test", stats.name());
+        assertEquals(1, stats.rateLimited());
+        assertEquals(1, stats.duplicated());
+        assertEquals(Long.valueOf(2), stats.drops().get(DEVICE_1 + "/" + MAC_1));
+        assertTrue(PacketRateLimiter.limiters().contains(limiter));
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2017-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.opencord.cordvtn.impl;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import org.junit.Before;
+import org.junit.Test;
+import org.opencord.cordvtn.api.net.NetworkId;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.opencord.cordvtn.api.net.ServiceNetwork.DependencyType.BIDIRECTIONAL;
+import static org.opencord.cordvtn.api.net.ServiceNetwork.DependencyType.UNIDIRECTIONAL;
+
+/**
+ * Unit test of {@link ServiceDependencyGraph}.
+ */
+public class ServiceDependencyGraphTest {
+
+    private static final NetworkId NET_1 = NetworkId.of("net-1");
+    private static final NetworkId NET_2 = NetworkId.of("net-2");
+    private static final NetworkId NET_3 = NetworkId.of("net-3");
+
+    private ServiceDependencyGraph graph;
+
+    @Before
+    public void setUp() {
+        graph = new ServiceDependencyGraph();
+    }
+
+    @Test
+    public void testAddAndRemoveDependency() {
+        graph.addDependency(NET_1, NET_2, BIDIRECTIONAL);
+
+        assertEquals(ImmutableMap.of(NET_2, BIDIRECTIONAL), graph.providers(NET_1));
+        assertEquals(ImmutableMap.of(NET_1, BIDIRECTIONAL), graph.subscribers(NET_2));
+
+        graph.removeDependency(NET_1, NET_2);
+
+        assertTrue(graph.providers(NET_1).isEmpty());
+        assertTrue(graph.subscribers(NET_2).isEmpty());
+    }
+
+    @Test
+    public void testUpdateProviders() {
+        graph.addDependency(NET_1, NET_2, UNIDIRECTIONAL);
+        graph.updateProviders(NET_1, ImmutableMap.of(NET_3, BIDIRECTIONAL));
+
+        assertEquals(ImmutableMap.of(NET_3, BIDIRECTIONAL), graph.providers(NET_1));
+        assertTrue(graph.subscribers(NET_2).isEmpty());
+        assertEquals(ImmutableMap.of(NET_1, BIDIRECTIONAL), graph.subscribers(NET_3));
+    }
+
+    @Test
+    public void testRemoveNetwork() {
+        graph.addDependency(NET_1, NET_2, UNIDIRECTIONAL);
+        graph.addDependency(NET_2, NET_3, UNIDIRECTIONAL);
+        graph.removeNetwork(NET_2);
+
+        assertTrue(graph.providers(NET_1).isEmpty());
+        assertTrue(graph.subscribers(NET_3).isEmpty());
+    }
+
+    @Test
+    public void testTransitiveProviders() {
+        graph.addDependency(NET_1, NET_2, UNIDIRECTIONAL);
+        graph.addDependency(NET_2, NET_3, UNIDIRECTIONAL);
+        graph.addDependency(NET_3, NET_1, UNIDIRECTIONAL);
+
+        assertEquals(ImmutableSet.of(NET_2, NET_3), graph.transitiveProviders(NET_1));
+        assertEquals(ImmutableSet.of(NET_3, NET_1), graph.transitiveProviders(NET_2));
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright 2017-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.opencord.cordvtn.impl;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import org.junit.Before;
+import org.junit.Test;
+import org.onosproject.store.service.AsyncConsistentMap;
+import org.onosproject.store.service.AtomicCounter;
+import org.onosproject.store.service.Versioned;
+import org.opencord.cordvtn.api.core.ServiceNetworkChange;
+import org.opencord.cordvtn.api.net.NetworkId;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.easymock.EasyMock.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.opencord.cordvtn.api.core.ServiceNetworkChange.networkChange;
+import static org.opencord.cordvtn.api.core.ServiceNetworkChange.tombstone;
+import static org.opencord.cordvtn.api.core.ServiceNetworkEvent.Type.SERVICE_NETWORK_CREATED;
+
+/**
+ * Unit test of {@link ServiceNetworkChangelog}.
+ */
+public class ServiceNetworkChangelogTest {
+
+    private static final long MAX_CHANGES = 3;
+    private static final long LOST_CHANGE_TIMEOUT = 1000;
+
+    private final Map<Long, Versioned<ServiceNetworkChange>> entries = Maps.newConcurrentMap();
+    private final AtomicLong counter = new AtomicLong();
+    private final AtomicLong clock = new AtomicLong();
+
+    private ServiceNetworkChangelog changelog;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        AsyncConsistentMap<Long, ServiceNetworkChange> changes =
+                createMock(AsyncConsistentMap.class);
+        expect(changes.get(anyObject())).andAnswer(() -> CompletableFuture
+                .completedFuture(entries.get(getCurrentArguments()[0]))).anyTimes();
+        expect(changes.putIfAbsent(anyObject(), anyObject())).andAnswer(() -> {
+            Long version = (Long) getCurrentArguments()[0];
+            ServiceNetworkChange change = (ServiceNetworkChange) getCurrentArguments()[1];
+            return CompletableFuture.completedFuture(
+                    entries.putIfAbsent(version, new Versioned<>(change, version)));
+        }).anyTimes();
+        expect(changes.remove(anyObject())).andAnswer(() -> CompletableFuture
+                .completedFuture(entries.remove(getCurrentArguments()[0]))).anyTimes();
+        replay(changes);
+
+        AtomicCounter changelogVersion = createMock(AtomicCounter.class);
+        expect(changelogVersion.incrementAndGet()).andAnswer(counter::incrementAndGet).anyTimes();
+        expect(changelogVersion.get()).andAnswer(counter::get).anyTimes();
+        replay(changelogVersion);
+
+        changelog = new ServiceNetworkChangelog(changes, changelogVersion, MAX_CHANGES,
+                                                LOST_CHANGE_TIMEOUT, clock::get);
+    }
+
+    /**
+     * Tests if the changes after the supplied version are returned in order.
+     */
+    @Test
+    public void testChanges() {
+        record("net-1");
+        record("net-2");
+        record("net-3");
+
+        assertEquals(3, changelog.version());
+        assertEquals(versions(1, 2, 3), versions(changelog.changes(0)));
+        assertEquals(versions(3), versions(changelog.changes(2)));
+        assertTrue(changelog.changes(3).isEmpty());
+    }
+
+    /**
+     * Tests if a version above the latest version is rejected.
+     */
+    @Test(expected = IllegalStateException.class)
+    public void testSinceAboveLatest() {
+        record("net-1");
+        changelog.changes(2);
+    }
+
+    /**
+     * Tests if the changes no longer retained are rejected and removed.
+     */
+    @Test
+    public void testTrimmed() {
+        for (int i = 0; i < 5; i++) {
+            record("net-" + i);
+        }
+        assertFalse(entries.containsKey(1L));
+        assertFalse(entries.containsKey(2L));
+        assertEquals(versions(3, 4, 5), versions(changelog.changes(2)));
+        try {
+            changelog.changes(1);
+        } catch (IllegalStateException e) {
+            return;
+        }
+        throw new AssertionError("Trimmed changes are returned");
+    }
+
+    /**
+     * Tests if the readers stop at a missing version until it has been
+     * missing for the timeout, and then move past it with a tombstone.
+     */
+    @Test
+    public void testLostVersionSkipped() {
+        record("net-1");
+        // the writer of version 2 fails after taking the version
+        counter.incrementAndGet();
+        record("net-3");
+
+        assertEquals(versions(1), versions(changelog.changes(0)));
+        clock.addAndGet(LOST_CHANGE_TIMEOUT - 1);
+        assertEquals(versions(1), versions(changelog.changes(0)));
+
+        clock.addAndGet(1);
+        assertEquals(versions(1, 2, 3), versions(changelog.changes(0)));
+        assertTrue(entries.get(2L).value().isTombstone());
+        assertEquals(versions(2, 3), versions(changelog.changes(1)));
+    }
+
+    /**
+     * Tests if a reader moves past a lost latest version, not to read it
+     * again from the same version.
+     */
+    @Test
+    public void testTrailingLostVersion() {
+        record("net-1");
+        // the writer of version 2 fails after taking the version
+        counter.incrementAndGet();
+        assertTrue(changelog.changes(1).isEmpty());
+        clock.addAndGet(LOST_CHANGE_TIMEOUT);
+
+        List<ServiceNetworkChange> changes = changelog.changes(1);
+        assertEquals(versions(2), versions(changes));
+        assertTrue(changes.get(0).isTombstone());
+        assertTrue(changelog.changes(2).isEmpty());
+    }
+
+    /**
+     * Tests if the versions skipped by a writer are trimmed as well.
+     */
+    @Test
+    public void testSkippedVersionTrimmed() {
+        for (int i = 1; i <= 4; i++) {
+            record("net-" + i);
+        }
+        entries.put(5L, new Versioned<>(tombstone(5), 5));
+        assertEquals(6, record("net-5").version());
+        record("net-6");
+        record("net-7");
+
+        assertEquals(ImmutableSet.of(6L, 7L, 8L), entries.keySet());
+    }
+
+    /**
+     * Tests if a writer finding a tombstone at its version records the change
+     * with a new version.
+     */
+    @Test
+    public void testLateWriterTakesNewVersion() {
+        record("net-1");
+        entries.put(2L, new Versioned<>(tombstone(2), 2));
+
+        ServiceNetworkChange change = record("net-2");
+        assertEquals(3, change.version());
+        assertEquals(versions(1, 2, 3), versions(changelog.changes(0)));
+    }
+
+    private ServiceNetworkChange record(String netId) {
+        return changelog.record(version -> networkChange(
+                version, SERVICE_NETWORK_CREATED, NetworkId.of(netId), null));
+    }
+
+    private static List<Long> versions(long... versions) {
+        return LongStream.of(versions).boxed().collect(Collectors.toList());
+    }
+
+    private static List<Long> versions(List<ServiceNetworkChange> changes) {
+        return changes.stream()
+                .map(ServiceNetworkChange::version)
+                .collect(Collectors.toList());
+    }
+}
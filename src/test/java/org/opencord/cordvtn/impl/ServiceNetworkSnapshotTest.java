@@ -0,0 +1,244 @@
+/*
+ * Copyright 2017-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.opencord.cordvtn.impl;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.junit.Before;
+import org.junit.Test;
+import org.onlab.packet.IpAddress;
+import org.onlab.packet.MacAddress;
+import org.onosproject.store.service.Versioned;
+import org.opencord.cordvtn.api.net.NetworkId;
+import org.opencord.cordvtn.api.net.PortId;
+import org.opencord.cordvtn.api.net.ServicePort;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test of {@link ServiceNetworkSnapshot}.
+ */
+public class ServiceNetworkSnapshotTest {
+
+    private static final NetworkId NET_1 = NetworkId.of("net-1");
+    private static final NetworkId NET_2 = NetworkId.of("net-2");
+    private static final PortId PORT_ID_1 = PortId.of("port-1");
+    private static final MacAddress MAC_1 = MacAddress.valueOf("00:00:00:00:00:01");
+    private static final MacAddress MAC_2 = MacAddress.valueOf("00:00:00:00:00:02");
+    private static final MacAddress MAC_3 = MacAddress.valueOf("00:00:00:00:00:03");
+    private static final IpAddress IP_1 = IpAddress.valueOf("10.0.0.1");
+    private static final IpAddress IP_2 = IpAddress.valueOf("10.0.0.2");
+
+    private static final ServicePort PORT_1 = DefaultServicePort.builder()
+            .id(PORT_ID_1)
+            .networkId(NET_1)
+            .name("tap-1")
+            .mac(MAC_1)
+            .build();
+    private static final ServicePort PORT_1_UPDATED = DefaultServicePort.builder()
+            .id(PORT_ID_1)
+            .networkId(NET_1)
+            .name("tap-1")
+            .mac(MAC_2)
+            .build();
+    private static final ServicePort PORT_2 = DefaultServicePort.builder()
+            .id(PortId.of("port-2"))
+            .networkId(NET_1)
+            .name("tap-2")
+            .mac(MAC_3)
+            .build();
+
+    private static final ServicePort NET_1_PORT = DefaultServicePort.builder()
+            .id(PortId.of("net-1-port"))
+            .networkId(NET_1)
+            .ip(IP_1)
+            .build();
+    private static final ServicePort NET_2_PORT = DefaultServicePort.builder()
+            .id(PortId.of("net-2-port"))
+            .networkId(NET_2)
+            .ip(IP_1)
+            .build();
+    private static final ServicePort NET_2_PORT_UPDATED = DefaultServicePort.builder()
+            .id(PortId.of("net-2-port"))
+            .networkId(NET_2)
+            .ip(IP_2)
+            .build();
+
+    private static final long TOMBSTONE_TIMEOUT = 1000;
+
+    private final AtomicLong clock = new AtomicLong();
+    private ServiceNetworkSnapshot snapshot;
+
+    @Before
+    public void setUp() {
+        snapshot = new ServiceNetworkSnapshot(TOMBSTONE_TIMEOUT, clock::get);
+    }
+
+    @Test
+    public void testPortIndexes() {
+        snapshot.putServicePort(PORT_1, 1);
+
+        assertEquals(PORT_1, snapshot.servicePort(PORT_ID_1));
+        assertEquals(ImmutableSet.of(PORT_1), snapshot.servicePorts(NET_1));
+        assertEquals(PORT_1, snapshot.servicePortByName("tap-1"));
+        assertEquals(PORT_1, snapshot.servicePortByMac(MAC_1));
+
+        snapshot.putServicePort(PORT_1_UPDATED, 2);
+
+        assertNull(snapshot.servicePortByMac(MAC_1));
+        assertEquals(PORT_1_UPDATED, snapshot.servicePortByMac(MAC_2));
+
+        snapshot.removeServicePort(PORT_ID_1, 2);
+
+        assertTrue(snapshot.servicePorts().isEmpty());
+        assertTrue(snapshot.servicePorts(NET_1).isEmpty());
+        assertNull(snapshot.servicePortByName("tap-1"));
+    }
+
+    @Test
+    public void testOutOfOrderUpdates() {
+        snapshot.putServicePort(PORT_1_UPDATED, 2);
+        snapshot.putServicePort(PORT_1, 1);
+
+        assertEquals(PORT_1_UPDATED, snapshot.servicePort(PORT_ID_1));
+
+        snapshot.removeServicePort(PORT_ID_1, 1);
+
+        assertEquals(PORT_1_UPDATED, snapshot.servicePort(PORT_ID_1));
+    }
+
+    @Test
+    public void testLateUpdateAfterRemove() {
+        snapshot.putServicePort(PORT_1, 1);
+        snapshot.removeServicePort(PORT_ID_1, 3);
+        snapshot.putServicePort(PORT_1_UPDATED, 2);
+
+        assertNull(snapshot.servicePort(PORT_ID_1));
+        assertNull(snapshot.servicePortByMac(MAC_2));
+        assertTrue(snapshot.servicePorts(NET_1).isEmpty());
+
+        snapshot.putServicePort(PORT_1_UPDATED, 3);
+        assertNull(snapshot.servicePort(PORT_ID_1));
+
+        snapshot.putServicePort(PORT_1_UPDATED, 4);
+        assertEquals(PORT_1_UPDATED, snapshot.servicePort(PORT_ID_1));
+        assertEquals(PORT_1_UPDATED, snapshot.servicePortByMac(MAC_2));
+    }
+
+    @Test
+    public void testRemoveBeforeCreate() {
+        snapshot.removeServicePort(PORT_ID_1, 2);
+        snapshot.putServicePort(PORT_1, 1);
+
+        assertNull(snapshot.servicePort(PORT_ID_1));
+        assertTrue(snapshot.servicePorts().isEmpty());
+    }
+
+    @Test
+    public void testClearDropsTombstones() {
+        snapshot.removeServicePort(PORT_ID_1, 2);
+        snapshot.clear();
+        snapshot.putServicePort(PORT_1, 1);
+
+        assertEquals(PORT_1, snapshot.servicePort(PORT_ID_1));
+    }
+
+    @Test
+    public void testTombstoneExpired() {
+        snapshot.removeServicePort(PORT_ID_1, 2);
+        clock.addAndGet(TOMBSTONE_TIMEOUT - 1);
+        snapshot.removeServicePort(PORT_2.id(), 3);
+        snapshot.putServicePort(PORT_1, 1);
+        assertNull(snapshot.servicePort(PORT_ID_1));
+
+        // the expired tombstone is dropped on the next removal
+        clock.addAndGet(1);
+        snapshot.removeServicePort(NET_1_PORT.id(), 4);
+        snapshot.putServicePort(PORT_1, 1);
+        snapshot.putServicePort(PORT_2, 2);
+        assertEquals(PORT_1, snapshot.servicePort(PORT_ID_1));
+        assertNull(snapshot.servicePort(PORT_2.id()));
+    }
+
+    @Test
+    public void testTombstoneReplacedNotExpired() {
+        snapshot.removeServicePort(PORT_ID_1, 2);
+        clock.addAndGet(TOMBSTONE_TIMEOUT - 1);
+        snapshot.putServicePort(PORT_1, 3);
+        snapshot.removeServicePort(PORT_ID_1, 4);
+
+        // the newer tombstone outlives the replaced one
+        clock.addAndGet(1);
+        snapshot.removeServicePort(PORT_2.id(), 5);
+        snapshot.putServicePort(PORT_1_UPDATED, 3);
+        assertNull(snapshot.servicePort(PORT_ID_1));
+    }
+
+    @Test
+    public void testBulkPut() {
+        snapshot.putServicePorts(ImmutableList.of(
+                new Versioned<>(PORT_1, 1),
+                new Versioned<>(PORT_2, 2),
+                new Versioned<>(PORT_1_UPDATED, 3)));
+
+        assertEquals(ImmutableSet.of(PORT_1_UPDATED, PORT_2), snapshot.servicePorts());
+        assertEquals(ImmutableSet.of(PORT_1_UPDATED, PORT_2), snapshot.servicePorts(NET_1));
+        assertNull(snapshot.servicePortByMac(MAC_1));
+        assertEquals(PORT_2, snapshot.servicePortByName("tap-2"));
+    }
+
+    @Test
+    public void testIpIndex() {
+        snapshot.putServicePort(NET_1_PORT, 1);
+
+        assertEquals(ImmutableSet.of(NET_1_PORT), snapshot.servicePortsByIp(IP_1));
+        assertEquals(NET_1_PORT, snapshot.servicePortByIp(NET_1, IP_1));
+        assertNull(snapshot.servicePortByIp(NET_2, IP_1));
+        assertTrue(snapshot.servicePortsByIp(IP_2).isEmpty());
+
+        snapshot.removeServicePort(NET_1_PORT.id(), 2);
+
+        assertTrue(snapshot.servicePortsByIp(IP_1).isEmpty());
+        assertNull(snapshot.servicePortByIp(NET_1, IP_1));
+    }
+
+    @Test
+    public void testOverlappingIps() {
+        snapshot.putServicePort(NET_1_PORT, 1);
+        snapshot.putServicePort(NET_2_PORT, 1);
+
+        assertEquals(ImmutableSet.of(NET_1_PORT, NET_2_PORT),
+                     snapshot.servicePortsByIp(IP_1));
+        assertEquals(NET_1_PORT, snapshot.servicePortByIp(NET_1, IP_1));
+        assertEquals(NET_2_PORT, snapshot.servicePortByIp(NET_2, IP_1));
+
+        snapshot.putServicePort(NET_2_PORT_UPDATED, 2);
+
+        assertEquals(ImmutableSet.of(NET_1_PORT), snapshot.servicePortsByIp(IP_1));
+        assertEquals(NET_1_PORT, snapshot.servicePortByIp(NET_1, IP_1));
+        assertNull(snapshot.servicePortByIp(NET_2, IP_1));
+        assertEquals(NET_2_PORT_UPDATED, snapshot.servicePortByIp(NET_2, IP_2));
+
+        snapshot.removeServicePort(NET_1_PORT.id(), 2);
+
+        assertTrue(snapshot.servicePortsByIp(IP_1).isEmpty());
+        assertEquals(NET_2_PORT_UPDATED, snapshot.servicePortByIp(NET_2, IP_2));
+    }
+}
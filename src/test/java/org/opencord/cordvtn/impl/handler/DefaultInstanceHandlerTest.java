@@ -0,0 +1,235 @@
+/*
+ * Copyright 2017-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.opencord.cordvtn.impl.handler;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.onlab.junit.TestUtils;
+import org.onlab.packet.IpAddress;
+import org.onlab.packet.IpPrefix;
+import org.onlab.packet.MacAddress;
+import org.onlab.packet.VlanId;
+import org.onosproject.core.ApplicationId;
+import org.onosproject.core.DefaultApplicationId;
+import org.onosproject.net.DefaultAnnotations;
+import org.onosproject.net.DefaultHost;
+import org.onosproject.net.Device;
+import org.onosproject.net.Host;
+import org.onosproject.net.HostId;
+import org.onosproject.net.HostLocation;
+import org.onosproject.net.PortNumber;
+import org.onosproject.net.flow.FlowRuleOperation;
+import org.onosproject.net.host.HostEvent;
+import org.onosproject.net.host.HostListener;
+import org.onosproject.net.intent.WorkPartitionService;
+import org.onosproject.net.provider.ProviderId;
+import org.opencord.cordvtn.api.core.CordVtnPipeline;
+import org.opencord.cordvtn.api.core.FlowRuleBatch;
+import org.opencord.cordvtn.api.core.Instance;
+import org.opencord.cordvtn.api.core.ServiceNetworkService;
+import org.opencord.cordvtn.api.net.NetworkId;
+import org.opencord.cordvtn.api.net.SegmentId;
+import org.opencord.cordvtn.api.net.ServiceNetwork;
+import org.opencord.cordvtn.api.node.CordVtnNodeService;
+import org.opencord.cordvtn.impl.DefaultServiceNetwork;
+import org.opencord.cordvtn.impl.PartitionedExecutor;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.easymock.EasyMock.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.onosproject.net.flow.FlowRuleOperation.Type.ADD;
+import static org.onosproject.net.flow.FlowRuleOperation.Type.REMOVE;
+import static org.onosproject.net.host.HostEvent.Type.HOST_ADDED;
+import static org.onosproject.net.host.HostEvent.Type.HOST_REMOVED;
+import static org.opencord.cordvtn.api.net.ServiceNetwork.NetworkType.PRIVATE;
+import static org.opencord.cordvtn.api.node.CordVtnNodeState.COMPLETE;
+import static org.opencord.cordvtn.impl.CordVtnNodeTest.createDevice;
+import static org.opencord.cordvtn.impl.CordVtnNodeTest.createNode;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Unit test of the network rules shared by the instances of a network in
+ * {@link DefaultInstanceHandler}.
+ */
+public class DefaultInstanceHandlerTest {
+
+    private static final ApplicationId APP_ID = new DefaultApplicationId(1, "test");
+    private static final ProviderId PROVIDER_ID = new ProviderId("host", "test");
+    private static final Device DEVICE = createDevice(1);
+    private static final NetworkId NET_1 = NetworkId.of("net-1");
+    private static final ServiceNetwork SNET_1 = DefaultServiceNetwork.builder()
+            .id(NET_1)
+            .name("net-1")
+            .type(PRIVATE)
+            .segmentId(SegmentId.of(1L))
+            .subnet(IpPrefix.valueOf("10.0.0.0/24"))
+            .serviceIp(IpAddress.valueOf("10.0.0.1"))
+            .build();
+    // direct access and isolation rules on the only complete node
+    private static final int NETWORK_RULES = 2;
+
+    private final Map<NetworkId, ServiceNetwork> networks = Maps.newConcurrentMap();
+    private final List<FlowRuleBatch> batches = Lists.newCopyOnWriteArrayList();
+    private volatile boolean isMine = true;
+
+    private DefaultInstanceHandler handler;
+    private PartitionedExecutor eventExecutor;
+    private HostListener listener;
+
+    @Before
+    public void setUp() throws Exception {
+        networks.put(NET_1, SNET_1);
+
+        ServiceNetworkService snetService = createMock(ServiceNetworkService.class);
+        expect(snetService.serviceNetwork(anyObject(NetworkId.class)))
+                .andAnswer(() -> networks.get(getCurrentArguments()[0])).anyTimes();
+        replay(snetService);
+
+        CordVtnNodeService nodeService = createMock(CordVtnNodeService.class);
+        expect(nodeService.completeNodes())
+                .andReturn(ImmutableSet.of(createNode("node-01", DEVICE, COMPLETE)))
+                .anyTimes();
+        replay(nodeService);
+
+        CordVtnPipeline pipeline = createMock(CordVtnPipeline.class);
+        pipeline.processFlowRules(anyObject(FlowRuleBatch.class));
+        expectLastCall().andAnswer(() -> {
+            batches.add((FlowRuleBatch) getCurrentArguments()[0]);
+            return null;
+        }).anyTimes();
+        replay(pipeline);
+
+        WorkPartitionService partitionService = createMock(WorkPartitionService.class);
+        expect(partitionService.isMine(anyObject(), anyObject()))
+                .andAnswer(() -> isMine).anyTimes();
+        replay(partitionService);
+
+        eventExecutor = new PartitionedExecutor(1, "test", "event", getLogger(getClass()));
+
+        handler = new DefaultInstanceHandler();
+        handler.snetService = snetService;
+        handler.nodeService = nodeService;
+        handler.pipeline = pipeline;
+
+        AbstractInstanceHandler base = handler;
+        base.appId = APP_ID;
+        base.netTypes = ImmutableSet.of(PRIVATE);
+        base.workPartitionService = partitionService;
+        base.eventExecutor = eventExecutor;
+
+        listener = TestUtils.getField(handler, "networkInstanceListener");
+    }
+
+    @After
+    public void tearDown() {
+        eventExecutor.shutdown();
+    }
+
+    @Test
+    public void testFirstInstanceAdded() throws Exception {
+        listener.event(new HostEvent(HOST_ADDED, createHost(1)));
+        drain();
+        assertEquals(1, batches.size());
+        assertOperations(batches.get(0), ADD);
+
+        listener.event(new HostEvent(HOST_ADDED, createHost(2)));
+        drain();
+        assertEquals(1, batches.size());
+    }
+
+    @Test
+    public void testLastInstanceRemoved() throws Exception {
+        Host host1 = createHost(1);
+        Host host2 = createHost(2);
+        listener.event(new HostEvent(HOST_ADDED, host1));
+        listener.event(new HostEvent(HOST_ADDED, host2));
+        listener.event(new HostEvent(HOST_REMOVED, host1));
+        drain();
+        assertEquals(1, batches.size());
+
+        listener.event(new HostEvent(HOST_REMOVED, host2));
+        drain();
+        assertEquals(2, batches.size());
+        assertOperations(batches.get(1), REMOVE);
+    }
+
+    @Test
+    public void testLastInstanceRemovedAfterNetwork() throws Exception {
+        Host host = createHost(1);
+        listener.event(new HostEvent(HOST_ADDED, host));
+        networks.remove(NET_1);
+        listener.event(new HostEvent(HOST_REMOVED, host));
+        drain();
+
+        assertEquals(2, batches.size());
+        assertOperations(batches.get(1), REMOVE);
+    }
+
+    @Test
+    public void testNotPartitionOwner() throws Exception {
+        isMine = false;
+        Host host = createHost(1);
+        listener.event(new HostEvent(HOST_ADDED, host));
+        listener.event(new HostEvent(HOST_REMOVED, host));
+        drain();
+        assertTrue(batches.isEmpty());
+
+        // the owner handles the first instance after the ownership change
+        isMine = true;
+        listener.event(new HostEvent(HOST_ADDED, host));
+        drain();
+        assertEquals(1, batches.size());
+        assertOperations(batches.get(0), ADD);
+    }
+
+    private void drain() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        eventExecutor.execute(NET_1, latch::countDown);
+        assertTrue("Events were not handled", latch.await(1, SECONDS));
+    }
+
+    private static void assertOperations(FlowRuleBatch batch, FlowRuleOperation.Type type) {
+        assertEquals(NETWORK_RULES, batch.operations().size());
+        assertTrue(batch.operations().stream().allMatch(op -> op.type() == type));
+    }
+
+    private static Host createHost(int index) {
+        MacAddress mac = MacAddress.valueOf(String.format("02:00:00:00:00:%02x", index));
+        DefaultAnnotations annotations = DefaultAnnotations.builder()
+                .set(Instance.NETWORK_TYPE, PRIVATE.name())
+                .set(Instance.NETWORK_ID, NET_1.id())
+                .set(Instance.PORT_ID, "port-" + index)
+                .set(Instance.CREATE_TIME, String.valueOf(index))
+                .build();
+        return new DefaultHost(
+                PROVIDER_ID,
+                HostId.hostId(mac),
+                mac,
+                VlanId.NONE,
+                new HostLocation(DEVICE.id(), PortNumber.portNumber(index), 0L),
+                ImmutableSet.of(IpAddress.valueOf("10.0.0." + (index + 1))),
+                annotations);
+    }
+}
@@ -0,0 +1,293 @@
+/*
+ * Copyright 2017-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.opencord.cordvtn.impl.handler;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.onlab.packet.Ethernet;
+import org.onlab.packet.IpAddress;
+import org.onlab.packet.IpPrefix;
+import org.onlab.packet.MacAddress;
+import org.onlab.packet.VlanId;
+import org.onosproject.core.ApplicationId;
+import org.onosproject.core.DefaultApplicationId;
+import org.onosproject.core.GroupId;
+import org.onosproject.net.DefaultAnnotations;
+import org.onosproject.net.DefaultHost;
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.HostId;
+import org.onosproject.net.HostLocation;
+import org.onosproject.net.PortNumber;
+import org.onosproject.net.flow.DefaultFlowRule;
+import org.onosproject.net.flow.DefaultTrafficSelector;
+import org.onosproject.net.flow.DefaultTrafficTreatment;
+import org.onosproject.net.flow.FlowRule;
+import org.onosproject.net.flow.FlowRuleOperation;
+import org.onosproject.net.group.Group;
+import org.onosproject.net.group.GroupService;
+import org.onosproject.net.intent.WorkPartitionService;
+import org.onosproject.net.provider.ProviderId;
+import org.opencord.cordvtn.api.core.CordVtnPipeline;
+import org.opencord.cordvtn.api.core.FlowRuleBatch;
+import org.opencord.cordvtn.api.core.Instance;
+import org.opencord.cordvtn.api.core.ServiceNetworkService;
+import org.opencord.cordvtn.api.net.NetworkId;
+import org.opencord.cordvtn.api.net.SegmentId;
+import org.opencord.cordvtn.api.net.ServiceNetwork;
+import org.opencord.cordvtn.impl.DefaultServiceNetwork;
+import org.opencord.cordvtn.impl.PartitionedExecutor;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.easymock.EasyMock.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.onosproject.net.flow.FlowRuleOperation.Type.ADD;
+import static org.onosproject.net.flow.FlowRuleOperation.Type.REMOVE;
+import static org.opencord.cordvtn.api.core.CordVtnPipeline.PRIORITY_HIGH;
+import static org.opencord.cordvtn.api.core.CordVtnPipeline.TABLE_ACCESS;
+import static org.opencord.cordvtn.api.net.ServiceNetwork.DependencyType.UNIDIRECTIONAL;
+import static org.opencord.cordvtn.api.net.ServiceNetwork.NetworkType.PRIVATE;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Unit test of the dependency rule updates of {@link DependencyHandler}.
+ */
+public class DependencyHandlerTest {
+
+    private static final ApplicationId APP_ID = new DefaultApplicationId(1, "test");
+    private static final DeviceId DEVICE = DeviceId.deviceId("of:0000000000000001");
+    private static final IpPrefix SUBNET_1 = IpPrefix.valueOf("10.0.1.0/24");
+    private static final IpPrefix SUBNET_2 = IpPrefix.valueOf("10.0.2.0/24");
+    private static final IpPrefix SERVICE_IP = IpPrefix.valueOf("10.0.0.1/32");
+    private static final ProviderId PROVIDER_ID = new ProviderId("host", "test");
+    private static final NetworkId PROVIDER = NetworkId.of("provider");
+    private static final NetworkId SUBSCRIBER = NetworkId.of("subscriber");
+    private static final ServiceNetwork PROVIDER_NET = DefaultServiceNetwork.builder()
+            .id(PROVIDER)
+            .name("provider")
+            .type(PRIVATE)
+            .segmentId(SegmentId.of(1L))
+            .subnet(IpPrefix.valueOf("10.0.0.0/24"))
+            .serviceIp(SERVICE_IP.address())
+            .build();
+    private static final ServiceNetwork SUBSCRIBER_NET = DefaultServiceNetwork.builder()
+            .id(SUBSCRIBER)
+            .name("subscriber")
+            .type(PRIVATE)
+            .segmentId(SegmentId.of(2L))
+            .subnet(SUBNET_1)
+            .serviceIp(IpAddress.valueOf("10.0.1.1"))
+            .providers(ImmutableMap.of(PROVIDER, UNIDIRECTIONAL))
+            .build();
+
+    private final List<FlowRuleBatch> batches = Lists.newCopyOnWriteArrayList();
+
+    private DependencyHandler handler;
+    private PartitionedExecutor eventExecutor;
+
+    @Before
+    public void setUp() {
+        ServiceNetworkService snetService = createMock(ServiceNetworkService.class);
+        expect(snetService.serviceNetwork(PROVIDER)).andReturn(PROVIDER_NET).anyTimes();
+        expect(snetService.serviceNetwork(SUBSCRIBER)).andReturn(SUBSCRIBER_NET).anyTimes();
+        expect(snetService.subscribers(PROVIDER)).andReturn(ImmutableMap.of()).anyTimes();
+        replay(snetService);
+
+        GroupService groupService = createMock(GroupService.class);
+        expect(groupService.getGroup(anyObject(), anyObject()))
+                .andReturn(createMock(Group.class)).anyTimes();
+        groupService.removeGroup(anyObject(), anyObject(), anyObject());
+        expectLastCall().anyTimes();
+        replay(groupService);
+
+        CordVtnPipeline pipeline = createMock(CordVtnPipeline.class);
+        pipeline.processFlowRules(anyObject(FlowRuleBatch.class));
+        expectLastCall().andAnswer(() -> {
+            batches.add((FlowRuleBatch) getCurrentArguments()[0]);
+            return null;
+        }).anyTimes();
+        replay(pipeline);
+
+        // only the provider network is in the local partition
+        WorkPartitionService partitionService = createMock(WorkPartitionService.class);
+        expect(partitionService.isMine(anyObject(), anyObject()))
+                .andAnswer(() -> PROVIDER.equals(getCurrentArguments()[0])).anyTimes();
+        replay(partitionService);
+
+        eventExecutor = new PartitionedExecutor(1, "test", "event", getLogger(getClass()));
+
+        handler = new DependencyHandler();
+        handler.snetService = snetService;
+        handler.groupService = groupService;
+        handler.pipeline = pipeline;
+
+        AbstractInstanceHandler base = handler;
+        base.appId = APP_ID;
+        base.workPartitionService = partitionService;
+        base.eventExecutor = eventExecutor;
+    }
+
+    @After
+    public void tearDown() {
+        eventExecutor.shutdown();
+    }
+
+    /**
+     * Tests if the indirect access rule shared by the subscriber instances on
+     * a device is installed with the first instance and removed with the last
+     * one, when the instance store is already ahead of the events.
+     */
+    @Test
+    public void testBackToBackSubscriberInstances() throws Exception {
+        Instance instance1 = Instance.of(createHost(1));
+        Instance instance2 = Instance.of(createHost(2));
+        handler.instanceDetected(instance1);
+        handler.instanceDetected(instance2);
+        drain();
+        assertEquals(1, indirectAccessRules(ADD));
+
+        handler.instanceRemoved(instance1);
+        handler.instanceRemoved(instance2);
+        drain();
+        assertEquals(1, indirectAccessRules(REMOVE));
+    }
+
+    /**
+     * Tests if the instances of a network are counted on each device.
+     */
+    @Test
+    public void testDeviceInstances() {
+        Instance instance1 = Instance.of(createHost(1));
+        Instance instance2 = Instance.of(createHost(2));
+        assertTrue(handler.addDeviceInstance(instance1));
+        assertFalse(handler.addDeviceInstance(instance2));
+        // detected again with an update
+        assertFalse(handler.addDeviceInstance(instance1));
+
+        assertFalse(handler.removeDeviceInstance(instance1));
+        assertTrue(handler.removeDeviceInstance(instance2));
+        assertTrue(handler.addDeviceInstance(instance1));
+    }
+
+    /**
+     * Tests if the rules only in the old batch are removed and the rules
+     * only in the new batch are added.
+     */
+    @Test
+    public void testDiffRulesAddedAndRemoved() {
+        FlowRule oldRule = accessRule(SUBNET_1, 1);
+        FlowRule newRule = accessRule(SUBNET_2, 1);
+
+        List<FlowRuleOperation> ops = DependencyHandler.diffRules(
+                FlowRuleBatch.builder().add(oldRule).build(),
+                FlowRuleBatch.builder().add(newRule).build()).operations();
+        assertEquals(2, ops.size());
+        assertTrue(ops.stream().anyMatch(op -> op.type() == REMOVE &&
+                op.rule().equals(oldRule)));
+        assertTrue(ops.stream().anyMatch(op -> op.type() == ADD &&
+                op.rule().equals(newRule)));
+    }
+
+    /**
+     * Tests if the rules in both batches with the same treatment are left
+     * unchanged.
+     */
+    @Test
+    public void testDiffRulesUnchanged() {
+        FlowRuleBatch batch = FlowRuleBatch.builder()
+                .add(accessRule(SUBNET_1, 1))
+                .add(accessRule(SUBNET_2, 1))
+                .build();
+
+        FlowRuleBatch ops = DependencyHandler.diffRules(batch, batch);
+        assertTrue(ops.isEmpty());
+    }
+
+    /**
+     * Tests if a rule in both batches with a different treatment is updated
+     * with the treatment of the new batch, without removing it first.
+     */
+    @Test
+    public void testDiffRulesTreatmentChanged() {
+        FlowRule oldRule = accessRule(SUBNET_1, 1);
+        FlowRule newRule = accessRule(SUBNET_1, 2);
+
+        List<FlowRuleOperation> ops = DependencyHandler.diffRules(
+                FlowRuleBatch.builder().add(oldRule).build(),
+                FlowRuleBatch.builder().add(newRule).build()).operations();
+        assertEquals(1, ops.size());
+        assertEquals(ADD, ops.get(0).type());
+        assertEquals(newRule.treatment(), ops.get(0).rule().treatment());
+    }
+
+    private void drain() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        eventExecutor.execute(PROVIDER, latch::countDown);
+        assertTrue("Events were not handled", latch.await(1, SECONDS));
+    }
+
+    private long indirectAccessRules(FlowRuleOperation.Type type) {
+        return batches.stream()
+                .flatMap(batch -> batch.operations().stream())
+                .filter(op -> op.type() == type)
+                .filter(op -> op.rule().tableId() == TABLE_ACCESS)
+                .count();
+    }
+
+    private static DefaultHost createHost(int index) {
+        MacAddress mac = MacAddress.valueOf(String.format("02:00:00:00:01:%02x", index));
+        DefaultAnnotations annotations = DefaultAnnotations.builder()
+                .set(Instance.NETWORK_TYPE, PRIVATE.name())
+                .set(Instance.NETWORK_ID, SUBSCRIBER.id())
+                .set(Instance.PORT_ID, "port-" + index)
+                .set(Instance.CREATE_TIME, String.valueOf(index))
+                .build();
+        return new DefaultHost(
+                PROVIDER_ID,
+                HostId.hostId(mac),
+                mac,
+                VlanId.NONE,
+                new HostLocation(DEVICE, PortNumber.portNumber(index), 0L),
+                ImmutableSet.of(IpAddress.valueOf("10.0.1." + (index + 1))),
+                annotations);
+    }
+
+    private static FlowRule accessRule(IpPrefix srcSubnet, int groupId) {
+        return DefaultFlowRule.builder()
+                .fromApp(APP_ID)
+                .withSelector(DefaultTrafficSelector.builder()
+                                      .matchEthType(Ethernet.TYPE_IPV4)
+                                      .matchIPSrc(srcSubnet)
+                                      .matchIPDst(SERVICE_IP)
+                                      .build())
+                .withTreatment(DefaultTrafficTreatment.builder()
+                                       .group(new GroupId(groupId))
+                                       .build())
+                .withPriority(PRIORITY_HIGH)
+                .forDevice(DEVICE)
+                .forTable(TABLE_ACCESS)
+                .makePermanent()
+                .build();
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2017-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.opencord.cordvtn.rest;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.collect.ImmutableList;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.onlab.osgi.DefaultServiceDirectory;
+import org.onlab.osgi.ServiceDirectory;
+import org.onlab.rest.BaseResource;
+import org.opencord.cordvtn.api.core.ServiceNetworkService;
+
+import javax.ws.rs.core.Response;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.opencord.cordvtn.api.core.ServiceNetworkChange.tombstone;
+
+/**
+ * Unit test of {@link ServiceNetworkChangeWebResource}.
+ */
+public class ServiceNetworkChangeWebResourceTest {
+
+    private static final long LATEST_VERSION = 42;
+
+    private ServiceNetworkService snetService;
+
+    @Before
+    public void setUp() {
+        snetService = createMock(ServiceNetworkService.class);
+        BaseResource.setServiceDirectory(new ServiceDirectory() {
+            @Override
+            public <T> T get(Class<T> serviceClass) {
+                return serviceClass.cast(snetService);
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        BaseResource.setServiceDirectory(new DefaultServiceDirectory());
+    }
+
+    /**
+     * Tests if the latest version is returned with 410 GONE so that the
+     * caller can resume from there after reading the networks again.
+     */
+    @Test
+    public void testGoneWithLatestVersion() {
+        expect(snetService.changes(1)).andThrow(new IllegalStateException()).anyTimes();
+        expect(snetService.changelogVersion()).andReturn(LATEST_VERSION).anyTimes();
+        replay(snetService);
+
+        Response response = new ServiceNetworkChangeWebResource().getChanges(1);
+        assertEquals(Response.Status.GONE.getStatusCode(), response.getStatus());
+        ObjectNode body = (ObjectNode) response.getEntity();
+        assertEquals(LATEST_VERSION, body.get("latestVersion").asLong());
+    }
+
+    /**
+     * Tests if the latest version moves past a lost version with no change.
+     */
+    @Test
+    public void testLatestVersionPastLostVersion() {
+        expect(snetService.changes(1)).andReturn(ImmutableList.of(tombstone(2))).anyTimes();
+        replay(snetService);
+
+        Response response = new ServiceNetworkChangeWebResource().getChanges(1);
+        assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+        ObjectNode body = (ObjectNode) response.getEntity();
+        assertEquals(2, body.get("latestVersion").asLong());
+        assertEquals(0, body.get("Changes").size());
+    }
+}